@@ -42,6 +42,10 @@ public final class Application {
         }
 
         var game = (DecimaGame) Game.load(params.sourcePath());
+        game.useStorageIndex(params.configPath().resolve("storage.idx"));
+        game.useGroupSnapshots(params.configPath().resolve("snapshots"));
+        game.useTypeIndex(params.configPath().resolve("types.idx"));
+        game.warmUp();
         var component = DaggerApplicationComponent.builder()
             .game(game)
             .config(params.configPath())
@@ -4,13 +4,11 @@ import sh.adelessfox.odradek.game.decima.ObjectId;
 import sh.adelessfox.odradek.game.decima.ObjectIdHolder;
 import sh.adelessfox.odradek.game.decima.ObjectTypeHolder;
 import sh.adelessfox.odradek.game.decima.StreamingGraph;
+import sh.adelessfox.odradek.game.decima.StreamingTypeIndex;
 import sh.adelessfox.odradek.rtti.ClassTypeInfo;
 import sh.adelessfox.odradek.ui.components.tree.TreeStructure;
-import sh.adelessfox.odradek.util.Gatherers;
 
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -82,9 +80,9 @@ public sealed interface GraphStructure extends TreeStructure<GraphStructure> {
     }
 
     abstract sealed class GroupableByType extends Groupable<GroupableByType, GroupableByType.Option> {
-        public static final Comparator<Map.Entry<ClassTypeInfo, List<Integer>>>
+        public static final Comparator<Map.Entry<ClassTypeInfo, int[]>>
             DEFAULT_COMPARATOR = Comparator.comparing(e -> e.getKey().name()),
-            COUNT_COMPARATOR = Comparator.comparingInt(e -> -e.getValue().size());
+            COUNT_COMPARATOR = Comparator.comparingInt(e -> -e.getValue().length);
 
         public enum Option {
             GROUP_BY_TYPE,
@@ -100,16 +98,9 @@ public sealed interface GraphStructure extends TreeStructure<GraphStructure> {
                 var comparator = options.contains(Option.SORT_BY_COUNT)
                     ? COUNT_COMPARATOR
                     : DEFAULT_COMPARATOR;
-                return keys()
-                    .boxed()
-                    .gather(Gatherers.groupingBy(this::type, IdentityHashMap::new, Collectors.toList()))
+                return groupKeysByType().entrySet().stream()
                     .sorted(comparator)
-                    .map(entry -> new GroupedByType(
-                        this,
-                        entry.getKey(),
-                        entry.getValue().stream()
-                            .mapToInt(Integer::intValue)
-                            .toArray()))
+                    .map(entry -> new GroupedByType(this, entry.getKey(), entry.getValue()))
                     .toList();
             } else {
                 return keys()
@@ -135,6 +126,26 @@ public sealed interface GraphStructure extends TreeStructure<GraphStructure> {
         private ClassTypeInfo type(int key) {
             return group(key).types().get(index(key));
         }
+
+        private Map<ClassTypeInfo, int[]> groupKeysByType() {
+            var keys = keys().toArray();
+            var types = new ClassTypeInfo[keys.length];
+            var counts = new IdentityHashMap<ClassTypeInfo, int[]>();
+            for (int i = 0; i < keys.length; i++) {
+                types[i] = type(keys[i]);
+                counts.computeIfAbsent(types[i], _ -> new int[1])[0]++;
+            }
+
+            var result = new IdentityHashMap<ClassTypeInfo, int[]>(counts.size());
+            for (var entry : counts.entrySet()) {
+                result.put(entry.getKey(), new int[entry.getValue()[0]]);
+                entry.getValue()[0] = 0;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                result.get(types[i])[counts.get(types[i])[0]++] = keys[i];
+            }
+            return result;
+        }
     }
 
     record GroupedByGroup(GroupableByGroup parent, StreamingGraph.Group group,
@@ -274,17 +285,15 @@ public sealed interface GraphStructure extends TreeStructure<GraphStructure> {
 
         @Override
         protected Stream<StreamingGraph.Group> groups() {
-            return graph.groups().stream()
-                .filter(group -> group.types().stream().anyMatch(type -> type == info))
-                .sorted(Comparator.comparingInt(StreamingGraph.Group::id))
-                .map(StreamingGraph.Group.class::cast);
+            return graph.typeIndex().objects(info)
+                .mapToInt(StreamingTypeIndex::groupId)
+                .distinct()
+                .mapToObj(graph::group);
         }
 
         @Override
         protected int[] indices(StreamingGraph.Group group) {
-            return IntStream.range(0, group.types().size())
-                .filter(index -> group.types().get(index) == info)
-                .toArray();
+            return graph.typeIndex().indices(info, group.id());
         }
 
         @Override
@@ -513,10 +522,9 @@ public sealed interface GraphStructure extends TreeStructure<GraphStructure> {
                 .map(group -> new Group(graph, group, true))
                 .sorted()
                 .toList();
-            case GraphObjects(var graph) -> graph.types().stream()
-                .gather(Gatherers.groupingBy(Function.identity(), IdentityHashMap::new, Collectors.counting()))
-                .sorted(Comparator.comparing(x -> x.getKey().name()))
-                .map(entry -> new GraphObjectSet(graph, entry.getKey(), Math.toIntExact(entry.getValue())))
+            case GraphObjects(var graph) -> graph.typeIndex().types().stream()
+                .sorted(Comparator.comparing(ClassTypeInfo::name))
+                .map(info -> new GraphObjectSet(graph, info, graph.typeIndex().count(info)))
                 .toList();
             case Group(var graph, var group, _) -> List.of(
                 new GroupObjects(graph, group),
@@ -2,6 +2,7 @@ package sh.adelessfox.odradek.io;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.lang.foreign.MemorySegment;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
@@ -23,9 +24,13 @@ public interface BinaryReader extends Closeable {
         T read(BinaryReader reader) throws IOException;
     }
 
+    /**
+     * Wraps remaining bytes of the buffer. Buffers that are direct or read-only are read through
+     * a memory segment view and must stay valid for as long as the reader is used.
+     */
     static BinaryReader wrap(ByteBuffer buffer) {
         if (!buffer.hasArray()) {
-            throw new IllegalArgumentException("Buffer must be backed by an array");
+            return new SegmentBinaryReader(MemorySegment.ofBuffer(buffer), null);
         }
         return new BytesBinaryReader(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
     }
@@ -42,8 +47,91 @@ public interface BinaryReader extends Closeable {
         return ChannelBinaryReader.open(path);
     }
 
+    /**
+     * Opens a reader that maps the entire file into memory.
+     * <p>
+     * Reads are served straight from the mapped memory, leaving caching to the OS.
+     * The mapping is released when the reader is closed.
+     *
+     * @param path path to the file
+     * @return a reader over the mapped file
+     * @throws IOException if an I/O error occurs
+     */
+    static BinaryReader map(Path path) throws IOException {
+        return SegmentBinaryReader.map(path);
+    }
+
     void readBytes(byte[] dst, int off, int len) throws IOException;
 
+    /**
+     * Reads {@code len} bytes starting at the absolute position {@code pos} without
+     * affecting the current position of this reader.
+     * <p>
+     * Implementations that can do so without shared state (e.g. positional channel reads)
+     * are safe to call concurrently. The default implementation falls back to a synchronized
+     * seek and read.
+     *
+     * @param pos absolute position to read from
+     * @param dst destination array
+     * @param off offset in the destination array
+     * @param len number of bytes to read
+     * @throws IOException if an I/O error occurs
+     */
+    default void readBytes(long pos, byte[] dst, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        synchronized (this) {
+            long saved = position();
+            try {
+                position(pos);
+                readBytes(dst, off, len);
+            } finally {
+                position(saved);
+            }
+        }
+    }
+
+    /**
+     * Reads {@code dst.remaining()} bytes starting at the absolute position {@code pos} into
+     * the destination buffer without affecting the current position of this reader.
+     * <p>
+     * The position of the destination buffer is advanced by the number of bytes read.
+     *
+     * @param pos absolute position to read from
+     * @param dst destination buffer
+     * @throws IOException if an I/O error occurs
+     * @see #readBytes(long, byte[], int, int)
+     */
+    default void readBytes(long pos, ByteBuffer dst) throws IOException {
+        int len = dst.remaining();
+        if (dst.hasArray()) {
+            readBytes(pos, dst.array(), dst.arrayOffset() + dst.position(), len);
+        } else {
+            var buffer = new byte[len];
+            readBytes(pos, buffer, 0, len);
+            dst.put(dst.position(), buffer);
+        }
+        dst.position(dst.position() + len);
+    }
+
+    /**
+     * Returns a buffer containing {@code len} bytes starting at the absolute position {@code pos}
+     * without affecting the current position of this reader.
+     * <p>
+     * Readers backed by mapped memory return a read-only view of the mapping without copying.
+     * Such buffer must not be accessed after the reader is closed. Readers backed by arrays
+     * return a read-only view of the array. Other readers copy the data into a new heap buffer.
+     *
+     * @param pos absolute position to read from
+     * @param len number of bytes to read
+     * @return a buffer containing the requested data
+     * @throws IOException if an I/O error occurs
+     */
+    default ByteBuffer readBuffer(long pos, int len) throws IOException {
+        var buffer = ByteBuffer.allocate(len);
+        readBytes(pos, buffer.array(), 0, len);
+        return buffer;
+    }
+
     byte readByte() throws IOException;
 
     short readShort() throws IOException;
@@ -72,52 +160,60 @@ public interface BinaryReader extends Closeable {
 
     default short[] readShorts(int count) throws IOException {
         var dst = new short[count];
-        for (int i = 0; i < count; i++) {
-            dst[i] = readShort();
-        }
+        readBulk(count, Short.BYTES).asShortBuffer().get(dst);
         return dst;
     }
 
     default int[] readInts(int count) throws IOException {
         var dst = new int[count];
-        for (int i = 0; i < count; i++) {
-            dst[i] = readInt();
-        }
+        readBulk(count, Integer.BYTES).asIntBuffer().get(dst);
         return dst;
     }
 
     default long[] readLongs(int count) throws IOException {
         var dst = new long[count];
-        for (int i = 0; i < count; i++) {
-            dst[i] = readLong();
-        }
+        readBulk(count, Long.BYTES).asLongBuffer().get(dst);
         return dst;
     }
 
     default float[] readFloats(int count) throws IOException {
         var dst = new float[count];
-        for (int i = 0; i < count; i++) {
-            dst[i] = readFloat();
-        }
+        readBulk(count, Float.BYTES).asFloatBuffer().get(dst);
         return dst;
     }
 
     default double[] readDoubles(int count) throws IOException {
         var dst = new double[count];
-        for (int i = 0; i < count; i++) {
-            dst[i] = readDouble();
-        }
+        readBulk(count, Double.BYTES).asDoubleBuffer().get(dst);
         return dst;
     }
 
     default float[] readHalfs(int count) throws IOException {
+        var src = readBulk(count, Short.BYTES);
         var dst = new float[count];
         for (int i = 0; i < count; i++) {
-            dst[i] = readHalf();
+            dst[i] = Float.float16ToFloat(src.getShort(i * Short.BYTES));
         }
         return dst;
     }
 
+    /**
+     * Reads {@code count} elements of {@code size} bytes each and returns them as a buffer
+     * in the byte order of this reader, starting at position zero. Used by bulk reads of
+     * primitive arrays, so they perform a single read instead of one read per element.
+     * <p>
+     * Implementations may return a view of their internal storage that is only valid until
+     * the next read; callers must consume it immediately.
+     *
+     * @param count number of elements
+     * @param size  size of a single element, in bytes
+     * @return a buffer of {@code count * size} bytes
+     * @throws IOException if an I/O error occurs
+     */
+    default ByteBuffer readBulk(int count, int size) throws IOException {
+        return ByteBuffer.wrap(readBytes(Math.multiplyExact(count, size))).order(order());
+    }
+
     default String readString(StringFormat format) throws IOException {
         return readString(format, StandardCharsets.UTF_8);
     }
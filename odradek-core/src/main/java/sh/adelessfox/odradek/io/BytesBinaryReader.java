@@ -2,6 +2,7 @@ package sh.adelessfox.odradek.io;
 
 import sh.adelessfox.odradek.util.Handles;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Objects;
 
@@ -26,6 +27,28 @@ final class BytesBinaryReader implements BinaryReader {
         position += len;
     }
 
+    @Override
+    public void readBytes(long pos, byte[] dst, int off, int len) {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        Objects.checkFromIndexSize(pos, len, length);
+        System.arraycopy(array, offset + (int) pos, dst, off, len);
+    }
+
+    @Override
+    public ByteBuffer readBuffer(long pos, int len) {
+        Objects.checkFromIndexSize(pos, len, length);
+        return ByteBuffer.wrap(array, offset + (int) pos, len).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public ByteBuffer readBulk(int count, int size) {
+        int len = Math.multiplyExact(count, size);
+        Objects.checkFromIndexSize(position, len, length);
+        var buffer = ByteBuffer.wrap(array, offset + position, len).slice().asReadOnlyBuffer().order(order);
+        position += len;
+        return buffer;
+    }
+
     @Override
     public byte readByte() {
         var value = array[offset + position];
@@ -89,6 +89,44 @@ final class ChannelBinaryReader implements BinaryReader {
         buffer.limit(0);
     }
 
+    @Override
+    public void readBytes(long pos, byte[] dst, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        if (pos < 0 || pos + len > length) {
+            throw new EOFException();
+        }
+
+        readBytes(pos, ByteBuffer.wrap(dst, off, len));
+    }
+
+    @Override
+    public void readBytes(long pos, ByteBuffer dst) throws IOException {
+        if (pos < 0 || pos + dst.remaining() > length) {
+            throw new EOFException();
+        }
+
+        // Positional reads don't touch the channel's position, so they don't need to be synchronized
+        for (long end = pos + dst.remaining(); dst.hasRemaining(); ) {
+            if (channel.read(dst, end - dst.remaining()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer readBulk(int count, int size) throws IOException {
+        int len = Math.multiplyExact(count, size);
+        if (len > buffer.capacity()) {
+            return BinaryReader.super.readBulk(count, size);
+        }
+
+        // Small enough to be served straight from the buffer
+        refill(len);
+        var view = buffer.slice(buffer.position(), len).order(buffer.order());
+        buffer.position(buffer.position() + len);
+        return view;
+    }
+
     @Override
     public long size() {
         return length;
@@ -0,0 +1,208 @@
+package sh.adelessfox.odradek.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent cache of decompressed chunks bounded by the total size of cached data.
+ * <p>
+ * Entries are keyed by the reader they belong to and the offset of the chunk, so a single cache
+ * can be shared by all readers that access the same set of files. The cache is split into independently
+ * locked segments, each with its own least-recently-used eviction order. Loading happens outside the lock,
+ * and concurrent requests for the same chunk wait for a single load instead of loading it again.
+ * <p>
+ * Each segment holds at most {@code maxBytes / 16} bytes. Chunks larger than that are never cached:
+ * they're returned to the caller as is and counted as {@link Stats#rejections() rejections}.
+ * <p>
+ * Arrays returned by the cache are shared between readers and must not be modified.
+ */
+public final class ChunkCache {
+    private static final int SEGMENTS = 16;
+
+    @FunctionalInterface
+    public interface Loader {
+        byte[] load() throws IOException;
+    }
+
+    public record Stats(long hits, long misses, long evictions, long rejections, long residentBytes) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public ChunkCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be non-negative");
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / SEGMENTS);
+        }
+    }
+
+    /**
+     * Returns the decompressed chunk, loading it using the specified loader if it's not cached yet.
+     *
+     * @param source the reader the chunk belongs to
+     * @param offset the uncompressed offset of the chunk
+     * @param loader the loader to use on a cache miss
+     * @return decompressed chunk data; must not be modified
+     * @throws IOException if the loader fails
+     */
+    public byte[] get(Object source, long offset, Loader loader) throws IOException {
+        var key = new Key(source, offset);
+        var segment = segmentFor(key);
+        var future = new CompletableFuture<byte[]>();
+
+        var existing = segment.getOrStartLoading(key, future);
+        if (existing instanceof byte[] data) {
+            hits.increment();
+            return data;
+        }
+
+        misses.increment();
+        if (existing instanceof CompletableFuture<?> loading) {
+            // Another thread is loading the same chunk
+            return await(loading);
+        }
+
+        byte[] data;
+        try {
+            data = loader.load();
+        } catch (IOException | RuntimeException | Error e) {
+            segment.finishLoading(key, future, null);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        segment.finishLoading(key, future, data);
+        future.complete(data);
+        return data;
+    }
+
+    /**
+     * Discards all chunks that belong to the specified source.
+     *
+     * @param source the reader whose chunks should be discarded
+     */
+    public void invalidate(Object source) {
+        for (Segment segment : segments) {
+            segment.invalidate(source);
+        }
+    }
+
+    public Stats stats() {
+        long resident = 0;
+        for (Segment segment : segments) {
+            resident += segment.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), resident);
+    }
+
+    private static byte[] await(CompletableFuture<?> future) throws IOException {
+        try {
+            return (byte[]) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a chunk to load");
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException cause -> throw new IOException(cause.getMessage(), cause);
+                case RuntimeException cause -> throw cause;
+                case Error cause -> throw cause;
+                default -> throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    private Segment segmentFor(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private record Key(Object source, long offset) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key(Object s, long off) && source == s && offset == off;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source) * 31 + Long.hashCode(offset);
+        }
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<Key, byte[]> map = new LinkedHashMap<>(16, 0.75f, true);
+        private final HashMap<Key, CompletableFuture<byte[]>> loading = new HashMap<>();
+        private final long maxBytes;
+        private long size;
+
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Returns the cached chunk, or the future of a load that is already in progress. Otherwise,
+         * registers the specified future as the pending load and returns {@code null}.
+         */
+        synchronized Object getOrStartLoading(Key key, CompletableFuture<byte[]> future) {
+            var data = map.get(key);
+            if (data != null) {
+                return data;
+            }
+            return loading.putIfAbsent(key, future);
+        }
+
+        /**
+         * Unregisters the pending load and caches the loaded chunk, unless the load has failed,
+         * or the chunk's source was invalidated while it was loading.
+         */
+        synchronized void finishLoading(Key key, CompletableFuture<byte[]> future, byte[] data) {
+            if (!loading.remove(key, future) || data == null) {
+                return;
+            }
+            if (data.length > maxBytes) {
+                // Too big to be cached at all
+                rejections.increment();
+                return;
+            }
+
+            map.put(key, data);
+            size += data.length;
+
+            var iterator = map.values().iterator();
+            while (size > maxBytes && iterator.hasNext()) {
+                size -= iterator.next().length;
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        synchronized void invalidate(Object source) {
+            var iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (entry.getKey().source() == source) {
+                    size -= entry.getValue().length;
+                    iterator.remove();
+                }
+            }
+            loading.keySet().removeIf(key -> key.source() == source);
+        }
+
+        synchronized long size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package sh.adelessfox.odradek.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable table of chunks of a {@link ChunkedBinaryReader}, sorted by their uncompressed offset,
+ * which is treated as unsigned.
+ * <p>
+ * Chunks are stored as primitive columns and looked up with a binary search, so lookups don't allocate.
+ */
+public final class ChunkTable {
+    private final long size;
+    private final long[] offsets;
+    private final long[] compressedOffsets;
+    private final int[] sizes;
+    private final int[] compressedSizes;
+    private final int maxSize;
+    private final int maxCompressedSize;
+
+    private ChunkTable(long size, long[] offsets, long[] compressedOffsets, int[] sizes, int[] compressedSizes) {
+        if (offsets.length != compressedOffsets.length || offsets.length != sizes.length || offsets.length != compressedSizes.length) {
+            throw new IllegalArgumentException("Column lengths don't match");
+        }
+        this.size = size;
+        this.offsets = offsets;
+        this.compressedOffsets = compressedOffsets;
+        this.sizes = sizes;
+        this.compressedSizes = compressedSizes;
+        this.maxSize = Arrays.stream(sizes).max().orElse(0);
+        this.maxCompressedSize = Arrays.stream(compressedSizes).max().orElse(0);
+    }
+
+    /**
+     * Creates a table from the list of chunks.
+     *
+     * @param chunks chunks, in any order
+     * @param size   total uncompressed size of the data
+     * @return a new table
+     */
+    public static ChunkTable of(List<ChunkedBinaryReader.Chunk> chunks, long size) {
+        var sorted = chunks.stream()
+            .sorted((a, b) -> Long.compareUnsigned(a.offset(), b.offset()))
+            .toList();
+
+        int count = sorted.size();
+        var offsets = new long[count];
+        var compressedOffsets = new long[count];
+        var sizes = new int[count];
+        var compressedSizes = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            var chunk = sorted.get(i);
+            offsets[i] = chunk.offset();
+            compressedOffsets[i] = chunk.compressedOffset();
+            sizes[i] = chunk.size();
+            compressedSizes[i] = chunk.compressedSize();
+        }
+
+        return new ChunkTable(size, offsets, compressedOffsets, sizes, compressedSizes);
+    }
+
+    static ChunkTable read(BinaryReader reader) throws IOException {
+        var size = reader.readLong();
+        var count = reader.readInt();
+        if (count < 0 || count > reader.remaining() / (2 * Long.BYTES + 2 * Integer.BYTES)) {
+            throw new IOException("Invalid chunk count: " + count);
+        }
+        var offsets = reader.readLongs(count);
+        var compressedOffsets = reader.readLongs(count);
+        var sizes = reader.readInts(count);
+        var compressedSizes = reader.readInts(count);
+        return new ChunkTable(size, offsets, compressedOffsets, sizes, compressedSizes);
+    }
+
+    void write(BinaryWriter writer) throws IOException {
+        writer.writeLong(size);
+        writer.writeInt(offsets.length);
+        writer.writeLongs(offsets);
+        writer.writeLongs(compressedOffsets);
+        writer.writeInts(sizes);
+        writer.writeInts(compressedSizes);
+    }
+
+    /**
+     * Finds the chunk that contains the specified uncompressed position.
+     *
+     * @param position uncompressed position
+     * @return index of the chunk, or {@code -1} if the position precedes the first chunk
+     */
+    public int indexOf(long position) {
+        // Offsets are unsigned, so Arrays.binarySearch can't be used
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compareUnsigned(offsets[mid], position);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /** Total uncompressed size of the data. */
+    public long size() {
+        return size;
+    }
+
+    public int count() {
+        return offsets.length;
+    }
+
+    public long offset(int index) {
+        return offsets[index];
+    }
+
+    public long compressedOffset(int index) {
+        return compressedOffsets[index];
+    }
+
+    public int size(int index) {
+        return sizes[index];
+    }
+
+    public int compressedSize(int index) {
+        return compressedSizes[index];
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public int maxCompressedSize() {
+        return maxCompressedSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ChunkTable that
+            && size == that.size
+            && Arrays.equals(offsets, that.offsets)
+            && Arrays.equals(compressedOffsets, that.compressedOffsets)
+            && Arrays.equals(sizes, that.sizes)
+            && Arrays.equals(compressedSizes, that.compressedSizes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, Arrays.hashCode(offsets), Arrays.hashCode(sizes));
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkTable[size=" + size + ", count=" + count() + "]";
+    }
+}
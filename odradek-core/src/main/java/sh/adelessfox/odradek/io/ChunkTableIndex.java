@@ -0,0 +1,179 @@
+package sh.adelessfox.odradek.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent index of chunk tables of compressed archives.
+ * <p>
+ * Parsing chunk tables requires opening and reading every archive. The index stores
+ * tables of all archives in a single file that is read once at startup. Each entry
+ * is validated against the size and modification time of the archive it belongs to.
+ */
+public final class ChunkTableIndex {
+    private static final Logger log = LoggerFactory.getLogger(ChunkTableIndex.class);
+    private static final int MAGIC = 'C' | 'T' << 8 | 'I' << 16 | 'X' << 24;
+    private static final int VERSION = 1;
+    // Length of the file name, file size, modification time, and size and chunk count of an empty table
+    private static final int MIN_ENTRY_SIZE = Integer.BYTES + 2 * Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private record Entry(long fileSize, long lastModified, ChunkTable table) {
+        boolean matches(BasicFileAttributes attributes) {
+            return fileSize == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    public ChunkTableIndex() {
+    }
+
+    /**
+     * Loads the index from the specified file.
+     * <p>
+     * If the file doesn't exist or can't be read, an empty index is returned.
+     *
+     * @param path path to the index file
+     * @return the loaded index
+     */
+    public static ChunkTableIndex load(Path path) {
+        var index = new ChunkTableIndex();
+        if (Files.notExists(path)) {
+            return index;
+        }
+
+        try (var reader = BinaryReader.map(path)) {
+            var magic = reader.readInt();
+            var version = reader.readInt();
+            if (magic != MAGIC || version != VERSION) {
+                log.debug("Discarding index {} of unsupported version", path);
+                return index;
+            }
+
+            // Sizes are checked against the file before allocating, so a corrupted index can't exhaust the heap
+            var count = reader.readInt();
+            if (count < 0 || count > reader.remaining() / MIN_ENTRY_SIZE) {
+                throw new IOException("Invalid entry count: " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                var length = reader.readInt();
+                if (length < 0 || length > reader.remaining()) {
+                    throw new IOException("Invalid file name length: " + length);
+                }
+                var file = reader.readString(length);
+                var fileSize = reader.readLong();
+                var lastModified = reader.readLong();
+                var table = ChunkTable.read(reader);
+                index.entries.put(file, new Entry(fileSize, lastModified, table));
+            }
+
+            log.debug("Loaded {} chunk tables from {}", count, path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load index from {}", path, e);
+            index.entries.clear();
+        }
+
+        return index;
+    }
+
+    /**
+     * Saves the index to the specified file, replacing it.
+     * <p>
+     * Entries of archives that no longer exist or have been modified since they
+     * were indexed are dropped, so the index doesn't grow across runs.
+     *
+     * @param path path to the index file
+     * @throws IOException if an I/O error occurs
+     */
+    public void save(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+
+        int pruned = 0;
+        for (var entry : entries.entrySet()) {
+            if (isStale(Path.of(entry.getKey()), entry.getValue()) && entries.remove(entry.getKey(), entry.getValue())) {
+                pruned++;
+            }
+        }
+        if (pruned > 0) {
+            log.debug("Pruned {} stale chunk tables", pruned);
+        }
+
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var writer = BinaryWriter.open(temp)) {
+            var snapshot = Map.copyOf(entries);
+            writer.writeInt(MAGIC);
+            writer.writeInt(VERSION);
+            writer.writeInt(snapshot.size());
+            for (var entry : snapshot.entrySet()) {
+                writer.writeString(entry.getKey(), StringFormat.INT_LENGTH);
+                writer.writeLong(entry.getValue().fileSize());
+                writer.writeLong(entry.getValue().lastModified());
+                entry.getValue().table().write(writer);
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+    /**
+     * Returns the chunk table of the archive if it's present in the index, and the archive
+     * hasn't been modified since.
+     *
+     * @param file path to the archive
+     * @return the chunk table, or empty if it's missing or stale
+     * @throws IOException if an I/O error occurs while reading attributes of the archive
+     */
+    public Optional<ChunkTable> get(Path file) throws IOException {
+        var entry = entries.get(key(file));
+        if (entry == null) {
+            return Optional.empty();
+        }
+        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!entry.matches(attributes)) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.table());
+    }
+
+    /**
+     * Stores the chunk table of the archive in the index.
+     *
+     * @param file  path to the archive
+     * @param table the chunk table of the archive
+     * @throws IOException if an I/O error occurs while reading attributes of the archive
+     */
+    public void put(Path file, ChunkTable table) throws IOException {
+        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        entries.put(key(file), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), table));
+        dirty = true;
+    }
+
+    /** Returns whether the index has been modified since it was loaded or saved. */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    private static boolean isStale(Path file, Entry entry) {
+        try {
+            return !entry.matches(Files.readAttributes(file, BasicFileAttributes.class));
+        } catch (IOException e) {
+            // The archive is gone or can't be accessed
+            return true;
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
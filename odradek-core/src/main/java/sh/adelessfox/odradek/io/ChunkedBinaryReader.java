@@ -4,43 +4,72 @@ import sh.adelessfox.odradek.util.Handles;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.List;
-import java.util.NavigableMap;
+import java.util.ArrayList;
 import java.util.Objects;
-import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A reader for compressed data split into chunks.
+ * <p>
+ * The chunk table is immutable, so positional reads via
+ * {@link #readBytes(long, byte[], int, int)} can be performed concurrently from
+ * multiple threads, provided that the underlying reader supports it as well.
  */
 public abstract class ChunkedBinaryReader implements BinaryReader {
+    private static final int PARALLEL_THRESHOLD = 4;
+    private static final int SCRATCH_BUFFERS = Runtime.getRuntime().availableProcessors();
+
     public record Chunk(long offset, long compressedOffset, int size, int compressedSize) {
     }
 
+    private record Scratch(byte[] compressed, byte[] decompressed) {
+    }
+
     private final BinaryReader reader;
-    private final NavigableMap<Long, Chunk> chunks = new TreeMap<>(Long::compareUnsigned);
+    private final ChunkTable chunks;
+    private final ChunkCache cache;
+    private final ForkJoinPool pool;
 
     private final byte[] compressed;
     private final byte[] decompressed;
     private final byte[] scratch = new byte[8];
 
+    /**
+     * Buffers for positional reads, which may run concurrently. Reused across reads
+     * rather than allocated for every chunk; a read that finds no free slot allocates its own.
+     */
+    private final AtomicReferenceArray<Scratch> scratchBuffers = new AtomicReferenceArray<>(SCRATCH_BUFFERS);
+
     private ByteOrder order = ByteOrder.LITTLE_ENDIAN;
-    private Chunk chunk;
+    private int chunk = -1;
+    private byte[] chunkData;
     private long position;
 
-    protected ChunkedBinaryReader(BinaryReader reader, List<Chunk> chunks) {
-        int maxCompressedChunkSize = 0;
-        int maxDecompressedChunkSize = 0;
-
-        for (Chunk chunk : chunks) {
-            this.chunks.put(chunk.offset(), chunk);
-            maxCompressedChunkSize = Math.max(maxCompressedChunkSize, chunk.compressedSize());
-            maxDecompressedChunkSize = Math.max(maxDecompressedChunkSize, chunk.size());
-        }
+    protected ChunkedBinaryReader(BinaryReader reader, ChunkTable chunks) {
+        this(reader, chunks, null, null);
+    }
 
+    /**
+     * Creates a new reader.
+     *
+     * @param reader the reader of the compressed data
+     * @param chunks the chunk table
+     * @param cache  an optional cache of decompressed chunks, possibly shared with other readers
+     * @param pool   an optional pool used to decompress chunks in parallel when a positional
+     *               read spans at least {@value #PARALLEL_THRESHOLD} chunks
+     */
+    protected ChunkedBinaryReader(BinaryReader reader, ChunkTable chunks, ChunkCache cache, ForkJoinPool pool) {
         this.reader = reader;
-        this.compressed = new byte[maxCompressedChunkSize];
-        this.decompressed = new byte[maxDecompressedChunkSize];
+        this.chunks = chunks;
+        this.cache = cache;
+        this.pool = pool;
+        this.compressed = new byte[chunks.maxCompressedSize()];
+        this.decompressed = new byte[chunks.maxSize()];
     }
 
     @Override
@@ -70,9 +99,9 @@ public abstract class ChunkedBinaryReader implements BinaryReader {
     @Override
     public void readBytes(byte[] dst, int off, int len) throws IOException {
         while (len > 0) {
-            Chunk chunk = chunks.floorEntry(position).getValue();
-            int offset = Math.toIntExact(position - chunk.offset());
-            int length = Math.min(chunk.size() - offset, len);
+            int chunk = chunkAt(position);
+            int offset = Math.toIntExact(position - chunks.offset(chunk));
+            int length = Math.min(chunks.size(chunk) - offset, len);
 
             if (length == 0) {
                 throw new EOFException();
@@ -81,18 +110,73 @@ public abstract class ChunkedBinaryReader implements BinaryReader {
             if (this.chunk != chunk) {
                 this.chunk = chunk;
 
-                reader.position(chunk.compressedOffset());
-                reader.readBytes(compressed, 0, chunk.compressedSize());
-                decompress(compressed, chunk.compressedSize(), decompressed, chunk.size());
+                if (cache != null) {
+                    chunkData = cached(chunk);
+                } else {
+                    reader.position(chunks.compressedOffset(chunk));
+                    reader.readBytes(compressed, 0, chunks.compressedSize(chunk));
+                    decompress(compressed, 0, chunks.compressedSize(chunk), decompressed, 0, chunks.size(chunk));
+                    chunkData = decompressed;
+                }
             }
 
-            System.arraycopy(decompressed, offset, dst, off, length);
+            System.arraycopy(chunkData, offset, dst, off, length);
             position += length;
             off += length;
             len -= length;
         }
     }
 
+    @Override
+    public ByteBuffer readBulk(int count, int size) throws IOException {
+        int len = Math.multiplyExact(count, size);
+        if (chunk < 0 || position < chunks.offset(chunk) || position + len > chunks.offset(chunk) + chunks.size(chunk)) {
+            return BinaryReader.super.readBulk(count, size);
+        }
+
+        // The whole range lies within the current chunk, so it can be read without copying
+        int offset = Math.toIntExact(position - chunks.offset(chunk));
+        var buffer = ByteBuffer.wrap(chunkData, offset, len).slice().asReadOnlyBuffer().order(order);
+        position += len;
+        return buffer;
+    }
+
+    @Override
+    public void readBytes(long pos, byte[] dst, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, dst.length);
+
+        if (pool != null && len > 0 && chunkCount(pos, len) >= PARALLEL_THRESHOLD) {
+            readChunksParallel(pos, dst, off, len);
+            return;
+        }
+
+        while (len > 0) {
+            int chunk = chunkAt(pos);
+            int offset = Math.toIntExact(pos - chunks.offset(chunk));
+            int length = Math.min(chunks.size(chunk) - offset, len);
+
+            if (length <= 0) {
+                throw new EOFException();
+            }
+
+            readChunk(chunk, offset, dst, off, length);
+
+            pos += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    @Override
+    public long size() {
+        return chunks.size();
+    }
+
+    /** Returns the chunk table of this reader. */
+    public ChunkTable chunks() {
+        return chunks;
+    }
+
     @Override
     public long position() {
         return position;
@@ -118,8 +202,127 @@ public abstract class ChunkedBinaryReader implements BinaryReader {
 
     @Override
     public void close() throws IOException {
+        if (cache != null) {
+            cache.invalidate(this);
+        }
         reader.close();
     }
 
-    protected abstract void decompress(byte[] src, int srcLen, byte[] dst, int dstLen);
+    protected abstract void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen);
+
+    /**
+     * Decompresses every chunk covered by the range as a separate task, each writing into its own slice of the destination.
+     */
+    private void readChunksParallel(long pos, byte[] dst, int off, int len) throws IOException {
+        var tasks = new ArrayList<ForkJoinTask<?>>();
+
+        while (len > 0) {
+            int chunk = chunkAt(pos);
+            int offset = Math.toIntExact(pos - chunks.offset(chunk));
+            int length = Math.min(chunks.size(chunk) - offset, len);
+
+            if (length <= 0) {
+                throw new EOFException();
+            }
+
+            int taskOff = off;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                readChunk(chunk, offset, dst, taskOff, length);
+                return null;
+            }));
+
+            pos += length;
+            off += length;
+            len -= length;
+        }
+
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads {@code len} bytes of the chunk starting at {@code offset} into the destination.
+     * Only touches the pool of scratch buffers, so it can be called concurrently.
+     */
+    private void readChunk(int chunk, int offset, byte[] dst, int off, int len) throws IOException {
+        if (cache != null) {
+            System.arraycopy(cached(chunk), offset, dst, off, len);
+            return;
+        }
+
+        var scratch = acquireScratch();
+        try {
+            int compressedSize = chunks.compressedSize(chunk);
+            reader.readBytes(chunks.compressedOffset(chunk), scratch.compressed(), 0, compressedSize);
+
+            if (len == chunks.size(chunk)) {
+                // The whole chunk is requested, decompress straight into the destination
+                decompress(scratch.compressed(), 0, compressedSize, dst, off, len);
+            } else {
+                decompress(scratch.compressed(), 0, compressedSize, scratch.decompressed(), 0, chunks.size(chunk));
+                System.arraycopy(scratch.decompressed(), offset, dst, off, len);
+            }
+        } finally {
+            releaseScratch(scratch);
+        }
+    }
+
+    private int chunkCount(long pos, int len) throws IOException {
+        return chunkAt(pos + len - 1) - chunkAt(pos) + 1;
+    }
+
+    private byte[] cached(int chunk) throws IOException {
+        return cache.get(this, chunks.offset(chunk), () -> {
+            // The decompressed chunk is kept by the cache, so only the compressed data can go to a scratch buffer
+            var dst = new byte[chunks.size(chunk)];
+            var scratch = acquireScratch();
+            try {
+                int compressedSize = chunks.compressedSize(chunk);
+                reader.readBytes(chunks.compressedOffset(chunk), scratch.compressed(), 0, compressedSize);
+                decompress(scratch.compressed(), 0, compressedSize, dst, 0, dst.length);
+            } finally {
+                releaseScratch(scratch);
+            }
+            return dst;
+        });
+    }
+
+    private Scratch acquireScratch() {
+        for (int i = 0; i < SCRATCH_BUFFERS; i++) {
+            var scratch = scratchBuffers.getAndSet(i, null);
+            if (scratch != null) {
+                return scratch;
+            }
+        }
+        return new Scratch(new byte[chunks.maxCompressedSize()], new byte[chunks.maxSize()]);
+    }
+
+    private void releaseScratch(Scratch scratch) {
+        for (int i = 0; i < SCRATCH_BUFFERS; i++) {
+            if (scratchBuffers.compareAndSet(i, null, scratch)) {
+                return;
+            }
+        }
+    }
+
+    private int chunkAt(long pos) throws IOException {
+        int index = chunks.indexOf(pos);
+        if (index < 0) {
+            throw new EOFException("No chunk found at position " + pos);
+        }
+        return index;
+    }
 }
@@ -5,7 +5,7 @@ import wtf.reversed.toolbox.compress.Decompressor;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A reader for DirectStorage archives.
@@ -13,19 +13,43 @@ import java.util.List;
  * @see <a href="https://github.com/ShadelessFox/decima/wiki/Archives#directstorage-archive">DirectStorage archive format</a>
  */
 public final class DirectStorageReader extends ChunkedBinaryReader {
-    private final Header header;
-
-    private DirectStorageReader(BinaryReader reader, Header header, List<Chunk> chunks) {
-        super(reader, chunks);
-        this.header = header;
+    private DirectStorageReader(BinaryReader reader, ChunkTable chunks, ChunkCache cache, ForkJoinPool pool) {
+        super(reader, chunks, cache, pool);
     }
 
     public static BinaryReader open(Path path) throws IOException {
+        return open(path, null, null, null);
+    }
+
+    public static BinaryReader open(Path path, ChunkCache cache, ForkJoinPool pool) throws IOException {
+        return open(path, null, cache, pool);
+    }
+
+    /**
+     * Opens a DirectStorage archive.
+     * <p>
+     * If an index is specified, the chunk table is taken from it when it's up to date, so the
+     * header and the chunk table of the archive are not read at all. Otherwise, the parsed chunk
+     * table is stored in the index.
+     *
+     * @param path  path to the archive
+     * @param index an optional index of chunk tables, can be shared between multiple archives
+     * @param cache an optional cache for decompressed chunks, can be shared between multiple archives
+     * @param pool  an optional pool for decompressing chunks of large reads in parallel
+     * @return a reader over the decompressed contents of the archive
+     * @throws IOException if an I/O error occurs, or the file is not a DirectStorage archive
+     */
+    public static BinaryReader open(Path path, ChunkTableIndex index, ChunkCache cache, ForkJoinPool pool) throws IOException {
         var reader = BinaryReader.open(path);
         try {
-            var header = Header.read(reader);
-            var chunks = reader.readObjects(header.chunkCount(), DirectStorageReader::readChunk);
-            return new DirectStorageReader(reader, header, chunks);
+            var chunks = index != null ? index.get(path).orElse(null) : null;
+            if (chunks == null) {
+                chunks = readChunks(reader);
+                if (index != null) {
+                    index.put(path, chunks);
+                }
+            }
+            return new DirectStorageReader(reader, chunks, cache, pool);
         } catch (IOException e) {
             reader.close(); // don't want to leak the file handle if we fail to read the header
             throw e;
@@ -33,13 +57,8 @@ public final class DirectStorageReader extends ChunkedBinaryReader {
     }
 
     @Override
-    public long size() {
-        return header.totalSize;
-    }
-
-    @Override
-    protected void decompress(byte[] src, int srcLen, byte[] dst, int dstLen) {
-        Decompressor.lz4Block().decompress(Bytes.wrap(src, 0, srcLen), Bytes.Mutable.wrap(dst, 0, dstLen));
+    protected void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) {
+        Decompressor.lz4Block().decompress(Bytes.wrap(src, srcOff, srcLen), Bytes.Mutable.wrap(dst, dstOff, dstLen));
     }
 
     @Override
@@ -47,6 +66,12 @@ public final class DirectStorageReader extends ChunkedBinaryReader {
         return "DirectStorageReader[position=" + position() + ", size=" + size() + "]";
     }
 
+    private static ChunkTable readChunks(BinaryReader reader) throws IOException {
+        var header = Header.read(reader);
+        var chunks = reader.readObjects(header.chunkCount(), DirectStorageReader::readChunk);
+        return ChunkTable.of(chunks, header.totalSize());
+    }
+
     private static Chunk readChunk(BinaryReader reader) throws IOException {
         var offset = reader.readLong();
         var compressedOffset = reader.readLong();
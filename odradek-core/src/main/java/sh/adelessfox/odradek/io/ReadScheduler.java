@@ -0,0 +1,101 @@
+package sh.adelessfox.odradek.io;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Performs batches of positional reads from multiple files.
+ * <p>
+ * Requests are grouped by file and sorted by offset. Requests that overlap or are separated
+ * by at most {@value #MAX_GAP} bytes are merged into a single read, as long as the merged read
+ * doesn't exceed {@value #MAX_MERGED_LENGTH} bytes. Each merged read is then split back into
+ * the requested ranges. This turns many small random reads into fewer mostly sequential ones,
+ * and for compressed files, ensures that each chunk is decompressed at most once per batch.
+ */
+public final class ReadScheduler {
+    private static final int MAX_GAP = 16 * 1024;
+    private static final int MAX_MERGED_LENGTH = 16 * 1024 * 1024;
+
+    public record Request(String file, long offset, int length) {
+        public Request {
+            Objects.requireNonNull(file, "file");
+            if (offset < 0 || length < 0) {
+                throw new IllegalArgumentException("offset and length must be non-negative");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Resolver {
+        BinaryReader resolve(String file) throws IOException;
+    }
+
+    private ReadScheduler() {
+    }
+
+    /**
+     * Performs all requests.
+     *
+     * @param requests requests to perform
+     * @param resolver resolver of readers by file name; readers must support positional reads
+     * @return data of each request, in the order of requests
+     * @throws IOException if an I/O error occurs
+     */
+    public static List<byte[]> read(List<Request> requests, Resolver resolver) throws IOException {
+        var results = new byte[requests.size()][];
+        var byFile = new TreeMap<String, List<Integer>>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            byFile.computeIfAbsent(requests.get(i).file(), _ -> new ArrayList<>()).add(i);
+        }
+
+        for (var entry : byFile.entrySet()) {
+            var indices = entry.getValue();
+            indices.sort(Comparator.comparingLong(i -> requests.get(i).offset()));
+            readFile(resolver.resolve(entry.getKey()), requests, indices, results);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private static void readFile(BinaryReader reader, List<Request> requests, List<Integer> indices, byte[][] results) throws IOException {
+        int start = 0;
+        while (start < indices.size()) {
+            var first = requests.get(indices.get(start));
+            long begin = first.offset();
+            long end = first.offset() + first.length();
+
+            int next = start + 1;
+            while (next < indices.size()) {
+                var request = requests.get(indices.get(next));
+                long requestEnd = request.offset() + request.length();
+                if (request.offset() - end > MAX_GAP || Math.max(end, requestEnd) - begin > MAX_MERGED_LENGTH) {
+                    break;
+                }
+                end = Math.max(end, requestEnd);
+                next++;
+            }
+
+            if (next - start == 1) {
+                results[indices.get(start)] = readRange(reader, begin, first.length());
+            } else {
+                var merged = readRange(reader, begin, Math.toIntExact(end - begin));
+                for (int i = start; i < next; i++) {
+                    var request = requests.get(indices.get(i));
+                    int from = Math.toIntExact(request.offset() - begin);
+                    results[indices.get(i)] = Arrays.copyOfRange(merged, from, from + request.length());
+                }
+            }
+
+            start = next;
+        }
+    }
+
+    private static byte[] readRange(BinaryReader reader, long offset, int length) throws IOException {
+        var buffer = new byte[length];
+        if (length > 0) {
+            reader.readBytes(offset, buffer, 0, length);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,271 @@
+package sh.adelessfox.odradek.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reader backed by a {@link MemorySegment}, usually a memory-mapped file.
+ * <p>
+ * Unlike {@link ChannelBinaryReader}, reads don't go through an intermediate buffer,
+ * and segments are indexed by {@code long}, so files larger than 2 GiB are supported.
+ * <p>
+ * Positional reads may run concurrently with {@link #close()}: the mapping is released once
+ * the last of them completes, and reads that start after that fail with {@link ClosedChannelException}.
+ * Sequential reads belong to the thread that owns the reader and must complete before it's closed.
+ * Buffers returned by {@link #readBuffer(long, int)} are views of the mapping and must not be used
+ * after the reader is closed; {@link #readBulk(int, int)} returns a copy instead.
+ */
+final class SegmentBinaryReader implements BinaryReader {
+    private static final ValueLayout.OfShort SHORT_LE = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfShort SHORT_BE = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfInt INT_LE = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT_BE = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG_LE = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG_BE = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT_LE = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT_BE = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE_LE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfDouble DOUBLE_BE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    /** Set in {@link #state} once the reader is closed; the remaining bits count active positional reads. */
+    private static final int CLOSED = 1 << 31;
+
+    private final MemorySegment segment;
+    private final Arena arena;
+    private final AtomicInteger state = new AtomicInteger();
+    private long position;
+    private ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+
+    SegmentBinaryReader(MemorySegment segment, Arena arena) {
+        this.segment = segment;
+        this.arena = arena;
+    }
+
+    static SegmentBinaryReader map(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // A shared arena is required so the mapping can be accessed from any thread
+            var arena = Arena.ofShared();
+            try {
+                var segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+                return new SegmentBinaryReader(segment, arena);
+            } catch (IOException e) {
+                arena.close();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void readBytes(byte[] dst, int off, int len) throws IOException {
+        readBytes(position, dst, off, len);
+        position += len;
+    }
+
+    @Override
+    public void readBytes(long pos, byte[] dst, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, dst.length);
+        if (pos < 0 || pos + len > segment.byteSize()) {
+            throw new EOFException();
+        }
+        acquire();
+        try {
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, pos, dst, off, len);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public void readBytes(long pos, ByteBuffer dst) throws IOException {
+        int len = dst.remaining();
+        if (pos < 0 || pos + len > segment.byteSize()) {
+            throw new EOFException();
+        }
+        acquire();
+        try {
+            MemorySegment.copy(segment, pos, MemorySegment.ofBuffer(dst), 0, len);
+        } finally {
+            release();
+        }
+        dst.position(dst.position() + len);
+    }
+
+    @Override
+    public ByteBuffer readBuffer(long pos, int len) throws IOException {
+        if (pos < 0 || len < 0 || pos + len > segment.byteSize()) {
+            throw new EOFException();
+        }
+        if ((state.get() & CLOSED) != 0) {
+            throw new ClosedChannelException();
+        }
+        return segment.asSlice(pos, len).asByteBuffer().asReadOnlyBuffer();
+    }
+
+    @Override
+    public ByteBuffer readBulk(int count, int size) throws IOException {
+        int len = Math.multiplyExact(count, size);
+        ensure(len);
+        // Copied so the buffer doesn't keep referring to the mapping once the reader is closed
+        var buffer = ByteBuffer.allocate(len).order(order);
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, buffer.array(), 0, len);
+        position += len;
+        return buffer;
+    }
+
+    @Override
+    public short[] readShorts(int count) throws IOException {
+        var dst = new short[count];
+        readArray(order == ByteOrder.LITTLE_ENDIAN ? SHORT_LE : SHORT_BE, dst, count);
+        return dst;
+    }
+
+    @Override
+    public int[] readInts(int count) throws IOException {
+        var dst = new int[count];
+        readArray(order == ByteOrder.LITTLE_ENDIAN ? INT_LE : INT_BE, dst, count);
+        return dst;
+    }
+
+    @Override
+    public long[] readLongs(int count) throws IOException {
+        var dst = new long[count];
+        readArray(order == ByteOrder.LITTLE_ENDIAN ? LONG_LE : LONG_BE, dst, count);
+        return dst;
+    }
+
+    @Override
+    public float[] readFloats(int count) throws IOException {
+        var dst = new float[count];
+        readArray(order == ByteOrder.LITTLE_ENDIAN ? FLOAT_LE : FLOAT_BE, dst, count);
+        return dst;
+    }
+
+    @Override
+    public double[] readDoubles(int count) throws IOException {
+        var dst = new double[count];
+        readArray(order == ByteOrder.LITTLE_ENDIAN ? DOUBLE_LE : DOUBLE_BE, dst, count);
+        return dst;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        ensure(Byte.BYTES);
+        var value = segment.get(ValueLayout.JAVA_BYTE, position);
+        position += Byte.BYTES;
+        return value;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        ensure(Short.BYTES);
+        var value = segment.get(order == ByteOrder.LITTLE_ENDIAN ? SHORT_LE : SHORT_BE, position);
+        position += Short.BYTES;
+        return value;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        var value = segment.get(order == ByteOrder.LITTLE_ENDIAN ? INT_LE : INT_BE, position);
+        position += Integer.BYTES;
+        return value;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        ensure(Long.BYTES);
+        var value = segment.get(order == ByteOrder.LITTLE_ENDIAN ? LONG_LE : LONG_BE, position);
+        position += Long.BYTES;
+        return value;
+    }
+
+    @Override
+    public long size() {
+        return segment.byteSize();
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public BinaryReader position(long pos) {
+        Objects.checkIndex(pos, segment.byteSize() + 1);
+        this.position = pos;
+        return this;
+    }
+
+    @Override
+    public ByteOrder order() {
+        return order;
+    }
+
+    @Override
+    public BinaryReader order(ByteOrder order) {
+        this.order = order;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        int previous = state.getAndUpdate(current -> current | CLOSED);
+        if (previous == 0) {
+            closeArena();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentBinaryReader[position=" + position + ", size=" + size() + "]";
+    }
+
+    private void readArray(ValueLayout layout, Object dst, int count) throws IOException {
+        int len = Math.multiplyExact(count, Math.toIntExact(layout.byteSize()));
+        ensure(len);
+        MemorySegment.copy(segment, layout, position, dst, 0, count);
+        position += len;
+    }
+
+    private void acquire() throws IOException {
+        while (true) {
+            int current = state.get();
+            if ((current & CLOSED) != 0) {
+                throw new ClosedChannelException();
+            }
+            if (state.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void release() {
+        // The reader was closed while this read was in progress, and it was the last one
+        if (state.decrementAndGet() == CLOSED) {
+            closeArena();
+        }
+    }
+
+    private void closeArena() {
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
+    private void ensure(int count) throws IOException {
+        if (segment.byteSize() - position < count) {
+            throw new EOFException("Expected to read " + count + " bytes, but only " + (segment.byteSize() - position) + " bytes are available");
+        }
+    }
+}
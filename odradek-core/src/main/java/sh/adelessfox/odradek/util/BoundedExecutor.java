@@ -0,0 +1,154 @@
+package sh.adelessfox.odradek.util;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An executor that runs each task on its own virtual thread, while allowing at most
+ * a limited number of tasks to run at the same time. Excess tasks wait for their turn.
+ * <p>
+ * Cancelling a returned future prevents the task from starting if it's still waiting.
+ * Tasks that have already started are never interrupted, because interrupting a thread
+ * blocked in a {@link java.nio.channels.FileChannel} operation closes the channel for
+ * all of its users; the result of such a task is discarded instead.
+ * <p>
+ * Closing the executor cancels tasks that are still waiting and waits for running tasks to finish.
+ * Futures of tasks submitted after that complete exceptionally with {@link RejectedExecutionException}.
+ */
+public final class BoundedExecutor implements AutoCloseable {
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<CompletableFuture<?>> waiting = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private volatile boolean closed;
+    private int limit;
+    private int running;
+
+    public BoundedExecutor(int limit) {
+        setLimit(limit);
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> callable) {
+        var future = new CompletableFuture<T>();
+        var state = new AtomicInteger(WAITING);
+        waiting.add(future);
+        if (closed) {
+            // Checked after enqueueing: either close() sees the future, or the future sees the flag
+            waiting.remove(future);
+            future.completeExceptionally(new RejectedExecutionException("Executor is closed"));
+            return future;
+        }
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    acquire();
+                } catch (InterruptedException e) {
+                    future.cancel(false);
+                    return;
+                }
+                try {
+                    if (state.compareAndSet(WAITING, RUNNING)) {
+                        waiting.remove(future);
+                        future.complete(callable.call());
+                    }
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor was shut down by a concurrent close()
+            waiting.remove(future);
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.whenComplete((_, _) -> {
+            waiting.remove(future);
+            if (future.isCancelled() && state.compareAndSet(WAITING, CANCELLED)) {
+                // Safe to interrupt: the task is still waiting for its turn
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the maximum number of tasks that can run at the same time. Lowering the limit
+     * doesn't affect tasks that are already running.
+     *
+     * @param limit the new limit, must be positive
+     */
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        lock.lock();
+        try {
+            this.limit = limit;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels all tasks that are still waiting for their turn and waits for running tasks to finish.
+     * Running tasks are not interrupted. If the calling thread is interrupted while waiting,
+     * returns early and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (CompletableFuture<?> future : waiting) {
+            future.cancel(false);
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting for running tasks
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (running >= limit) {
+                available.await();
+            }
+            running++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            running--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package sh.adelessfox.odradek.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe cache bounded by the total weight of its values, usually their estimated size in bytes.
+ * <p>
+ * Entries are evicted in least-recently-used order. When an {@link Admission#TINY_LFU admission policy}
+ * is used, a new entry that would cause an eviction is only admitted if it has been requested more often
+ * than the entry it would evict, so one-off entries don't flush frequently used ones.
+ * <p>
+ * With {@link Retention#SOFT soft retention}, values may additionally be reclaimed by the garbage
+ * collector under memory pressure. Weights of reclaimed values are released on the next write, or
+ * periodically on reads.
+ * <p>
+ * Reads don't take a lock: values are looked up in a concurrent map, and reads are recorded in a lossy
+ * buffer that is replayed into the eviction order and the admission sketch by whichever thread gets
+ * the lock first. Writes are serialized.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public final class WeightedCache<K, V> {
+    public enum Retention {
+        /** Values are held until evicted. */
+        STRONG,
+        /** Values are held until evicted, or reclaimed by the garbage collector under memory pressure. */
+        SOFT
+    }
+
+    public enum Admission {
+        /** All entries are admitted. */
+        ALWAYS,
+        /** Entries are admitted based on their estimated access frequency. */
+        TINY_LFU
+    }
+
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    public record Stats(long hits, long misses, long evictions, long rejections, long residentWeight) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+    }
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int DRAIN_INTERVAL = 32;
+
+    private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+    private final LinkedHashMap<K, Entry<K, V>> order = new LinkedHashMap<>(16, 0.75f, true); // guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicReferenceArray<K> reads = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readCount = new AtomicLong();
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+    private final FrequencySketch sketch; // guarded by lock
+    private final Weigher<? super K, ? super V> weigher;
+    private final Retention retention;
+    private final long maxWeight;
+    private long weight; // guarded by lock
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public WeightedCache(long maxWeight, Weigher<? super K, ? super V> weigher, Retention retention, Admission admission) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight must be non-negative");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = Objects.requireNonNull(weigher, "weigher");
+        this.retention = Objects.requireNonNull(retention, "retention");
+        this.sketch = admission == Admission.TINY_LFU ? new FrequencySketch() : null;
+    }
+
+    public V get(K key) {
+        recordRead(key);
+
+        var entry = map.get(key);
+        var value = entry != null ? entry.value() : null;
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return value;
+    }
+
+    /**
+     * Returns the cached value without recording a hit or a miss, or an access for the admission policy.
+     */
+    public V peek(K key) {
+        var entry = map.get(key);
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * Puts the value into the cache. The value may be rejected if it's heavier than the
+     * whole cache, or if it's not admitted by the admission policy.
+     *
+     * @return {@code true} if the value was cached, {@code false} if it was rejected
+     */
+    public boolean put(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        long entryWeight = weigher.weigh(key, value);
+
+        lock.lock();
+        try {
+            maintain();
+
+            if (entryWeight > maxWeight) {
+                rejections.increment();
+                return false;
+            }
+
+            var existing = order.remove(key);
+            if (existing != null) {
+                map.remove(key, existing);
+                weight -= existing.weight;
+            }
+
+            if (weight + entryWeight > maxWeight && sketch != null && existing == null) {
+                var victim = order.firstEntry();
+                if (victim != null && sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+                    rejections.increment();
+                    return false;
+                }
+            }
+
+            var iterator = order.values().iterator();
+            while (weight + entryWeight > maxWeight && iterator.hasNext()) {
+                var victim = iterator.next();
+                iterator.remove();
+                map.remove(victim.key, victim);
+                weight -= victim.weight;
+                evictions.increment();
+            }
+
+            var entry = new Entry<>(key, value, entryWeight, retention, queue);
+            order.put(key, entry);
+            map.put(key, entry);
+            weight += entryWeight;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            maintain();
+            order.clear();
+            map.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            maintain();
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a read in a lossy buffer that is replayed into the eviction order and the sketch later,
+     * so reads don't contend on the lock. Reads lost to overwriting only make the order less precise.
+     */
+    private void recordRead(K key) {
+        long count = readCount.getAndIncrement();
+        reads.lazySet((int) (count & (READ_BUFFER_SIZE - 1)), key);
+        if ((count + 1) % DRAIN_INTERVAL == 0 && lock.tryLock()) {
+            try {
+                maintain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays buffered reads and releases weights of values reclaimed by the garbage collector.
+     */
+    @SuppressWarnings("unchecked")
+    private void maintain() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            var key = reads.getAndSet(i, null);
+            if (key != null) {
+                if (sketch != null) {
+                    sketch.increment(key);
+                }
+                // Moves the entry to the end of the access order
+                order.get(key);
+            }
+        }
+
+        for (SoftValue<K, V> ref; (ref = (SoftValue<K, V>) queue.poll()) != null; ) {
+            var entry = order.get(ref.entry.key);
+            if (entry == ref.entry) {
+                order.remove(entry.key);
+                map.remove(entry.key, entry);
+                weight -= entry.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private final long weight;
+        private final V strong;
+        private final SoftValue<K, V> soft;
+
+        Entry(K key, V value, long weight, Retention retention, ReferenceQueue<V> queue) {
+            this.key = key;
+            this.weight = weight;
+            this.strong = retention == Retention.STRONG ? value : null;
+            this.soft = retention == Retention.SOFT ? new SoftValue<>(value, this, queue) : null;
+        }
+
+        V value() {
+            return soft != null ? soft.get() : strong;
+        }
+    }
+
+    private static final class SoftValue<K, V> extends SoftReference<V> {
+        private final Entry<K, V> entry;
+
+        SoftValue(V referent, Entry<K, V> entry, ReferenceQueue<? super V> queue) {
+            super(referent, queue);
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters that estimates how often keys are accessed.
+     * Counters are halved periodically, so the estimates favor recent accesses.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int WIDTH = 1 << 14;
+        private static final int RESET_THRESHOLD = WIDTH * 10;
+        private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+
+        private final byte[][] counters = new byte[DEPTH][WIDTH];
+        private int additions;
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            for (int i = 0; i < DEPTH; i++) {
+                byte[] row = counters[i];
+                int index = index(hash, i);
+                if (row[index] < 15) {
+                    row[index]++;
+                }
+            }
+            if (++additions >= RESET_THRESHOLD) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, counters[i][index(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+            additions /= 2;
+        }
+
+        private static int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            return (h ^ h >>> 16) & (WIDTH - 1);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package sh.adelessfox.odradek.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCacheTest {
+    private static final int SEGMENTS = 16;
+
+    @Test
+    void cachedChunkIsLoadedOnce() throws IOException {
+        var cache = new ChunkCache(1024 * 1024);
+        var source = new Object();
+        var loads = new AtomicInteger();
+
+        var first = cache.get(source, 0, () -> load(loads, 100));
+        var second = cache.get(source, 0, () -> load(loads, 100));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(new ChunkCache.Stats(1, 1, 0, 0, 100), cache.stats());
+    }
+
+    @Test
+    void chunksAreEvictedToStayWithinBound() throws IOException {
+        // Each segment can hold at most one chunk
+        var cache = new ChunkCache(SEGMENTS * 100);
+        var source = new Object();
+        var loads = new AtomicInteger();
+
+        for (int i = 0; i < 64; i++) {
+            cache.get(source, i * 60L, () -> load(loads, 60));
+        }
+
+        var stats = cache.stats();
+        assertEquals(64, stats.misses());
+        assertTrue(stats.residentBytes() <= SEGMENTS * 60, "resident bytes: " + stats.residentBytes());
+        assertEquals(64 - stats.residentBytes() / 60, stats.evictions());
+    }
+
+    @Test
+    void chunkLargerThanSegmentIsNotCached() throws IOException {
+        var cache = new ChunkCache(SEGMENTS * 100);
+        var source = new Object();
+        var loads = new AtomicInteger();
+
+        cache.get(source, 0, () -> load(loads, 101));
+        cache.get(source, 0, () -> load(loads, 101));
+
+        assertEquals(2, loads.get());
+
+        var stats = cache.stats();
+        assertEquals(2, stats.rejections());
+        assertEquals(0, stats.evictions());
+        assertEquals(0, stats.residentBytes());
+    }
+
+    @Test
+    void concurrentMissesLoadChunkOnce() throws Exception {
+        var cache = new ChunkCache(1024 * 1024);
+        var source = new Object();
+        var loads = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var gate = new CountDownLatch(1);
+
+        var first = CompletableFuture.supplyAsync(() -> get(cache, source, () -> {
+            started.countDown();
+            gate.await();
+            return load(loads, 100);
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        var second = CompletableFuture.supplyAsync(() -> get(cache, source, () -> load(loads, 100)));
+        Thread.sleep(50);
+        gate.countDown();
+
+        assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void chunkLoadedWhileSourceIsInvalidatedIsNotCached() throws Exception {
+        var cache = new ChunkCache(1024 * 1024);
+        var source = new Object();
+        var loads = new AtomicInteger();
+
+        cache.get(source, 0, () -> {
+            cache.invalidate(source);
+            return load(loads, 100);
+        });
+        cache.get(source, 0, () -> load(loads, 100));
+
+        assertEquals(2, loads.get());
+        assertEquals(100, cache.stats().residentBytes());
+    }
+
+    @Test
+    void invalidateDiscardsOnlyChunksOfSource() throws IOException {
+        var cache = new ChunkCache(1024 * 1024);
+        var source1 = new Object();
+        var source2 = new Object();
+        var loads1 = new AtomicInteger();
+        var loads2 = new AtomicInteger();
+
+        for (int i = 0; i < 8; i++) {
+            cache.get(source1, i * 100L, () -> load(loads1, 100));
+            cache.get(source2, i * 100L, () -> load(loads2, 100));
+        }
+        assertEquals(1600, cache.stats().residentBytes());
+
+        cache.invalidate(source1);
+        assertEquals(800, cache.stats().residentBytes());
+
+        for (int i = 0; i < 8; i++) {
+            cache.get(source1, i * 100L, () -> load(loads1, 100));
+            cache.get(source2, i * 100L, () -> load(loads2, 100));
+        }
+
+        assertEquals(16, loads1.get());
+        assertEquals(8, loads2.get());
+        assertEquals(0, cache.stats().evictions());
+    }
+
+    @Test
+    void loaderFailureIsPropagatedAndNotCached() throws IOException {
+        var cache = new ChunkCache(1024 * 1024);
+        var source = new Object();
+
+        assertThrows(IOException.class, () -> cache.get(source, 0, () -> {
+            throw new IOException("broken chunk");
+        }));
+        assertEquals(100, cache.get(source, 0, () -> new byte[100]).length);
+    }
+
+    private interface InterruptibleLoader {
+        byte[] load() throws InterruptedException;
+    }
+
+    private static byte[] get(ChunkCache cache, Object source, InterruptibleLoader loader) {
+        try {
+            return cache.get(source, 0, () -> {
+                try {
+                    return loader.load();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] load(AtomicInteger loads, int size) {
+        loads.incrementAndGet();
+        return new byte[size];
+    }
+}
@@ -0,0 +1,112 @@
+package sh.adelessfox.odradek.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkTableIndexTest {
+    private static final ChunkTable TABLE = ChunkTable.of(
+        List.of(new ChunkedBinaryReader.Chunk(0, 0, 100, 60)),
+        100
+    );
+
+    @Test
+    void indexCanBeSavedAndLoaded() throws IOException {
+        var dir = Files.createTempDirectory("odradek");
+        try {
+            var archive = Files.write(dir.resolve("archive.bin"), new byte[16]);
+            var path = dir.resolve("index.bin");
+
+            var index = new ChunkTableIndex();
+            index.put(archive, TABLE);
+            assertTrue(index.isDirty());
+            index.save(path);
+            assertFalse(index.isDirty());
+
+            assertEquals(Optional.of(TABLE), ChunkTableIndex.load(path).get(archive));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    void modifiedArchiveIsNotFound() throws IOException {
+        var dir = Files.createTempDirectory("odradek");
+        try {
+            var archive = Files.write(dir.resolve("archive.bin"), new byte[16]);
+
+            var index = new ChunkTableIndex();
+            index.put(archive, TABLE);
+            Files.write(archive, new byte[32]);
+
+            assertEquals(Optional.empty(), index.get(archive));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    void staleEntriesArePrunedOnSave() throws IOException {
+        var dir = Files.createTempDirectory("odradek");
+        try {
+            var kept = Files.write(dir.resolve("kept.bin"), new byte[16]);
+            var removed = Files.write(dir.resolve("removed.bin"), new byte[16]);
+            var lastModified = Files.getLastModifiedTime(removed);
+            var path = dir.resolve("index.bin");
+
+            var index = new ChunkTableIndex();
+            index.put(kept, TABLE);
+            index.put(removed, TABLE);
+
+            Files.delete(removed);
+            index.save(path);
+
+            // An identical archive appears again; its entry must not have survived the save
+            Files.write(removed, new byte[16]);
+            Files.setLastModifiedTime(removed, lastModified);
+
+            var loaded = ChunkTableIndex.load(path);
+            assertEquals(Optional.of(TABLE), loaded.get(kept));
+            assertEquals(Optional.empty(), loaded.get(removed));
+            assertEquals(Optional.empty(), index.get(removed));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    void corruptIndexIsEmpty() throws IOException {
+        var dir = Files.createTempDirectory("odradek");
+        try {
+            var archive = Files.write(dir.resolve("archive.bin"), new byte[16]);
+            var path = dir.resolve("index.bin");
+
+            var index = new ChunkTableIndex();
+            index.put(archive, TABLE);
+            index.save(path);
+
+            var data = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(data, data.length - 8));
+
+            assertEquals(Optional.empty(), ChunkTableIndex.load(path).get(archive));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
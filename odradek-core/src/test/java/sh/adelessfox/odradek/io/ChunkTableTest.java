@@ -0,0 +1,90 @@
+package sh.adelessfox.odradek.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkTableTest {
+    private static final ChunkTable TABLE = ChunkTable.of(
+        List.of(
+            new ChunkedBinaryReader.Chunk(200, 130, 50, 20),
+            new ChunkedBinaryReader.Chunk(0, 0, 100, 60),
+            new ChunkedBinaryReader.Chunk(100, 60, 100, 70)
+        ),
+        250
+    );
+
+    @Test
+    void chunksAreSortedByOffset() {
+        assertEquals(3, TABLE.count());
+        assertEquals(0, TABLE.offset(0));
+        assertEquals(100, TABLE.offset(1));
+        assertEquals(200, TABLE.offset(2));
+        assertEquals(60, TABLE.compressedOffset(1));
+        assertEquals(70, TABLE.compressedSize(1));
+        assertEquals(100, TABLE.maxSize());
+        assertEquals(70, TABLE.maxCompressedSize());
+    }
+
+    @Test
+    void indexOfFindsChunkAtBoundaries() {
+        assertEquals(0, TABLE.indexOf(0));
+        assertEquals(0, TABLE.indexOf(99));
+        assertEquals(1, TABLE.indexOf(100));
+        assertEquals(1, TABLE.indexOf(199));
+        assertEquals(2, TABLE.indexOf(200));
+        assertEquals(2, TABLE.indexOf(249));
+    }
+
+    @Test
+    void offsetsAreUnsigned() {
+        var table = ChunkTable.of(
+            List.of(
+                new ChunkedBinaryReader.Chunk(0x8000_0000_0000_0000L, 160, 256, 40),
+                new ChunkedBinaryReader.Chunk(0x7fff_ffff_ffff_ff00L, 100, 256, 60),
+                new ChunkedBinaryReader.Chunk(0x100, 0, 256, 100)
+            ),
+            0x8000_0000_0000_0100L
+        );
+
+        assertEquals(0x100, table.offset(0));
+        assertEquals(0x7fff_ffff_ffff_ff00L, table.offset(1));
+        assertEquals(0x8000_0000_0000_0000L, table.offset(2));
+
+        assertEquals(-1, table.indexOf(0xff));
+        assertEquals(0, table.indexOf(0x100));
+        assertEquals(1, table.indexOf(0x7fff_ffff_ffff_ffffL));
+        assertEquals(2, table.indexOf(0x8000_0000_0000_0000L));
+        assertEquals(2, table.indexOf(-1));
+    }
+
+    @Test
+    void indexOfInEmptyTable() {
+        var table = ChunkTable.of(List.of(), 0);
+        assertEquals(-1, table.indexOf(0));
+        assertEquals(0, table.maxSize());
+    }
+
+    @Test
+    void tableCanBeWrittenAndRead() throws IOException {
+        var writer = new BytesBinaryWriter();
+        TABLE.write(writer);
+
+        var table = ChunkTable.read(BinaryReader.wrap(writer.toByteArray()));
+        assertEquals(TABLE, table);
+        assertEquals(250, table.size());
+    }
+
+    @Test
+    void readRejectsInvalidCount() {
+        var writer = new BytesBinaryWriter();
+        writer.writeLong(250);
+        writer.writeInt(Integer.MAX_VALUE);
+        writer.writeLong(0);
+
+        assertThrows(IOException.class, () -> ChunkTable.read(BinaryReader.wrap(writer.toByteArray())));
+    }
+}
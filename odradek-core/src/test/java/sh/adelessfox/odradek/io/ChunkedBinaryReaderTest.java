@@ -0,0 +1,129 @@
+package sh.adelessfox.odradek.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedBinaryReaderTest {
+    private static final int[] CHUNK_SIZES = {1000, 4096, 17, 4096, 2500, 4096, 300, 4096, 4096, 1};
+
+    @Test
+    void positionalReadsMatchData() throws IOException {
+        var data = data();
+        try (var reader = open(data, null, null)) {
+            assertReadsMatch(data, reader, new Random(42));
+        }
+    }
+
+    @Test
+    void parallelPositionalReadsMatchData() throws IOException {
+        var data = data();
+        try (var reader = open(data, null, ForkJoinPool.commonPool())) {
+            assertReadsMatch(data, reader, new Random(42));
+        }
+    }
+
+    @Test
+    void cachedPositionalReadsMatchData() throws IOException {
+        var data = data();
+        var cache = new ChunkCache(1024 * 1024);
+        try (var reader = open(data, cache, ForkJoinPool.commonPool())) {
+            assertReadsMatch(data, reader, new Random(42));
+            assertReadsMatch(data, reader, new Random(43));
+        }
+        assertEquals(0, cache.stats().residentBytes());
+    }
+
+    @Test
+    void concurrentPositionalReadsMatchData() throws Exception {
+        var data = data();
+        var failure = new AtomicReference<Throwable>();
+        var threads = new ArrayList<Thread>();
+
+        try (var reader = open(data, null, ForkJoinPool.commonPool())) {
+            for (int i = 0; i < 8; i++) {
+                int seed = i;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        assertReadsMatch(data, reader, new Random(seed));
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        assertNull(failure.get());
+    }
+
+    @Test
+    void sequentialReadsMatchData() throws IOException {
+        var data = data();
+        try (var reader = open(data, null, null)) {
+            reader.position(990);
+            assertArrayEquals(Arrays.copyOfRange(data, 990, 6000), reader.readBytes(5010));
+            assertEquals(6000, reader.position());
+        }
+    }
+
+    private static void assertReadsMatch(byte[] data, BinaryReader reader, Random random) throws IOException {
+        for (int i = 0; i < 200; i++) {
+            int pos = random.nextInt(data.length);
+            int len = random.nextInt(data.length - pos + 1);
+            var dst = new byte[len + 2];
+            reader.readBytes(pos, dst, 1, len);
+            if (!Arrays.equals(data, pos, pos + len, dst, 1, len + 1)) {
+                fail("Read of %d bytes at %d differs".formatted(len, pos));
+            }
+        }
+    }
+
+    private static byte[] data() {
+        int size = 0;
+        for (int chunkSize : CHUNK_SIZES) {
+            size += chunkSize;
+        }
+        var data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    private static ChunkedBinaryReader open(byte[] data, ChunkCache cache, ForkJoinPool pool) {
+        var chunks = new ArrayList<ChunkedBinaryReader.Chunk>();
+        var compressed = new byte[data.length];
+        long offset = 0;
+        for (int size : CHUNK_SIZES) {
+            chunks.add(new ChunkedBinaryReader.Chunk(offset, offset, size, size));
+            offset += size;
+        }
+        for (int i = 0; i < data.length; i++) {
+            compressed[i] = (byte) (data[i] ^ 0x5a);
+        }
+        return new XorBinaryReader(BinaryReader.wrap(compressed), ChunkTable.of(chunks, data.length), cache, pool);
+    }
+
+    /** A "compression" that keeps the size, so reads of the wrong chunk or range are detected. */
+    private static final class XorBinaryReader extends ChunkedBinaryReader {
+        XorBinaryReader(BinaryReader reader, ChunkTable chunks, ChunkCache cache, ForkJoinPool pool) {
+            super(reader, chunks, cache, pool);
+        }
+
+        @Override
+        protected void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) {
+            assertEquals(srcLen, dstLen);
+            for (int i = 0; i < dstLen; i++) {
+                dst[dstOff + i] = (byte) (src[srcOff + i] ^ 0x5a);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package sh.adelessfox.odradek.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadSchedulerTest {
+    private static final int MAX_GAP = 16 * 1024;
+    private static final int MAX_MERGED_LENGTH = 16 * 1024 * 1024;
+
+    private final Map<String, PatternReader> readers = new HashMap<>();
+
+    @Test
+    void requestsWithinGapAreMerged() throws IOException {
+        var requests = List.of(
+            new ReadScheduler.Request("a", 100 + MAX_GAP, 10),
+            new ReadScheduler.Request("a", 0, 100)
+        );
+
+        var results = ReadScheduler.read(requests, this::resolve);
+
+        assertEquals(List.of(new Range(0, 110 + MAX_GAP)), readers.get("a").reads);
+        assertResults(requests, results);
+    }
+
+    @Test
+    void requestsBeyondGapAreSplit() throws IOException {
+        var requests = List.of(
+            new ReadScheduler.Request("a", 0, 100),
+            new ReadScheduler.Request("a", 101 + MAX_GAP, 10)
+        );
+
+        var results = ReadScheduler.read(requests, this::resolve);
+
+        assertEquals(List.of(new Range(0, 100), new Range(101 + MAX_GAP, 10)), readers.get("a").reads);
+        assertResults(requests, results);
+    }
+
+    @Test
+    void mergedReadIsSplitAtMaxLength() throws IOException {
+        int length = MAX_MERGED_LENGTH / 2;
+        var requests = List.of(
+            new ReadScheduler.Request("a", 0, length),
+            new ReadScheduler.Request("a", length, length),
+            new ReadScheduler.Request("a", 2L * length, 1)
+        );
+
+        var results = ReadScheduler.read(requests, this::resolve);
+
+        assertEquals(List.of(new Range(0, 2 * length), new Range(2L * length, 1)), readers.get("a").reads);
+        assertResults(requests, results);
+    }
+
+    @Test
+    void overlappingRequestsAreMerged() throws IOException {
+        var requests = List.of(
+            new ReadScheduler.Request("a", 50, 100),
+            new ReadScheduler.Request("a", 0, 100),
+            new ReadScheduler.Request("a", 60, 10),
+            new ReadScheduler.Request("a", 50, 100)
+        );
+
+        var results = ReadScheduler.read(requests, this::resolve);
+
+        assertEquals(List.of(new Range(0, 150)), readers.get("a").reads);
+        assertResults(requests, results);
+    }
+
+    @Test
+    void requestsOfDifferentFilesAreNotMerged() throws IOException {
+        var requests = List.of(
+            new ReadScheduler.Request("b", 0, 10),
+            new ReadScheduler.Request("a", 10, 10),
+            new ReadScheduler.Request("b", 20, 0)
+        );
+
+        var results = ReadScheduler.read(requests, this::resolve);
+
+        assertEquals(List.of(new Range(10, 10)), readers.get("a").reads);
+        assertEquals(List.of(new Range(0, 20)), readers.get("b").reads);
+        assertResults(requests, results);
+        assertEquals(0, results.get(2).length);
+    }
+
+    private BinaryReader resolve(String file) {
+        return readers.computeIfAbsent(file, _ -> new PatternReader());
+    }
+
+    private static void assertResults(List<ReadScheduler.Request> requests, List<byte[]> results) {
+        assertEquals(requests.size(), results.size());
+        for (int i = 0; i < requests.size(); i++) {
+            var request = requests.get(i);
+            var result = results.get(i);
+            assertEquals(request.length(), result.length);
+            for (int j = 0; j < result.length; j++) {
+                if (result[j] != PatternReader.valueAt(request.offset() + j)) {
+                    fail("Request %d differs at offset %d".formatted(i, request.offset() + j));
+                }
+            }
+        }
+    }
+
+    private record Range(long offset, int length) {
+    }
+
+    /**
+     * A reader of infinite data where each byte is derived from its position; records positional reads.
+     */
+    private static final class PatternReader implements BinaryReader {
+        private final List<Range> reads = new ArrayList<>();
+
+        static byte valueAt(long position) {
+            return (byte) (position ^ position >>> 8);
+        }
+
+        @Override
+        public void readBytes(long pos, byte[] dst, int off, int len) {
+            reads.add(new Range(pos, len));
+            for (int i = 0; i < len; i++) {
+                dst[off + i] = valueAt(pos + i);
+            }
+        }
+
+        @Override
+        public void readBytes(byte[] dst, int off, int len) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte readByte() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public short readShort() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int readInt() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long readLong() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long size() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public long position() {
+            return 0;
+        }
+
+        @Override
+        public BinaryReader position(long pos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ByteOrder order() {
+            return ByteOrder.LITTLE_ENDIAN;
+        }
+
+        @Override
+        public BinaryReader order(ByteOrder order) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
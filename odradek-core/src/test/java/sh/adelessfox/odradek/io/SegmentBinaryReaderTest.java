@@ -0,0 +1,128 @@
+package sh.adelessfox.odradek.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentBinaryReaderTest {
+    private static final int SIZE = 1 << 16;
+
+    @Test
+    void bulkReadsMatchSequentialReads() throws IOException {
+        var path = createFile();
+        try {
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+                try (var mapped = BinaryReader.map(path); var expected = BinaryReader.wrap(Files.readAllBytes(path))) {
+                    mapped.order(order).position(3);
+                    expected.order(order).position(3);
+
+                    assertArrayEquals(expected.readShorts(5), mapped.readShorts(5));
+                    assertArrayEquals(expected.readInts(7), mapped.readInts(7));
+                    assertArrayEquals(expected.readLongs(11), mapped.readLongs(11));
+                    assertArrayEquals(expected.readFloats(13), mapped.readFloats(13));
+                    assertArrayEquals(expected.readDoubles(17), mapped.readDoubles(17));
+                    assertEquals(expected.position(), mapped.position());
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void bulkBufferOutlivesReader() throws IOException {
+        var path = createFile();
+        try {
+            ByteBuffer buffer;
+            try (var reader = BinaryReader.map(path)) {
+                buffer = reader.readBulk(16, Integer.BYTES);
+            }
+            assertEquals(valueAt(0), buffer.get(0));
+            assertEquals(valueAt(63), buffer.get(63));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void positionalReadsFailAfterClose() throws IOException {
+        var path = createFile();
+        try {
+            var reader = BinaryReader.map(path);
+            reader.close();
+
+            assertThrows(ClosedChannelException.class, () -> reader.readBytes(0, new byte[16], 0, 16));
+            assertThrows(ClosedChannelException.class, () -> reader.readBytes(0, ByteBuffer.allocate(16)));
+            assertThrows(ClosedChannelException.class, () -> reader.readBuffer(0, 16));
+
+            // Closing twice is harmless
+            reader.close();
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void closeDuringPositionalReads() throws Exception {
+        var path = createFile();
+        try {
+            var reader = BinaryReader.map(path);
+            var started = new CountDownLatch(4);
+            var failure = new AtomicReference<Throwable>();
+            var threads = new ArrayList<Thread>();
+
+            for (int i = 0; i < 4; i++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    var buffer = new byte[256];
+                    started.countDown();
+                    try {
+                        for (int pos = 0; ; pos = (pos + 257) % (SIZE - buffer.length)) {
+                            reader.readBytes(pos, buffer, 0, buffer.length);
+                            if (buffer[0] != valueAt(pos) || buffer[255] != valueAt(pos + 255)) {
+                                throw new AssertionError("Unexpected data at " + pos);
+                            }
+                        }
+                    } catch (ClosedChannelException _) {
+                        // expected once the reader is closed
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }));
+            }
+
+            started.await();
+            reader.close();
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(failure.get());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static Path createFile() throws IOException {
+        var data = new byte[SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = valueAt(i);
+        }
+        var path = Files.createTempFile("odradek", ".bin");
+        Files.write(path, data);
+        return path;
+    }
+
+    private static byte valueAt(long position) {
+        return (byte) (position ^ position >>> 8);
+    }
+}
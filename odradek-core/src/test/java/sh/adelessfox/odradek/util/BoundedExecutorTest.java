@@ -0,0 +1,171 @@
+package sh.adelessfox.odradek.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedExecutorTest {
+    private static final long TIMEOUT = 10;
+
+    @Test
+    void runningTasksDontExceedLimit() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+
+        try (var executor = new BoundedExecutor(2)) {
+            for (int i = 0; i < 16; i++) {
+                int value = i;
+                futures.add(executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(5);
+                    running.decrementAndGet();
+                    return value;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, futures.get(i).get(TIMEOUT, TimeUnit.SECONDS));
+            }
+        }
+
+        assertTrue(maxRunning.get() <= 2, "max running: " + maxRunning.get());
+    }
+
+    @Test
+    void raisingLimitStartsWaitingTasks() throws Exception {
+        var gate = new CountDownLatch(1);
+
+        try (var executor = new BoundedExecutor(1)) {
+            var blocked = executor.submit(() -> {
+                gate.await();
+                return null;
+            });
+            var waiting = executor.submit(() -> 42);
+
+            executor.setLimit(2);
+            assertEquals(42, waiting.get(TIMEOUT, TimeUnit.SECONDS));
+            assertFalse(blocked.isDone());
+
+            gate.countDown();
+            blocked.get(TIMEOUT, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void cancelledWaitingTaskNeverRuns() throws Exception {
+        var started = new CountDownLatch(1);
+        var gate = new CountDownLatch(1);
+        var ran = new AtomicBoolean();
+
+        try (var executor = new BoundedExecutor(1)) {
+            var blocked = executor.submit(() -> {
+                started.countDown();
+                gate.await();
+                return "done";
+            });
+            assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+            var waiting = executor.submit(() -> ran.getAndSet(true));
+            assertTrue(waiting.cancel(false));
+
+            gate.countDown();
+            assertEquals("done", blocked.get(TIMEOUT, TimeUnit.SECONDS));
+
+            // The permit must be available to later tasks
+            assertEquals(1, executor.submit(() -> 1).get(TIMEOUT, TimeUnit.SECONDS));
+        }
+
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void exceptionsArePropagated() throws Exception {
+        try (var executor = new BoundedExecutor(1)) {
+            var failed = executor.submit(() -> {
+                throw new IOException("failed");
+            });
+            var error = executor.submit(() -> {
+                throw new AssertionError("error");
+            });
+
+            var e1 = assertThrows(ExecutionException.class, () -> failed.get(TIMEOUT, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e1.getCause());
+
+            var e2 = assertThrows(ExecutionException.class, () -> error.get(TIMEOUT, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, e2.getCause());
+
+            // Failed tasks must release their permits
+            assertEquals(1, executor.submit(() -> 1).get(TIMEOUT, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void closeCancelsWaitingTasksAndWaitsForRunningOnes() throws Exception {
+        var started = new CountDownLatch(1);
+        var gate = new CountDownLatch(1);
+
+        var executor = new BoundedExecutor(1);
+        var running = executor.submit(() -> {
+            started.countDown();
+            gate.await();
+            return "done";
+        });
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        var waiting = executor.submit(() -> "never");
+
+        var closer = Thread.ofVirtual().start(executor::close);
+        assertThrows(CancellationException.class, () -> waiting.get(TIMEOUT, TimeUnit.SECONDS));
+        assertFalse(running.isDone());
+
+        gate.countDown();
+        closer.join();
+        assertEquals("done", running.getNow(null));
+    }
+
+    @Test
+    void submitAfterCloseIsRejected() {
+        var executor = new BoundedExecutor(1);
+        executor.close();
+
+        var future = executor.submit(() -> 1);
+        var e = assertThrows(ExecutionException.class, () -> future.get(TIMEOUT, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void submitRacingWithCloseAlwaysCompletes() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            var executor = new BoundedExecutor(1);
+            var futures = new ConcurrentLinkedQueue<CompletableFuture<Integer>>();
+            var failure = new AtomicReference<Throwable>();
+            var submitter = Thread.ofPlatform().start(() -> {
+                try {
+                    for (int j = 0; j < 100; j++) {
+                        futures.add(executor.submit(() -> 1));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+
+            executor.close();
+            submitter.join();
+            assertNull(failure.get());
+
+            for (CompletableFuture<Integer> future : futures) {
+                try {
+                    future.get(TIMEOUT, TimeUnit.SECONDS);
+                } catch (CancellationException | ExecutionException _) {
+                    // Cancelled or rejected by close(), but never left pending
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package sh.adelessfox.odradek.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedCacheTest {
+    @Test
+    void cacheStaysWithinWeight() {
+        var cache = newCache(100, WeightedCache.Retention.STRONG, WeightedCache.Admission.ALWAYS);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.put("key" + i, new byte[30]));
+        }
+
+        var stats = cache.stats();
+        assertEquals(90, stats.residentWeight());
+        assertEquals(7, stats.evictions());
+        assertNull(cache.peek("key6"));
+        assertNotNull(cache.peek("key7"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        var cache = newCache(100, WeightedCache.Retention.STRONG, WeightedCache.Admission.ALWAYS);
+        cache.put("a", new byte[30]);
+        cache.put("b", new byte[30]);
+        cache.put("c", new byte[30]);
+
+        assertNotNull(cache.get("a"));
+        cache.put("d", new byte[30]);
+
+        assertNotNull(cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertNotNull(cache.peek("c"));
+        assertNotNull(cache.peek("d"));
+    }
+
+    @Test
+    void replacingEntryUpdatesWeight() {
+        var cache = newCache(100, WeightedCache.Retention.STRONG, WeightedCache.Admission.ALWAYS);
+        cache.put("a", new byte[30]);
+        cache.put("a", new byte[50]);
+
+        var stats = cache.stats();
+        assertEquals(50, stats.residentWeight());
+        assertEquals(0, stats.evictions());
+        assertEquals(50, cache.peek("a").length);
+    }
+
+    @Test
+    void entryHeavierThanCacheIsRejected() {
+        var cache = newCache(100, WeightedCache.Retention.STRONG, WeightedCache.Admission.ALWAYS);
+        cache.put("a", new byte[30]);
+
+        assertFalse(cache.put("b", new byte[101]));
+
+        var stats = cache.stats();
+        assertEquals(1, stats.rejections());
+        assertEquals(30, stats.residentWeight());
+        assertNotNull(cache.peek("a"));
+    }
+
+    @Test
+    void tinyLfuRejectsInfrequentEntries() {
+        var cache = newCache(100, WeightedCache.Retention.STRONG, WeightedCache.Admission.TINY_LFU);
+        for (String key : List.of("a", "b", "c")) {
+            cache.put(key, new byte[30]);
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(cache.get(key));
+            }
+        }
+
+        // A one-off entry must not displace frequently used ones
+        assertFalse(cache.put("x", new byte[30]));
+        assertNull(cache.peek("x"));
+        assertEquals(1, cache.stats().rejections());
+
+        // Once it's requested more often than the victim, it's admitted
+        for (int i = 0; i < 10; i++) {
+            assertNull(cache.get("x"));
+        }
+        assertTrue(cache.put("x", new byte[30]));
+        assertNotNull(cache.peek("x"));
+        assertNull(cache.peek("a"));
+
+        var stats = cache.stats();
+        assertEquals(1, stats.evictions());
+        assertEquals(90, stats.residentWeight());
+    }
+
+    @Test
+    void statsCountHitsAndMisses() {
+        var cache = newCache(100, WeightedCache.Retention.STRONG, WeightedCache.Admission.ALWAYS);
+        cache.put("a", new byte[10]);
+
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.peek("b");
+
+        var stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void invalidateAllReleasesWeight() {
+        var cache = newCache(100, WeightedCache.Retention.STRONG, WeightedCache.Admission.ALWAYS);
+        cache.put("a", new byte[30]);
+        cache.put("b", new byte[30]);
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.stats().residentWeight());
+        assertNull(cache.peek("a"));
+        assertTrue(cache.put("c", new byte[100]));
+    }
+
+    @Test
+    void weightOfClearedSoftValueIsReleased() throws InterruptedException {
+        var cache = newCache(100, WeightedCache.Retention.SOFT, WeightedCache.Admission.ALWAYS);
+        cache.put("a", new byte[30]);
+        assertEquals(30, cache.stats().residentWeight());
+
+        clearSoftReferences();
+
+        assertNull(cache.get("a"));
+
+        // Cleared references are enqueued asynchronously
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (cache.stats().residentWeight() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        var stats = cache.stats();
+        assertEquals(0, stats.residentWeight());
+        assertEquals(1, stats.evictions());
+        assertTrue(cache.put("b", new byte[100]));
+    }
+
+    @Test
+    void concurrentAccessStaysConsistent() throws InterruptedException {
+        var cache = newCache(1000, WeightedCache.Retention.STRONG, WeightedCache.Admission.TINY_LFU);
+        var failure = new AtomicReference<Throwable>();
+        var threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < 8; i++) {
+            int seed = i;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    var random = new Random(seed);
+                    for (int j = 0; j < 20000; j++) {
+                        int key = random.nextInt(100);
+                        var value = cache.get("key" + key);
+                        if (value == null) {
+                            cache.put("key" + key, new byte[key + 1]);
+                        } else if (value.length != key + 1) {
+                            throw new AssertionError("Unexpected value for key" + key);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+
+        var stats = cache.stats();
+        assertTrue(stats.residentWeight() <= 1000);
+        assertEquals(8 * 20000, stats.hits() + stats.misses());
+
+        long resident = 0;
+        for (int key = 0; key < 100; key++) {
+            var value = cache.peek("key" + key);
+            if (value != null) {
+                resident += value.length;
+            }
+        }
+        assertEquals(resident, stats.residentWeight());
+    }
+
+    private static WeightedCache<String, byte[]> newCache(
+        long maxWeight,
+        WeightedCache.Retention retention,
+        WeightedCache.Admission admission
+    ) {
+        return new WeightedCache<>(maxWeight, (_, value) -> value.length, retention, admission);
+    }
+
+    /**
+     * Exhausts the heap. The JVM guarantees to clear all softly-reachable objects before throwing
+     * {@link OutOfMemoryError}.
+     */
+    private static void clearSoftReferences() {
+        var hog = new ArrayList<long[]>();
+        try {
+            while (true) {
+                long free = Runtime.getRuntime().freeMemory() / Long.BYTES;
+                hog.add(new long[Math.clamp(free, 1024, Integer.MAX_VALUE - 8)]);
+            }
+        } catch (OutOfMemoryError _) {
+            hog.clear();
+        }
+    }
+}
@@ -2,10 +2,13 @@ package sh.adelessfox.odradek.game.decima;
 
 import sh.adelessfox.odradek.game.Game;
 import sh.adelessfox.odradek.rtti.data.TypedObject;
+import sh.adelessfox.odradek.util.Futures;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface DecimaGame extends Game {
     /**
@@ -35,6 +38,10 @@ public interface DecimaGame extends Game {
 
     /**
      * Reads an object from the streaming graph by its group ID and object index.
+     * <p>
+     * Implementations may decode only the requested object and objects it references
+     * instead of the whole group, in which case the returned object may not be the same
+     * instance as the one returned by {@link #readGroup(int)}.
      *
      * @param groupId     id of the group that contains the object
      * @param objectIndex index of the object within the group
@@ -45,8 +52,138 @@ public interface DecimaGame extends Game {
         return readGroup(groupId).get(objectIndex);
     }
 
+    /**
+     * Reads a group asynchronously.
+     * <p>
+     * Implementations may limit the number of reads performed at the same time, and cancelling
+     * the returned future should prevent the read from starting if it hasn't started yet.
+     *
+     * @see #readGroup(int, boolean)
+     */
+    default CompletableFuture<List<TypedObject>> readGroupAsync(int groupId, boolean readSubgroups) {
+        return Futures.submit(() -> readGroup(groupId, readSubgroups));
+    }
+
+    default CompletableFuture<List<TypedObject>> readGroupAsync(int groupId) {
+        return readGroupAsync(groupId, true);
+    }
+
+    default CompletableFuture<TypedObject> readObjectAsync(ObjectId objectId) {
+        return readGroupAsync(objectId.groupId()).thenApply(objects -> objects.get(objectId.objectIndex()));
+    }
+
     byte[] readFile(String file, long offset, long length) throws IOException;
 
+    /**
+     * Reads a region of the file asynchronously.
+     *
+     * @see #readFile(String, long, long)
+     * @see #readGroupAsync(int, boolean)
+     */
+    default CompletableFuture<byte[]> readFileAsync(String file, long offset, long length) {
+        return Futures.submit(() -> readFile(file, offset, length));
+    }
+
+    /**
+     * Reads {@code dst.remaining()} bytes from the file into the caller-supplied buffer.
+     *
+     * @param file   the file to read from
+     * @param offset the offset within the file
+     * @param dst    the destination buffer
+     * @throws IOException if an I/O error occurs during reading
+     */
+    default void readFile(String file, long offset, ByteBuffer dst) throws IOException {
+        dst.put(readFile(file, offset, dst.remaining()));
+    }
+
+    /**
+     * Reads a region of the file as a buffer.
+     * <p>
+     * If the file is memory-mapped, a read-only view of the mapping is returned without copying.
+     * The returned buffer should not be retained beyond the lifetime of the game.
+     *
+     * @param file   the file to read from
+     * @param offset the offset within the file
+     * @param length the number of bytes to read
+     * @return a buffer containing the requested data
+     * @throws IOException if an I/O error occurs during reading
+     */
+    default ByteBuffer readFileBuffer(String file, long offset, long length) throws IOException {
+        return ByteBuffer.wrap(readFile(file, offset, length));
+    }
+
+    /**
+     * Starts opening storage files in the background, so that first reads from them don't have to.
+     * <p>
+     * Storage files are opened lazily on first access. Calling this method is optional.
+     *
+     * @return a future that completes once all files are opened
+     */
+    default CompletableFuture<Void> warmUp() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Uses a persistent index stored at the specified path to speed up opening storage files
+     * on subsequent runs. Must be called before {@link #warmUp()} and any reads. Calling this
+     * method is optional.
+     *
+     * @param path path to the index file
+     */
+    default void useStorageIndex(Path path) {
+        // do nothing by default
+    }
+
+    /**
+     * Uses the specified directory to persist decompressed data of groups between sessions.
+     * Groups that have been read before are then loaded from the directory instead of archives.
+     *
+     * @param directory path to the directory
+     * @see GroupSnapshotStore
+     */
+    default void useGroupSnapshots(Path directory) {
+        // do nothing by default
+    }
+
+    /**
+     * Uses the specified file to persist the index of objects by their types between sessions.
+     *
+     * @param path path to the index file
+     * @see StreamingTypeIndex
+     */
+    default void useTypeIndex(Path path) {
+        // do nothing by default
+    }
+
+    /**
+     * Sets the maximum number of asynchronous reads that can be performed at the same time.
+     *
+     * @param limit the maximum number of concurrent reads, must be positive
+     */
+    default void setMaxConcurrentReads(int limit) {
+        // do nothing by default
+    }
+
+    /**
+     * Sets limits of speculative background reads of groups related to groups that have been read.
+     *
+     * @param bytes maximum total size of groups prefetched after each read, or {@code 0} to disable prefetching
+     * @param tasks maximum number of groups prefetched at the same time, must be positive
+     */
+    default void setPrefetchLimits(long bytes, int tasks) {
+        // do nothing by default
+    }
+
+    /**
+     * Enables lazy decoding of groups read from now on. Attributes of objects in such groups are decoded
+     * on their first access, which saves time and memory when only a few attributes are ever accessed.
+     *
+     * @param lazy whether to decode groups lazily
+     */
+    default void setLazyDecoding(boolean lazy) {
+        // do nothing by default
+    }
+
     /**
      * Resolve game-specific path to actual filesystem path.
      * The path should be in a form of {@code <device>:<path>}.
@@ -3,10 +3,17 @@ package sh.adelessfox.odradek.game.decima;
 import wtf.reversed.toolbox.hash.CRCAlgorithm;
 import wtf.reversed.toolbox.hash.HashFunction;
 
+import java.util.zip.CRC32C;
+
 public final class DecimaHash {
     private static final HashFunction CRC32 = HashFunction.crc(new CRCAlgorithm(32, 0x1edc6f41, 0, true, true, 0));
     private static final HashFunction MURMUR3 = HashFunction.murmur3(42);
 
+    /**
+     * Feeding these bytes to {@link CRC32C} clears its register, making it start from zero like {@link #CRC32}.
+     */
+    private static final byte[] CRC32_PREFIX = {-1, -1, -1, -1};
+
     private DecimaHash() {
     }
 
@@ -17,4 +24,30 @@ public final class DecimaHash {
     public static HashFunction crc32() {
         return CRC32;
     }
+
+    /**
+     * Computes the same checksum as {@link #crc32()} using {@link CRC32C}, which is intrinsified on most platforms.
+     *
+     * @param data data to hash
+     * @return the checksum
+     */
+    public static int crc32(byte[] data) {
+        return crc32(data, 0, data.length);
+    }
+
+    /**
+     * Computes the same checksum as {@link #crc32()} using {@link CRC32C}, which is intrinsified on most platforms.
+     *
+     * @param data   data to hash
+     * @param offset offset of the first byte to hash
+     * @param length number of bytes to hash
+     * @return the checksum
+     */
+    public static int crc32(byte[] data, int offset, int length) {
+        // CRC32C starts from and finalizes with ~0, while ours uses 0 for both
+        var crc = new CRC32C();
+        crc.update(CRC32_PREFIX);
+        crc.update(data, offset, length);
+        return ~(int) crc.getValue();
+    }
 }
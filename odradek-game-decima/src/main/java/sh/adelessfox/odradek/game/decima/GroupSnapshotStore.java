@@ -0,0 +1,156 @@
+package sh.adelessfox.odradek.game.decima;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.io.BinaryWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A persistent store of decompressed data of streaming groups.
+ * <p>
+ * Reading a group from archives requires decompressing every chunk its spans touch. The store keeps
+ * spans of groups that have been read in a directory keyed by the checksum of the streaming graph, so
+ * later sessions against the same installation can read them from a memory-mapped file instead.
+ * Each snapshot is validated against the id of its group and the checksum of its data when loaded.
+ */
+public final class GroupSnapshotStore {
+    private static final Logger log = LoggerFactory.getLogger(GroupSnapshotStore.class);
+    private static final int MAGIC = 'G' | 'S' << 8 | 'N' << 16 | 'P' << 24;
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size;
+
+    private GroupSnapshotStore(Path directory, long maxSize, long size) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.size = new AtomicLong(size);
+    }
+
+    /**
+     * Opens the store for the specified streaming graph.
+     *
+     * @param root    root directory of stores of all graphs
+     * @param graph   the streaming graph
+     * @param maxSize maximum total size of snapshots in bytes; no new snapshots are stored past it
+     * @return the opened store
+     * @throws IOException if an I/O error occurs
+     */
+    public static GroupSnapshotStore open(Path root, StreamingGraph graph, long maxSize) throws IOException {
+        var directory = root.resolve("%016x".formatted(graph.checksum().asLong()));
+        Files.createDirectories(directory);
+
+        long size = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                size += Files.size(file);
+            }
+        }
+
+        log.debug("Opened group snapshot store at {} ({} bytes)", directory, size);
+        return new GroupSnapshotStore(directory, maxSize, size);
+    }
+
+    /**
+     * Loads spans of the group from its snapshot.
+     *
+     * @param groupId id of the group
+     * @return data of each span of the group, or empty if there's no valid snapshot
+     */
+    public Optional<List<byte[]>> load(int groupId) {
+        var path = pathOf(groupId);
+        if (Files.notExists(path)) {
+            return Optional.empty();
+        }
+
+        try (var reader = BinaryReader.map(path)) {
+            var magic = reader.readInt();
+            var version = reader.readInt();
+            var id = reader.readInt();
+            if (magic != MAGIC || version != VERSION || id != groupId) {
+                log.debug("Discarding snapshot {} of unsupported version", path);
+                return Optional.empty();
+            }
+
+            var checksum = reader.readInt();
+            var lengths = reader.readInts(reader.readInt());
+            var crc = new CRC32C();
+            var spans = new ArrayList<byte[]>(lengths.length);
+            for (int length : lengths) {
+                var span = reader.readBytes(length);
+                crc.update(span);
+                spans.add(span);
+            }
+
+            if ((int) crc.getValue() != checksum || reader.remaining() != 0) {
+                log.warn("Discarding corrupted snapshot {}", path);
+                return Optional.empty();
+            }
+
+            return Optional.of(spans);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load snapshot {}", path, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores spans of the group, replacing its existing snapshot. Does nothing if the store is full.
+     *
+     * @param groupId id of the group
+     * @param spans   data of each span of the group
+     * @throws IOException if an I/O error occurs
+     */
+    public void store(int groupId, List<byte[]> spans) throws IOException {
+        long length = 20L + (long) spans.size() * Integer.BYTES;
+        var crc = new CRC32C();
+        for (byte[] span : spans) {
+            length += span.length;
+            crc.update(span);
+        }
+
+        if (size.addAndGet(length) > maxSize) {
+            size.addAndGet(-length);
+            return;
+        }
+
+        var path = pathOf(groupId);
+        var temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (var writer = BinaryWriter.open(temp)) {
+                writer.writeInt(MAGIC);
+                writer.writeInt(VERSION);
+                writer.writeInt(groupId);
+                writer.writeInt((int) crc.getValue());
+                writer.writeInt(spans.size());
+                for (byte[] span : spans) {
+                    writer.writeInt(span.length);
+                }
+                for (byte[] span : spans) {
+                    writer.writeBytes(span);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            size.addAndGet(-length);
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private Path pathOf(int groupId) {
+        return directory.resolve(groupId + ".snap");
+    }
+}
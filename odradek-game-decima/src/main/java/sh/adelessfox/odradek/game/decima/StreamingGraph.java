@@ -6,6 +6,7 @@ import wtf.reversed.toolbox.hash.HashCode;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
 
 public interface StreamingGraph {
@@ -18,6 +19,23 @@ public interface StreamingGraph {
     record Link(OptionalInt group, int index) {
     }
 
+    /**
+     * A cursor over links that doesn't allocate per link.
+     * <p>
+     * Call {@link #next()} to advance to a link, then read it using {@link #group()} and {@link #index()}.
+     */
+    interface LinkCursor {
+        boolean hasNext();
+
+        void next();
+
+        /** Id of the group the link points to, or {@code -1} if it points to the group being read. */
+        int group();
+
+        /** Index of the object the link points to. */
+        int index();
+    }
+
     interface Group {
         /** Unique identifier of the group. */
         int id();
@@ -31,13 +49,49 @@ public interface StreamingGraph {
         /** Indices of the root objects in this group. */
         List<Integer> roots();
 
+        /** Indices of the root objects in this group, as a new array. */
+        default int[] rootsArray() {
+            return roots().stream().mapToInt(Integer::intValue).toArray();
+        }
+
         List<ClassTypeInfo> types();
 
         List<Span> spans();
 
+        default int spanCount() {
+            return spans().size();
+        }
+
+        default int spanFileIndex(int index) {
+            return spans().get(index).fileIndex();
+        }
+
+        default int spanOffset(int index) {
+            return spans().get(index).offset();
+        }
+
+        default int spanLength(int index) {
+            return spans().get(index).length();
+        }
+
         List<Locator> locators();
 
+        default int locatorCount() {
+            return locators().size();
+        }
+
+        default int locatorFileIndex(int index) {
+            return locators().get(index).fileIndex();
+        }
+
+        default long locatorOffset(int index) {
+            return locators().get(index).offset();
+        }
+
         Iterator<StreamingGraph.Link> links();
+
+        /** Returns a cursor over links of this group. */
+        LinkCursor linkCursor();
     }
 
     List<ClassTypeInfo> types();
@@ -49,10 +103,18 @@ public interface StreamingGraph {
     /** Retrieves the group with the specified ID. */
     Group group(int id);
 
+    /** Retrieves the group with the specified ID, or an empty optional if there's no such group. */
+    Optional<Group> findGroup(int id);
+
     Iterator<StreamingGraph.Link> links(int position);
 
+    LinkCursor linkCursor(int position);
+
     HashCode checksum();
 
+    /** Returns the index of objects of this graph by their types. The index is built on the first call. */
+    StreamingTypeIndex typeIndex();
+
     /** Returns the game-specific resource object that represents this streaming graph. */
     TypedObject resource();
 }
@@ -0,0 +1,210 @@
+package sh.adelessfox.odradek.game.decima;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.stream.IntStream;
+
+/**
+ * A table of links between objects of a streaming graph.
+ * <p>
+ * Links are stored as a stream of variable-length integers. Each group points to the position
+ * of its first link in the stream, and its links are consumed sequentially while the group is read.
+ * <p>
+ * The table can optionally be {@linkplain #predecode(int[]) pre-decoded} into primitive arrays, in
+ * which case cursors simply walk those arrays instead of decoding varints.
+ */
+public final class StreamingLinkTable {
+    private final byte[] data;
+    private volatile Decoded decoded;
+
+    private record Decoded(int[] starts, int[] firstLinks, int[] groups, int[] indices) {
+    }
+
+    public StreamingLinkTable(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Decodes all links into primitive arrays. Ranges between consecutive start positions
+     * are decoded in parallel.
+     *
+     * @param starts positions of the first link of each group, in any order, possibly with duplicates
+     */
+    public void predecode(int[] starts) {
+        var sorted = IntStream.concat(IntStream.of(starts), IntStream.of(data.length))
+            .filter(start -> start >= 0 && start <= data.length)
+            .sorted()
+            .distinct()
+            .toArray();
+
+        int ranges = sorted.length - 1;
+        var counts = new int[ranges];
+        IntStream.range(0, ranges).parallel().forEach(i -> counts[i] = count(sorted[i], sorted[i + 1]));
+
+        var firstLinks = new int[ranges + 1];
+        for (int i = 0; i < ranges; i++) {
+            firstLinks[i + 1] = firstLinks[i] + counts[i];
+        }
+
+        var groups = new int[firstLinks[ranges]];
+        var indices = new int[firstLinks[ranges]];
+        IntStream.range(0, ranges).parallel().forEach(i -> decode(sorted[i], sorted[i + 1], firstLinks[i], groups, indices));
+
+        decoded = new Decoded(sorted, firstLinks, groups, indices);
+    }
+
+    public boolean isPredecoded() {
+        return decoded != null;
+    }
+
+    /**
+     * Returns a cursor over links starting at the specified position.
+     *
+     * @param position position of the first link
+     * @return a new cursor
+     */
+    public StreamingGraph.LinkCursor cursor(int position) {
+        var decoded = this.decoded;
+        if (decoded != null) {
+            int range = Arrays.binarySearch(decoded.starts(), position);
+            if (range >= 0) {
+                return new DecodedCursor(decoded, decoded.firstLinks()[range]);
+            }
+        }
+        return new EncodedCursor(data, position);
+    }
+
+    /**
+     * Returns an iterator over links starting at the specified position.
+     * Allocates an object for each link; prefer {@link #cursor(int)}.
+     */
+    public Iterator<StreamingGraph.Link> iterator(int position) {
+        var cursor = cursor(position);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public StreamingGraph.Link next() {
+                cursor.next();
+                var group = cursor.group();
+                return new StreamingGraph.Link(group >= 0 ? OptionalInt.of(group) : OptionalInt.empty(), cursor.index());
+            }
+        };
+    }
+
+    public byte[] data() {
+        return data;
+    }
+
+    private int count(int start, int end) {
+        var cursor = new EncodedCursor(data, start);
+        int count = 0;
+        while (cursor.position < end) {
+            cursor.next();
+            count++;
+        }
+        return count;
+    }
+
+    private void decode(int start, int end, int offset, int[] groups, int[] indices) {
+        var cursor = new EncodedCursor(data, start);
+        for (int i = offset; cursor.position < end; i++) {
+            cursor.next();
+            groups[i] = cursor.group;
+            indices[i] = cursor.index;
+        }
+    }
+
+    private static final class EncodedCursor implements StreamingGraph.LinkCursor {
+        private final byte[] data;
+        private int position;
+        private int group = -1;
+        private int index = -1;
+
+        EncodedCursor(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < data.length;
+        }
+
+        @Override
+        public void next() {
+            if (position >= data.length) {
+                throw new NoSuchElementException();
+            }
+            int first = data[position++];
+            if ((first & 0x40) != 0) {
+                group = readVarInt(first & 0xbf);
+                index = readVarInt(data[position++]);
+            } else {
+                group = -1;
+                index = readVarInt(first & 0xbf);
+            }
+        }
+
+        @Override
+        public int group() {
+            return group;
+        }
+
+        @Override
+        public int index() {
+            return index;
+        }
+
+        private int readVarInt(int initial) {
+            int temp = initial;
+            int value = initial & 0x7f;
+            while ((temp & 0x80) != 0) {
+                temp = data[position++];
+                value = (value << 7) | (temp & 0x7f);
+            }
+            return value;
+        }
+    }
+
+    private static final class DecodedCursor implements StreamingGraph.LinkCursor {
+        private final int[] groups;
+        private final int[] indices;
+        private int next;
+        private int current = -1;
+
+        DecodedCursor(Decoded decoded, int next) {
+            this.groups = decoded.groups();
+            this.indices = decoded.indices();
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < groups.length;
+        }
+
+        @Override
+        public void next() {
+            if (next >= groups.length) {
+                throw new NoSuchElementException();
+            }
+            current = next++;
+        }
+
+        @Override
+        public int group() {
+            return groups[current];
+        }
+
+        @Override
+        public int index() {
+            return indices[current];
+        }
+    }
+}
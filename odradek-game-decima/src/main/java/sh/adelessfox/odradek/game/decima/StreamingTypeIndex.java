@@ -0,0 +1,273 @@
+package sh.adelessfox.odradek.game.decima;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.io.BinaryWriter;
+import sh.adelessfox.odradek.io.StringFormat;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * An index of objects of a streaming graph by their types.
+ * <p>
+ * Objects of each exact type are stored as a sorted array of {@linkplain #pack(int, int) packed}
+ * object ids. A query for a type combines arrays of all types assignable to it, so its cost depends
+ * on the number of matching objects rather than the size of the graph. Results of queries are cached.
+ * <p>
+ * The index can be persisted to avoid rebuilding it; a persisted index is only valid for the graph
+ * with the same {@linkplain StreamingGraph#checksum() checksum}.
+ */
+public final class StreamingTypeIndex {
+    private static final Logger log = LoggerFactory.getLogger(StreamingTypeIndex.class);
+    private static final int MAGIC = 'T' | 'Y' << 8 | 'I' << 16 | 'X' << 24;
+    private static final int VERSION = 1;
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<ClassTypeInfo, long[]> objects;
+    private final Map<Class<?>, long[]> queries = new ConcurrentHashMap<>();
+
+    private StreamingTypeIndex(Map<ClassTypeInfo, long[]> objects) {
+        this.objects = objects;
+    }
+
+    /**
+     * Builds the index of the specified graph.
+     *
+     * @param graph the streaming graph
+     * @return the built index
+     */
+    public static StreamingTypeIndex build(StreamingGraph graph) {
+        var counts = new IdentityHashMap<ClassTypeInfo, int[]>();
+        for (StreamingGraph.Group group : graph.groups()) {
+            for (ClassTypeInfo type : group.types()) {
+                counts.computeIfAbsent(type, _ -> new int[1])[0]++;
+            }
+        }
+
+        var objects = new IdentityHashMap<ClassTypeInfo, long[]>(counts.size());
+        for (var entry : counts.entrySet()) {
+            objects.put(entry.getKey(), new long[entry.getValue()[0]]);
+            entry.getValue()[0] = 0;
+        }
+
+        for (StreamingGraph.Group group : graph.groups()) {
+            var types = group.types();
+            for (int i = 0; i < types.size(); i++) {
+                var type = types.get(i);
+                objects.get(type)[counts.get(type)[0]++] = pack(group.id(), i);
+            }
+        }
+
+        objects.values().forEach(Arrays::sort);
+        return new StreamingTypeIndex(objects);
+    }
+
+    /**
+     * Loads the index of the specified graph from the file, or builds it and saves it to the file
+     * if the file doesn't exist or doesn't match the graph.
+     *
+     * @param path  path to the index file
+     * @param graph the streaming graph
+     * @return the loaded or built index
+     */
+    public static StreamingTypeIndex open(Path path, StreamingGraph graph) {
+        var loaded = load(path, graph);
+        if (loaded.isPresent()) {
+            return loaded.get();
+        }
+
+        log.debug("Building type index of the streaming graph");
+        var index = build(graph);
+        try {
+            index.save(path, graph);
+        } catch (IOException e) {
+            log.warn("Failed to save type index to {}", path, e);
+        }
+        return index;
+    }
+
+    /**
+     * Loads the index of the specified graph from the file.
+     *
+     * @param path  path to the index file
+     * @param graph the streaming graph
+     * @return the loaded index, or empty if the file doesn't exist or doesn't match the graph
+     */
+    public static Optional<StreamingTypeIndex> load(Path path, StreamingGraph graph) {
+        if (Files.notExists(path)) {
+            return Optional.empty();
+        }
+
+        try (var reader = BinaryReader.map(path)) {
+            var magic = reader.readInt();
+            var version = reader.readInt();
+            var checksum = reader.readLong();
+            if (magic != MAGIC || version != VERSION || checksum != graph.checksum().asLong()) {
+                log.debug("Discarding type index {} of a different graph", path);
+                return Optional.empty();
+            }
+
+            var types = new HashMap<String, ClassTypeInfo>();
+            for (StreamingGraph.Group group : graph.groups()) {
+                for (ClassTypeInfo type : group.types()) {
+                    types.putIfAbsent(type.name(), type);
+                }
+            }
+
+            var count = reader.readInt();
+            var objects = new IdentityHashMap<ClassTypeInfo, long[]>(count);
+            for (int i = 0; i < count; i++) {
+                var name = reader.readString(StringFormat.INT_LENGTH);
+                var type = types.get(name);
+                if (type == null) {
+                    log.debug("Discarding type index {} referencing unknown type {}", path, name);
+                    return Optional.empty();
+                }
+                objects.put(type, reader.readLongs(reader.readInt()));
+            }
+
+            log.debug("Loaded type index of {} types from {}", count, path);
+            return Optional.of(new StreamingTypeIndex(objects));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to load type index from {}", path, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Saves the index to the file, replacing it.
+     *
+     * @param path  path to the index file
+     * @param graph the streaming graph the index was built for
+     * @throws IOException if an I/O error occurs
+     */
+    public void save(Path path, StreamingGraph graph) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var writer = BinaryWriter.open(temp)) {
+            writer.writeInt(MAGIC);
+            writer.writeInt(VERSION);
+            writer.writeLong(graph.checksum().asLong());
+            writer.writeInt(objects.size());
+            for (var entry : objects.entrySet()) {
+                writer.writeString(entry.getKey().name(), StringFormat.INT_LENGTH);
+                writer.writeInt(entry.getValue().length);
+                writer.writeLongs(entry.getValue());
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns packed ids of objects of the specified type, including its subtypes, sorted by group id and index.
+     *
+     * @param type the type of objects
+     * @return packed object ids, see {@link #groupId(long)} and {@link #objectIndex(long)}
+     */
+    public LongStream objects(Class<?> type) {
+        return Arrays.stream(queries.computeIfAbsent(type, this::computeObjects));
+    }
+
+    /**
+     * Returns packed ids of objects of exactly the specified type, sorted by group id and index.
+     *
+     * @param type the type of objects
+     * @return packed object ids, see {@link #groupId(long)} and {@link #objectIndex(long)}
+     */
+    public LongStream objects(ClassTypeInfo type) {
+        return Arrays.stream(objects.getOrDefault(type, EMPTY));
+    }
+
+    /**
+     * Returns indices of objects of exactly the specified type within the group, in ascending order.
+     *
+     * @param type    the type of objects
+     * @param groupId id of the group
+     * @return object indices
+     */
+    public int[] indices(ClassTypeInfo type, int groupId) {
+        var packed = objects.getOrDefault(type, EMPTY);
+        int from = Arrays.binarySearch(packed, pack(groupId, 0));
+        int to = Arrays.binarySearch(packed, pack(groupId + 1, 0));
+        from = from < 0 ? -from - 1 : from;
+        to = to < 0 ? -to - 1 : to;
+        var indices = new int[to - from];
+        for (int i = from; i < to; i++) {
+            indices[i - from] = objectIndex(packed[i]);
+        }
+        return indices;
+    }
+
+    /** Returns all types that have objects in the graph. */
+    public Set<ClassTypeInfo> types() {
+        return Collections.unmodifiableSet(objects.keySet());
+    }
+
+    /** Returns the number of objects of exactly the specified type. */
+    public int count(ClassTypeInfo type) {
+        return objects.getOrDefault(type, EMPTY).length;
+    }
+
+    /**
+     * Returns ids of groups that contain objects of the specified type, including its subtypes, in ascending order.
+     *
+     * @param type the type of objects
+     * @return group ids
+     */
+    public IntStream groups(Class<?> type) {
+        return objects(type)
+            .mapToInt(StreamingTypeIndex::groupId)
+            .distinct();
+    }
+
+    public static long pack(int groupId, int objectIndex) {
+        return (long) groupId << 32 | objectIndex & 0xffffffffL;
+    }
+
+    public static int groupId(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    public static int objectIndex(long packed) {
+        return (int) packed;
+    }
+
+    public static ObjectId toObjectId(long packed) {
+        return new ObjectId(groupId(packed), objectIndex(packed));
+    }
+
+    private long[] computeObjects(Class<?> type) {
+        var matches = new ArrayList<long[]>();
+        int count = 0;
+        for (var entry : objects.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey().type())) {
+                matches.add(entry.getValue());
+                count += entry.getValue().length;
+            }
+        }
+
+        if (matches.size() == 1) {
+            return matches.getFirst();
+        }
+
+        var result = new long[count];
+        int offset = 0;
+        for (long[] match : matches) {
+            System.arraycopy(match, 0, result, offset, match.length);
+            offset += match.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -4,12 +4,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sh.adelessfox.odradek.game.decima.DecimaGame;
 import sh.adelessfox.odradek.game.decima.ObjectId;
-import sh.adelessfox.odradek.game.decima.StreamingGraph;
+import sh.adelessfox.odradek.game.decima.StreamingTypeIndex;
 import sh.adelessfox.odradek.rtti.data.TypedObject;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Spliterator;
 import java.util.function.Consumer;
@@ -46,25 +45,28 @@ public final class GraphWalker {
         DecimaGame game,
         boolean readSubgroups
     ) {
-        var groups = game.streamingGraph().groups().stream()
-            .filter(group -> group.types().stream().anyMatch(t -> ofType.isAssignableFrom(t.type())))
-            .sorted(Comparator.comparingInt(StreamingGraph.Group::id))
-            .toList();
+        // Packed ids are sorted by group, so each group is read only once
+        var objects = game.streamingGraph().typeIndex().objects(ofType).toArray();
 
         return new Spliterator<>() {
-            private StreamingGraph.Group currentGroup;
+            private int currentGroupId = -1;
             private List<TypedObject> currentObjects;
-            private int nextGroupIndex;
-            private int nextObjectIndex;
+            private int nextObject;
 
             @Override
             public boolean tryAdvance(Consumer<? super SearchResult<T>> action) {
-                do {
-                    if (tryAdvanceObject(action)) {
-                        return true;
-                    }
-                } while (tryAdvanceGroup());
-                return false;
+                if (nextObject >= objects.length) {
+                    return false;
+                }
+                long packed = objects[nextObject++];
+                int groupId = StreamingTypeIndex.groupId(packed);
+                int objectIndex = StreamingTypeIndex.objectIndex(packed);
+                if (groupId != currentGroupId) {
+                    readGroup(groupId);
+                }
+                var object = currentObjects.get(objectIndex);
+                action.accept(new SearchResult<>(new ObjectId(groupId, objectIndex), ofType.cast(object)));
+                return true;
             }
 
             @Override
@@ -74,44 +76,23 @@ public final class GraphWalker {
 
             @Override
             public long estimateSize() {
-                return Long.MAX_VALUE;
+                return objects.length - nextObject;
             }
 
             @Override
             public int characteristics() {
-                return ORDERED | NONNULL;
+                return ORDERED | NONNULL | SIZED;
             }
 
-            private boolean tryAdvanceGroup() {
-                if (nextGroupIndex >= groups.size()) {
-                    return false;
-                }
-                var group = groups.get(nextGroupIndex++);
-                log.debug("[{}/{}] Reading group {}", nextGroupIndex, groups.size(), group.id());
+            private void readGroup(int groupId) {
+                log.debug("[{}/{}] Reading group {}", nextObject, objects.length, groupId);
                 try {
-                    currentGroup = group;
-                    currentObjects = game.readGroup(group.id(), readSubgroups);
-                    nextObjectIndex = 0;
-                    return true;
+                    currentObjects = game.readGroup(groupId, readSubgroups);
+                    currentGroupId = groupId;
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
             }
-
-            private boolean tryAdvanceObject(Consumer<? super SearchResult<T>> action) {
-                if (currentGroup == null) {
-                    return false;
-                }
-                for (int i = nextObjectIndex; i < currentObjects.size(); i++) {
-                    var object = currentObjects.get(i);
-                    if (ofType.isInstance(object)) {
-                        action.accept(new SearchResult<>(new ObjectId(currentGroup.id(), i), ofType.cast(object)));
-                        nextObjectIndex = i + 1;
-                        return true;
-                    }
-                }
-                return false;
-            }
         };
     }
 
@@ -0,0 +1,50 @@
+package sh.adelessfox.odradek.game.decima;
+
+import org.junit.jupiter.api.Test;
+import wtf.reversed.toolbox.collect.Bytes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DecimaHashTest {
+    @Test
+    void crc32OfEmptyArray() {
+        assertEquals(expected(new byte[0]), DecimaHash.crc32(new byte[0]));
+    }
+
+    @Test
+    void crc32OfString() {
+        var data = "EDataBufferFormat".getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected(data), DecimaHash.crc32(data));
+    }
+
+    @Test
+    void crc32MatchesHashFunctionOnRandomInputs() {
+        var random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            var data = new byte[random.nextInt(300)];
+            random.nextBytes(data);
+            assertEquals(expected(data), DecimaHash.crc32(data), () -> "input: " + Arrays.toString(data));
+        }
+    }
+
+    @Test
+    void crc32OfRangeMatchesHashFunction() {
+        var random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            var data = new byte[random.nextInt(1, 300)];
+            random.nextBytes(data);
+            int offset = random.nextInt(data.length);
+            int length = random.nextInt(data.length - offset + 1);
+            var range = Arrays.copyOfRange(data, offset, offset + length);
+            assertEquals(expected(range), DecimaHash.crc32(data, offset, length));
+        }
+    }
+
+    private static int expected(byte[] data) {
+        return DecimaHash.crc32().hash(Bytes.wrap(data)).asInt();
+    }
+}
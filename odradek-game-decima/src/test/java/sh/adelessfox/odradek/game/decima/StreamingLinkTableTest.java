@@ -0,0 +1,177 @@
+package sh.adelessfox.odradek.game.decima;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingLinkTableTest {
+    private static byte[] data;
+    private static int[] starts;
+
+    @BeforeAll
+    static void beforeAll() {
+        var random = new Random(42);
+        var out = new ByteArrayOutputStream();
+        var positions = new ArrayList<Integer>();
+
+        for (int i = 0; i < 5000; i++) {
+            if (i % 7 == 0) {
+                positions.add(out.size());
+            }
+            int group = random.nextInt(4) == 0 ? -1 : randomValue(random);
+            writeLink(out, group, randomValue(random));
+        }
+
+        data = out.toByteArray();
+        starts = positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void cursorMatchesReferenceDecoding() {
+        var table = new StreamingLinkTable(data);
+        for (int start : starts) {
+            assertCursorMatches(table, start);
+        }
+    }
+
+    @Test
+    void predecodedCursorMatchesReferenceDecoding() {
+        var table = new StreamingLinkTable(data);
+        table.predecode(starts);
+        assertTrue(table.isPredecoded());
+
+        for (int start : starts) {
+            assertCursorMatches(table, start);
+        }
+    }
+
+    @Test
+    void predecodedCursorFallsBackForUnknownPositions() {
+        var table = new StreamingLinkTable(data);
+        table.predecode(new int[]{starts[0], starts[starts.length / 2]});
+
+        for (int start : starts) {
+            assertCursorMatches(table, start);
+        }
+    }
+
+    @Test
+    void iteratorMatchesReferenceDecoding() {
+        var table = new StreamingLinkTable(data);
+        table.predecode(starts);
+
+        var expected = new ArrayList<StreamingGraph.Link>();
+        readLinks(data, starts[1]).forEachRemaining(expected::add);
+
+        var actual = new ArrayList<StreamingGraph.Link>();
+        table.iterator(starts[1]).forEachRemaining(actual::add);
+
+        assertEquals(expected, actual);
+    }
+
+    private static void assertCursorMatches(StreamingLinkTable table, int start) {
+        var expected = readLinks(data, start);
+        var cursor = table.cursor(start);
+        int count = 0;
+
+        while (expected.hasNext()) {
+            assertTrue(cursor.hasNext(), "cursor ended early");
+            cursor.next();
+
+            var link = expected.next();
+            if (link.group().orElse(-1) != cursor.group() || link.index() != cursor.index()) {
+                fail("Link %d from position %d differs".formatted(count, start));
+            }
+            count++;
+        }
+
+        assertFalse(cursor.hasNext(), "cursor has extra links");
+    }
+
+    private static int randomValue(Random random) {
+        return switch (random.nextInt(3)) {
+            case 0 -> random.nextInt(1 << 6);
+            case 1 -> random.nextInt(1 << 14);
+            default -> random.nextInt(1 << 27);
+        };
+    }
+
+    private static void writeLink(ByteArrayOutputStream out, int group, int index) {
+        if (group >= 0) {
+            writeVarInt(out, group, 6, 0x40);
+            writeVarInt(out, index, 7, 0);
+        } else {
+            writeVarInt(out, index, 6, 0);
+        }
+    }
+
+    /**
+     * Writes a big-endian variable-length integer whose first byte holds {@code firstBits} bits.
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value, int firstBits, int flags) {
+        int continuations = 0;
+        while (value >>> 7 * continuations >= 1 << firstBits) {
+            continuations++;
+        }
+
+        int first = flags | value >>> 7 * continuations;
+        out.write(continuations > 0 ? first | 0x80 : first);
+
+        for (int i = continuations - 1; i >= 0; i--) {
+            int chunk = value >>> 7 * i & 0x7f;
+            out.write(i > 0 ? chunk | 0x80 : chunk);
+        }
+    }
+
+    // Reference implementation that links used to be decoded with
+
+    private static Iterator<StreamingGraph.Link> readLinks(byte[] linkTable, int position) {
+        var buffer = ByteBuffer.wrap(linkTable, position, linkTable.length - position);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return buffer.hasRemaining();
+            }
+
+            @Override
+            public StreamingGraph.Link next() {
+                return readLink(buffer);
+            }
+        };
+    }
+
+    private static StreamingGraph.Link readLink(ByteBuffer buffer) {
+        OptionalInt linkGroup;
+        int linkIndex;
+
+        int first = buffer.get();
+        if ((first & 0x40) != 0) {
+            linkGroup = OptionalInt.of(readVarInt(buffer, first & 0xbf));
+            linkIndex = readVarInt(buffer, buffer.get());
+        } else {
+            linkGroup = OptionalInt.empty();
+            linkIndex = readVarInt(buffer, first & 0xbf);
+        }
+
+        return new StreamingGraph.Link(linkGroup, linkIndex);
+    }
+
+    private static int readVarInt(ByteBuffer buffer, int initial) {
+        int temp = initial;
+        int value = initial & 0x7f;
+        while ((temp & 0x80) != 0) {
+            temp = buffer.get();
+            value = (value << 7) | (temp & 0x7f);
+        }
+        return value;
+    }
+}
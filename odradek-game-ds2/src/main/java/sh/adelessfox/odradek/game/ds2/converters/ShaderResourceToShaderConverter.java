@@ -21,7 +21,7 @@ public final class ShaderResourceToShaderConverter implements Converter<DS2.Shad
         HwShader shader;
 
         try {
-            byte[] data = game.readDataSource(object.streamingDataSource());
+            var data = game.readDataSourceBuffer(object.streamingDataSource());
             shader = HwShader.read(BinaryReader.wrap(data));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
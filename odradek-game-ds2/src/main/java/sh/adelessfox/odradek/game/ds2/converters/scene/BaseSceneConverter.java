@@ -24,7 +24,7 @@ abstract class BaseSceneConverter<T> implements Converter<T, Scene, DS2Game> {
         DS2.StreamingDataSource dataSource,
         DS2Game game
     ) {
-        var buffer = ByteBuffer.wrap(game.readDataSource(dataSource)).order(ByteOrder.LITTLE_ENDIAN);
+        var buffer = game.readDataSourceBuffer(dataSource).order(ByteOrder.LITTLE_ENDIAN);
         var primitives = new ArrayList<Mesh>(primitiveResources.size());
 
         assert shadingGroups.size() == primitiveResources.size();
@@ -178,11 +178,15 @@ abstract class BaseSceneConverter<T> implements Converter<T, Scene, DS2Game> {
     private static ByteBuffer readBuffer(ByteBuffer buffer, int count, int stride) {
         int position = align(buffer.position(), stride);
         int size = count * stride;
-        var view = buffer
-            .slice(position, size)
-            .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer view;
+        if (buffer.isDirect()) {
+            // A direct buffer may be mapped from the game's files and must not outlive them, so copy the data
+            view = ByteBuffer.allocate(size).put(0, buffer, position, size);
+        } else {
+            view = buffer.slice(position, size);
+        }
         buffer.position(position + size);
-        return view;
+        return view.order(ByteOrder.LITTLE_ENDIAN);
     }
 
     private static int lcm(int c) {
@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sh.adelessfox.odradek.game.Game;
 import sh.adelessfox.odradek.game.decima.DecimaGame;
+import sh.adelessfox.odradek.game.decima.GroupSnapshotStore;
+import sh.adelessfox.odradek.game.decima.ObjectId;
 import sh.adelessfox.odradek.game.decima.StreamingGraph;
 import sh.adelessfox.odradek.game.ds2.rtti.DS2;
 import sh.adelessfox.odradek.game.ds2.rtti.DS2TypeFactory;
@@ -18,10 +20,12 @@ import sh.adelessfox.odradek.util.system.ProductVersion;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public final class DS2Game implements DecimaGame {
     public static final class Provider implements Game.Provider {
@@ -37,8 +41,9 @@ public final class DS2Game implements DecimaGame {
     }
 
     private static final Logger log = LoggerFactory.getLogger(DS2Game.class);
+    private static final long MAX_SNAPSHOTS_SIZE = 4L * 1024 * 1024 * 1024;
 
-    private final StreamingGraph streamingGraph;
+    private final StreamingGraphImpl streamingGraph;
     private final StreamingGraphStorage storage;
     private final StreamingObjectReader streamingReader;
     private final FileSystem fileSystem;
@@ -69,9 +74,9 @@ public final class DS2Game implements DecimaGame {
         log.debug("Loading storage files");
         storage = new StreamingGraphStorage(this);
         long start = System.currentTimeMillis();
-        storage.mountAll(graph.files());
+        storage.registerAll(graph.files());
         long end = System.currentTimeMillis();
-        log.debug("Storage files loaded in {} ms", end - start);
+        log.debug("Storage files registered in {} ms", end - start);
 
         streamingGraph = new StreamingGraphImpl(graph, storage, typeFactory);
         streamingReader = new StreamingObjectReader(storage, streamingGraph, typeFactory);
@@ -86,6 +91,10 @@ public final class DS2Game implements DecimaGame {
         }
     }
 
+    public CompletableFuture<byte[]> readDataSourceAsync(DS2.StreamingDataSource dataSource) {
+        return storage.submit(() -> readDataSourceData(dataSource));
+    }
+
     public byte[] readDataSourceData(DS2.StreamingDataSource dataSource) throws IOException {
         return readDataSourceData(dataSource, dataSource.offset(), dataSource.length());
     }
@@ -98,11 +107,39 @@ public final class DS2Game implements DecimaGame {
         return readFile(streamingGraph.files().get(fileId), offset, length);
     }
 
+    /**
+     * Reads the data of the data source as a buffer, avoiding copying when possible.
+     *
+     * @see DecimaGame#readFileBuffer(String, long, long)
+     */
+    public ByteBuffer readDataSourceBuffer(DS2.StreamingDataSource dataSource) {
+        try {
+            var file = streamingGraph.files().get(dataSource.fileId());
+            return readFileBuffer(file, (long) dataSource.fileOffset() + dataSource.offset(), dataSource.length());
+        } catch (IOException e) {
+            // FIXME: Throwing unchecked exceptions is not ideal. Think about proper exception handling
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public List<TypedObject> readGroup(int groupId, boolean readSubgroups) throws IOException {
-        synchronized (streamingReader) {
-            return streamingReader.readGroup(groupId, readSubgroups).objects();
-        }
+        return streamingReader.readGroup(groupId, readSubgroups).objects();
+    }
+
+    @Override
+    public CompletableFuture<List<TypedObject>> readGroupAsync(int groupId, boolean readSubgroups) {
+        return storage.submit(() -> readGroup(groupId, readSubgroups));
+    }
+
+    @Override
+    public TypedObject readObject(int groupId, int objectIndex) throws IOException {
+        return streamingReader.readObject(groupId, objectIndex);
+    }
+
+    @Override
+    public CompletableFuture<TypedObject> readObjectAsync(ObjectId objectId) {
+        return storage.submit(() -> readObject(objectId));
     }
 
     @Override
@@ -110,6 +147,60 @@ public final class DS2Game implements DecimaGame {
         return storage.read(file, offset, length);
     }
 
+    @Override
+    public CompletableFuture<byte[]> readFileAsync(String file, long offset, long length) {
+        return storage.readAsync(file, offset, length);
+    }
+
+    @Override
+    public void readFile(String file, long offset, ByteBuffer dst) throws IOException {
+        storage.read(file, offset, dst);
+    }
+
+    @Override
+    public ByteBuffer readFileBuffer(String file, long offset, long length) throws IOException {
+        return storage.readBuffer(file, offset, length);
+    }
+
+    @Override
+    public CompletableFuture<Void> warmUp() {
+        return storage.warmUp();
+    }
+
+    @Override
+    public void useStorageIndex(Path path) {
+        storage.useIndex(path);
+    }
+
+    @Override
+    public void useGroupSnapshots(Path directory) {
+        try {
+            streamingReader.useSnapshots(GroupSnapshotStore.open(directory, streamingGraph, MAX_SNAPSHOTS_SIZE));
+        } catch (IOException e) {
+            log.warn("Failed to open group snapshots at {}", directory, e);
+        }
+    }
+
+    @Override
+    public void useTypeIndex(Path path) {
+        streamingGraph.useTypeIndex(path);
+    }
+
+    @Override
+    public void setMaxConcurrentReads(int limit) {
+        storage.setMaxConcurrentReads(limit);
+    }
+
+    @Override
+    public void setPrefetchLimits(long bytes, int tasks) {
+        streamingReader.setPrefetchLimits(bytes, tasks);
+    }
+
+    @Override
+    public void setLazyDecoding(boolean lazy) {
+        streamingReader.setLazy(lazy);
+    }
+
     @Override
     public Path resolvePath(String path) {
         return fileSystem.resolve(path);
@@ -130,6 +221,8 @@ public final class DS2Game implements DecimaGame {
 
     @Override
     public void close() throws IOException {
+        log.debug("Group cache statistics: {}", streamingReader.cacheStats());
+        streamingReader.close();
         storage.close();
     }
 
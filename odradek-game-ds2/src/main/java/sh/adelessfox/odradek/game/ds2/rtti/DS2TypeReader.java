@@ -8,7 +8,6 @@ import sh.adelessfox.odradek.rtti.data.TypedObject;
 import sh.adelessfox.odradek.rtti.data.Value;
 import sh.adelessfox.odradek.rtti.factory.TypeFactory;
 import sh.adelessfox.odradek.rtti.io.AbstractTypeReader;
-import wtf.reversed.toolbox.collect.Bytes;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -69,6 +68,29 @@ public class DS2TypeReader extends AbstractTypeReader {
         };
     }
 
+    @Override
+    protected void skipContainer(ContainerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+        boolean hashed = switch (info.containerType()) {
+            case "HashMap", "HashSet" -> true;
+            default -> false;
+        };
+
+        var count = reader.readInt();
+        var item = info.itemType();
+
+        if (!hashed && item instanceof AtomTypeInfo atom) {
+            skipAtom(atom, reader, count);
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (hashed) {
+                reader.skip(4); // hash
+            }
+            skip(item, reader, factory);
+        }
+    }
+
     @Override
     protected Object readPointer(PointerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
         throw new IOException("Unexpected pointer");
@@ -106,7 +128,7 @@ public class DS2TypeReader extends AbstractTypeReader {
 
         // Fast path
         if (item instanceof AtomTypeInfo atom) {
-            return readerForAtom(atom).read(reader, count, info);
+            return atomReader(atom).read(reader, count, info);
         }
 
         var result = info.newInstance(count);
@@ -140,6 +162,11 @@ public class DS2TypeReader extends AbstractTypeReader {
     private static final class UInt128Reader implements AtomReader {
         static final UInt128Reader INSTANCE = new UInt128Reader();
 
+        @Override
+        public int size() {
+            return 16;
+        }
+
         @Override
         public Object read(BinaryReader reader) throws IOException {
             var magnitude = reader.readBytes(16);
@@ -171,6 +198,12 @@ public class DS2TypeReader extends AbstractTypeReader {
     private static final class StringReader implements AtomReader {
         static final StringReader INSTANCE = new StringReader();
 
+        /**
+         * Whether checksums of strings are verified. Can be disabled with {@code -Dodradek.rtti.verifyStrings=false}
+         * to speed up reading of string-heavy data from trusted sources.
+         */
+        private static final boolean VERIFY = Boolean.parseBoolean(System.getProperty("odradek.rtti.verifyStrings", "true"));
+
         @Override
         public Object read(BinaryReader reader) throws IOException {
             int length = reader.readInt();
@@ -180,13 +213,20 @@ public class DS2TypeReader extends AbstractTypeReader {
 
             var hash = reader.readInt();
             var data = reader.readBytes(length);
-            int actual = DecimaHash.crc32().hash(Bytes.wrap(data)).asInt() & 0x7fffffff;
-            if (hash != actual) {
+            if (VERIFY && hash != (DecimaHash.crc32(data) & 0x7fffffff)) {
                 throw new IllegalArgumentException("String is corrupted - mismatched checksum");
             }
 
             return new String(data, StandardCharsets.UTF_8);
         }
+
+        @Override
+        public void skip(BinaryReader reader) throws IOException {
+            int length = reader.readInt();
+            if (length != 0) {
+                reader.skip(Integer.BYTES + length); // hash and data
+            }
+        }
     }
 
     private static final class WStringReader implements AtomReader {
@@ -196,11 +236,21 @@ public class DS2TypeReader extends AbstractTypeReader {
         public Object read(BinaryReader reader) throws IOException {
             return reader.readString(reader.readInt() * 2, StandardCharsets.UTF_16LE);
         }
+
+        @Override
+        public void skip(BinaryReader reader) throws IOException {
+            reader.skip(reader.readInt() * 2);
+        }
     }
 
     private static final class MotionMatchingVecNReader implements AtomReader {
         static final MotionMatchingVecNReader INSTANCE = new MotionMatchingVecNReader();
 
+        @Override
+        public int size() {
+            return 72 * Float.BYTES;
+        }
+
         @Override
         public Object read(BinaryReader reader) throws IOException {
             return new MotionMatchingVecN(reader.readFloats(72));
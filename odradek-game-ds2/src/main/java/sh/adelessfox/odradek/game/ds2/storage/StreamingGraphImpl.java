@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sh.adelessfox.odradek.game.decima.DecimaHash;
 import sh.adelessfox.odradek.game.decima.StreamingGraph;
+import sh.adelessfox.odradek.game.decima.StreamingLinkTable;
+import sh.adelessfox.odradek.game.decima.StreamingTypeIndex;
 import sh.adelessfox.odradek.game.ds2.rtti.DS2;
 import sh.adelessfox.odradek.game.ds2.rtti.DS2TypeId;
 import sh.adelessfox.odradek.io.BinaryReader;
@@ -14,10 +16,8 @@ import wtf.reversed.toolbox.collect.Bytes;
 import wtf.reversed.toolbox.hash.HashCode;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public final class StreamingGraphImpl implements StreamingGraph {
@@ -25,18 +25,27 @@ public final class StreamingGraphImpl implements StreamingGraph {
 
     private final DS2.StreamingGraphResource resource;
 
-    private final List<? extends StreamingGraph.Group> groups;
-    private final Map<Integer, StreamingGraph.Group> groupIds;
-    private final List<? extends StreamingGraph.Group> subGroups;
-    private final Map<StreamingGraph.Group, List<StreamingGraph.Group>> superGroups;
+    private final List<GroupImpl> groups;
+    private final int[] sortedGroupIds;
+    private final int[] sortedGroupOrdinals;
+    private final int[] subGroups;
+    private final int[] superGroupStarts;
+    private final int[] superGroups;
 
     private final List<ClassTypeInfo> typeTable;
-    private final byte[] linkTable;
+    private final StreamingLinkTable linkTable;
 
-    private final List<StreamingGraph.Span> spans;
-    private final List<StreamingGraph.Locator> locators;
+    // Spans and locators are stored as columns, records are only created on access
+    private final int[] spanFileIndices;
+    private final int[] spanOffsets;
+    private final int[] spanLengths;
+    private final long[] locators;
     private final List<String> files;
 
+    private final StableValue<HashCode> checksum = StableValue.of();
+    private final StableValue<StreamingTypeIndex> typeIndex = StableValue.of();
+    private volatile Path typeIndexPath;
+
     public StreamingGraphImpl(
         DS2.StreamingGraphResource graph,
         StreamingGraphStorage storage,
@@ -45,14 +54,27 @@ public final class StreamingGraphImpl implements StreamingGraph {
         this.resource = graph;
 
         groups = computeGroups(this);
-        groupIds = computeGroupIdToGroup(groups);
+        sortedGroupOrdinals = computeSortedGroupOrdinals(graph);
+        sortedGroupIds = computeSortedGroupIds(graph, sortedGroupOrdinals);
         subGroups = computeSubgroups(graph);
-        superGroups = computeGroupToSuperGroups(groups);
+        superGroupStarts = computeSuperGroupStarts(graph, subGroups);
+        superGroups = computeSuperGroups(graph, subGroups, superGroupStarts);
 
         typeTable = readTypeTable(graph, typeFactory);
         linkTable = readLinkTable(graph, storage);
+        linkTable.predecode(graph.groups().stream().mapToInt(DS2.StreamingGroupData::linkStart).toArray());
+
+        var spanTable = graph.spanTable();
+        spanFileIndices = new int[spanTable.size()];
+        spanOffsets = new int[spanTable.size()];
+        spanLengths = new int[spanTable.size()];
+        for (int i = 0; i < spanTable.size(); i++) {
+            var span = spanTable.get(i);
+            spanFileIndices[i] = span.fileIndexAndIsPatch() & 0x7fffffff;
+            spanOffsets[i] = span.offset();
+            spanLengths[i] = span.length();
+        }
 
-        spans = computeSpans(graph);
         locators = computeLocators(graph);
         files = computeFiles(graph);
     }
@@ -74,28 +96,50 @@ public final class StreamingGraphImpl implements StreamingGraph {
 
     @Override
     public StreamingGraph.Group group(int id) {
-        return Objects.requireNonNull(groupIds.get(id), () -> "Group not found: " + id);
+        return findGroup(id).orElseThrow(() -> new NullPointerException("Group not found: " + id));
+    }
+
+    @Override
+    public Optional<StreamingGraph.Group> findGroup(int id) {
+        int index = Arrays.binarySearch(sortedGroupIds, id);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(groups.get(sortedGroupOrdinals[index]));
     }
 
     @Override
     public Iterator<StreamingGraph.Link> links(int position) {
-        var buffer = ByteBuffer.wrap(linkTable, position, linkTable.length - position);
-        return new Iterator<>() {
-            @Override
-            public boolean hasNext() {
-                return buffer.hasRemaining();
-            }
+        return linkTable.iterator(position);
+    }
 
-            @Override
-            public StreamingGraph.Link next() {
-                return readLink(buffer);
-            }
-        };
+    @Override
+    public StreamingGraph.LinkCursor linkCursor(int position) {
+        return linkTable.cursor(position);
     }
 
     @Override
     public HashCode checksum() {
-        return DecimaHash.murmur3().hash(Bytes.wrap(linkTable));
+        // Hashes the whole link table, and is queried by every persistent cache of the graph
+        return checksum.orElseSet(() -> DecimaHash.murmur3().hash(Bytes.wrap(linkTable.data())));
+    }
+
+    @Override
+    public StreamingTypeIndex typeIndex() {
+        return typeIndex.orElseSet(() -> {
+            var path = typeIndexPath;
+            return path != null ? StreamingTypeIndex.open(path, this) : StreamingTypeIndex.build(this);
+        });
+    }
+
+    /**
+     * Uses the specified file to persist the type index between sessions.
+     * Has no effect if the index has already been built.
+     *
+     * @param path path to the index file
+     */
+    public void useTypeIndex(Path path) {
+        typeIndexPath = path;
     }
 
     @Override
@@ -107,43 +151,71 @@ public final class StreamingGraphImpl implements StreamingGraph {
         return Collections.unmodifiableList(graph.files());
     }
 
-    private static List<StreamingGraph.Locator> computeLocators(DS2.StreamingGraphResource graph) {
+    private static long[] computeLocators(DS2.StreamingGraphResource graph) {
         return graph.locatorTable().stream()
-            .map(locator -> new StreamingGraph.Locator((int) (locator.data() & 0xffffff), locator.data() >>> 24))
-            .toList();
+            .mapToLong(locator -> locator.data())
+            .toArray();
     }
 
-    private static List<StreamingGraph.Span> computeSpans(DS2.StreamingGraphResource graph) {
-        return graph.spanTable().stream()
-            .map(span -> new StreamingGraph.Span(span.fileIndexAndIsPatch() & 0x7fffffff, span.offset(), span.length()))
+    private static List<GroupImpl> computeGroups(StreamingGraphImpl graph) {
+        var groups = graph.resource.groups();
+        return IntStream.range(0, groups.size())
+            .mapToObj(ordinal -> new GroupImpl(graph, groups.get(ordinal), ordinal))
             .toList();
     }
 
-    private static List<? extends StreamingGraph.Group> computeGroups(StreamingGraphImpl graph) {
-        return graph.resource.groups().stream()
-            .map(group -> new GroupImpl(graph, group))
-            .toList();
+    private static int[] computeSortedGroupOrdinals(DS2.StreamingGraphResource graph) {
+        var groups = graph.groups();
+        return IntStream.range(0, groups.size())
+            .boxed()
+            .sorted(Comparator.comparingInt(ordinal -> groups.get(ordinal).groupID()))
+            .mapToInt(Integer::intValue)
+            .toArray();
     }
 
-    private static Map<Integer, StreamingGraph.Group> computeGroupIdToGroup(List<? extends StreamingGraph.Group> groups) {
-        return groups.stream().collect(Collectors.toMap(StreamingGraph.Group::id, Function.identity()));
+    private static int[] computeSortedGroupIds(DS2.StreamingGraphResource graph, int[] sortedOrdinals) {
+        var groups = graph.groups();
+        var ids = new int[sortedOrdinals.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = groups.get(sortedOrdinals[i]).groupID();
+        }
+        return ids;
     }
 
-    private static Map<StreamingGraph.Group, List<StreamingGraph.Group>> computeGroupToSuperGroups(List<? extends StreamingGraph.Group> groups) {
-        var result = new HashMap<StreamingGraph.Group, List<StreamingGraph.Group>>();
-        for (StreamingGraph.Group group : groups) {
-            for (StreamingGraph.Group subGroup : group.subGroups()) {
-                result.computeIfAbsent(subGroup, _ -> new ArrayList<>()).add(group);
+    private int[] computeSubgroups(DS2.StreamingGraphResource graph) {
+        return IntStream.of(graph.subGroups())
+            .map(id -> ((GroupImpl) group(id)).ordinal)
+            .toArray();
+    }
+
+    /**
+     * Computes offsets into the {@code superGroups} array for each group, with a trailing end offset.
+     */
+    private static int[] computeSuperGroupStarts(DS2.StreamingGraphResource graph, int[] subGroups) {
+        var groups = graph.groups();
+        var starts = new int[groups.size() + 1];
+        for (DS2.StreamingGroupData group : groups) {
+            for (int i = 0; i < group.subGroupCount(); i++) {
+                starts[subGroups[group.subGroupStart() + i] + 1]++;
             }
         }
-        result.replaceAll((_, parents) -> List.copyOf(parents));
-        return Map.copyOf(result);
+        for (int i = 0; i < groups.size(); i++) {
+            starts[i + 1] += starts[i];
+        }
+        return starts;
     }
 
-    private List<StreamingGraph.Group> computeSubgroups(DS2.StreamingGraphResource graph) {
-        return IntStream.of(graph.subGroups())
-            .mapToObj(this::group)
-            .toList();
+    private static int[] computeSuperGroups(DS2.StreamingGraphResource graph, int[] subGroups, int[] starts) {
+        var groups = graph.groups();
+        var result = new int[starts[groups.size()]];
+        var positions = Arrays.copyOf(starts, groups.size());
+        for (int ordinal = 0; ordinal < groups.size(); ordinal++) {
+            var group = groups.get(ordinal);
+            for (int i = 0; i < group.subGroupCount(); i++) {
+                result[positions[subGroups[group.subGroupStart() + i]]++] = ordinal;
+            }
+        }
+        return result;
     }
 
     private static List<ClassTypeInfo> readTypeTable(
@@ -185,52 +257,38 @@ public final class StreamingGraphImpl implements StreamingGraph {
         return List.copyOf(types);
     }
 
-    private static byte[] readLinkTable(
+    private static StreamingLinkTable readLinkTable(
         DS2.StreamingGraphResource graph,
         StreamingGraphStorage storage
     ) throws IOException {
         var file = graph.files().get(Math.toIntExact(graph.linkTableID()));
-        return storage.read(file, 0, graph.linkTableSize());
+        return new StreamingLinkTable(storage.read(file, 0, graph.linkTableSize()));
     }
 
-    private static StreamingGraph.Link readLink(ByteBuffer buffer) {
-        OptionalInt linkGroup;
-        int linkIndex;
-
-        int first = buffer.get();
-        if ((first & 0x40) != 0) {
-            linkGroup = OptionalInt.of(readVarInt(buffer, first & 0xbf));
-            linkIndex = readVarInt(buffer, buffer.get());
-        } else {
-            linkGroup = OptionalInt.empty();
-            linkIndex = readVarInt(buffer, first & 0xbf);
-        }
-
-        return new StreamingGraph.Link(linkGroup, linkIndex);
-    }
+    private List<StreamingGraph.Group> groupList(int[] ordinals, int from, int to) {
+        return new AbstractList<>() {
+            @Override
+            public StreamingGraph.Group get(int index) {
+                Objects.checkIndex(index, to - from);
+                return groups.get(ordinals[from + index]);
+            }
 
-    private static int readVarInt(ByteBuffer buffer, int initial) {
-        int temp = initial;
-        int value = initial & 0x7f;
-        while ((temp & 0x80) != 0) {
-            temp = buffer.get();
-            value = (value << 7) | (temp & 0x7f);
-        }
-        return value;
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
     }
 
     private static final class GroupImpl implements StreamingGraph.Group {
         private final StreamingGraphImpl graph;
         private final DS2.StreamingGroupData inner;
-        private final List<Integer> roots;
+        private final int ordinal;
 
-        private GroupImpl(StreamingGraphImpl graph, DS2.StreamingGroupData inner) {
+        private GroupImpl(StreamingGraphImpl graph, DS2.StreamingGroupData inner, int ordinal) {
             this.graph = graph;
             this.inner = inner;
-
-            roots = Arrays.stream(graph.resource.rootIndices(), inner.rootStart(), inner.rootStart() + inner.rootCount())
-                .boxed()
-                .toList();
+            this.ordinal = ordinal;
         }
 
         @Override
@@ -245,17 +303,36 @@ public final class StreamingGraphImpl implements StreamingGraph {
 
         @Override
         public List<? extends StreamingGraph.Group> subGroups() {
-            return graph.subGroups.subList(inner.subGroupStart(), inner.subGroupStart() + inner.subGroupCount());
+            return graph.groupList(graph.subGroups, inner.subGroupStart(), inner.subGroupStart() + inner.subGroupCount());
         }
 
         @Override
         public List<? extends StreamingGraph.Group> superGroups() {
-            return graph.superGroups.getOrDefault(this, List.of());
+            return graph.groupList(graph.superGroups, graph.superGroupStarts[ordinal], graph.superGroupStarts[ordinal + 1]);
         }
 
         @Override
         public List<Integer> roots() {
-            return roots;
+            var indices = graph.resource.rootIndices();
+            int start = inner.rootStart();
+            int count = inner.rootCount();
+            return new AbstractList<>() {
+                @Override
+                public Integer get(int index) {
+                    Objects.checkIndex(index, count);
+                    return indices[start + index];
+                }
+
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public int[] rootsArray() {
+            return Arrays.copyOfRange(graph.resource.rootIndices(), inner.rootStart(), inner.rootStart() + inner.rootCount());
         }
 
         @Override
@@ -265,17 +342,85 @@ public final class StreamingGraphImpl implements StreamingGraph {
 
         @Override
         public List<StreamingGraph.Span> spans() {
-            return graph.spans.subList(inner.spanStart(), inner.spanStart() + inner.spanCount());
+            return new AbstractList<>() {
+                @Override
+                public StreamingGraph.Span get(int index) {
+                    return new StreamingGraph.Span(spanFileIndex(index), spanOffset(index), spanLength(index));
+                }
+
+                @Override
+                public int size() {
+                    return spanCount();
+                }
+            };
+        }
+
+        @Override
+        public int spanCount() {
+            return inner.spanCount();
+        }
+
+        @Override
+        public int spanFileIndex(int index) {
+            return graph.spanFileIndices[spanIndex(index)];
+        }
+
+        @Override
+        public int spanOffset(int index) {
+            return graph.spanOffsets[spanIndex(index)];
+        }
+
+        @Override
+        public int spanLength(int index) {
+            return graph.spanLengths[spanIndex(index)];
         }
 
         @Override
         public List<StreamingGraph.Locator> locators() {
-            return graph.locators.subList(inner.locatorStart(), inner.locatorStart() + inner.locatorCount());
+            return new AbstractList<>() {
+                @Override
+                public StreamingGraph.Locator get(int index) {
+                    return new StreamingGraph.Locator(locatorFileIndex(index), locatorOffset(index));
+                }
+
+                @Override
+                public int size() {
+                    return locatorCount();
+                }
+            };
+        }
+
+        @Override
+        public int locatorCount() {
+            return inner.locatorCount();
+        }
+
+        @Override
+        public int locatorFileIndex(int index) {
+            return (int) (graph.locators[locatorIndex(index)] & 0xffffff);
+        }
+
+        @Override
+        public long locatorOffset(int index) {
+            return graph.locators[locatorIndex(index)] >>> 24;
         }
 
         @Override
         public Iterator<StreamingGraph.Link> links() {
             return graph.links(inner.linkStart());
         }
+
+        @Override
+        public StreamingGraph.LinkCursor linkCursor() {
+            return graph.linkCursor(inner.linkStart());
+        }
+
+        private int spanIndex(int index) {
+            return inner.spanStart() + Objects.checkIndex(index, inner.spanCount());
+        }
+
+        private int locatorIndex(int index) {
+            return inner.locatorStart() + Objects.checkIndex(index, inner.locatorCount());
+        }
     }
 }
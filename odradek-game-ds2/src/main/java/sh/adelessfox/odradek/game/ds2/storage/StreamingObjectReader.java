@@ -2,6 +2,7 @@ package sh.adelessfox.odradek.game.ds2.storage;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sh.adelessfox.odradek.game.decima.GroupSnapshotStore;
 import sh.adelessfox.odradek.game.decima.ObjectId;
 import sh.adelessfox.odradek.game.decima.StreamingGraph;
 import sh.adelessfox.odradek.game.ds2.rtti.DS2;
@@ -9,35 +10,70 @@ import sh.adelessfox.odradek.game.ds2.rtti.DS2TypeReader;
 import sh.adelessfox.odradek.game.ds2.rtti.data.ref.*;
 import sh.adelessfox.odradek.io.BinaryReader;
 import sh.adelessfox.odradek.io.BoolFormat;
+import sh.adelessfox.odradek.io.ReadScheduler;
 import sh.adelessfox.odradek.rtti.ClassTypeInfo;
 import sh.adelessfox.odradek.rtti.PointerTypeInfo;
 import sh.adelessfox.odradek.rtti.data.TypedObject;
 import sh.adelessfox.odradek.rtti.factory.TypeFactory;
-import sh.adelessfox.odradek.util.LruWeakCache;
+import sh.adelessfox.odradek.util.BoundedExecutor;
+import sh.adelessfox.odradek.util.WeightedCache;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
 
-public final class StreamingObjectReader extends DS2TypeReader {
+public final class StreamingObjectReader implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(StreamingObjectReader.class);
+    private static final long CACHE_SIZE = 512L * 1024 * 1024;
+    private static final int OBJECT_HEADER_SIZE = 16;
+    private static final int REFERENCE_SIZE = 8;
+    private static final long DEFAULT_PREFETCH_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_PREFETCH_TASKS = 2;
 
     private final StreamingGraphStorage storage;
     private final StreamingGraph graph;
     private final TypeFactory factory;
 
-    private final LruWeakCache<Integer, GroupResult> cache = new LruWeakCache<>(5000);
-
-    private GroupResult currentGroup;
-    private List<GroupResult> currentSubGroups;
-
-    private boolean resolveStreamingLinksAndLocators;
-    private Iterator<StreamingGraph.Link> streamingLinks;
-    private Iterator<StreamingGraph.Locator> streamingLocators;
-    private int depth;
+    private final Map<ClassTypeInfo, Integer> shallowSizes = new ConcurrentHashMap<>();
+    private final WeightedCache<GroupKey, GroupResult> cache = new WeightedCache<>(
+        CACHE_SIZE,
+        (_, result) -> estimateSize(result),
+        WeightedCache.Retention.SOFT,
+        WeightedCache.Admission.TINY_LFU
+    );
+    private final ConcurrentMap<GroupKey, CompletableFuture<GroupResult>> pending = new ConcurrentHashMap<>();
+    private volatile boolean lazy;
+    private volatile GroupSnapshotStore snapshots;
+
+    private final BoundedExecutor prefetchExecutor = new BoundedExecutor(DEFAULT_PREFETCH_TASKS);
+    private final BoundedExecutor snapshotExecutor = new BoundedExecutor(1);
+    // Prefetches are cancelled only by later reads of the same thread, so concurrent readers don't cancel each other's
+    private final ThreadLocal<List<CompletableFuture<GroupResult>>> prefetches = ThreadLocal.withInitial(ArrayList::new);
+    private volatile long prefetchBytes = DEFAULT_PREFETCH_BYTES;
+
+    /**
+     * Key of a read group. Groups read without subgroups have their links and locators left unresolved,
+     * so they can't stand in for groups read with subgroups, and are cached separately.
+     */
+    private record GroupKey(int id, boolean readSubgroups) {
+    }
 
-    public record GroupResult(StreamingGraph.Group group, List<TypedObject> objects) {
+    /**
+     * A read group.
+     *
+     * @param group      the group
+     * @param objects    objects of the group
+     * @param references ids of groups referenced by streaming references of the group
+     */
+    public record GroupResult(StreamingGraph.Group group, List<TypedObject> objects, Set<Integer> references) {
         public GroupResult {
             objects = List.copyOf(objects);
+            references = Set.copyOf(references);
         }
 
         @Override
@@ -52,202 +88,747 @@ public final class StreamingObjectReader extends DS2TypeReader {
         this.factory = factory;
     }
 
-    public GroupResult readGroup(int id, boolean readSubgroups) throws IOException {
-        return readGroup(id, new HashMap<>(), readSubgroups);
+    /**
+     * Enables lazy decoding of groups read from now on. Attributes of objects in such groups are decoded
+     * on their first access rather than when the group is read, see {@link DS2TypeReader#setLazy(boolean)}.
+     * Single objects read with {@link #readObject(int, int)} are always decoded eagerly.
+     *
+     * @param lazy whether to decode groups lazily
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Sets the store to load spans of groups from, and to store spans of groups read from archives to.
+     * Spans are stored in the background, so reads never wait for them to be written.
+     *
+     * @param snapshots the store, or {@code null} to always read from archives
+     */
+    public void useSnapshots(GroupSnapshotStore snapshots) {
+        this.snapshots = snapshots;
     }
 
-    private GroupResult readGroup(int id, Map<Integer, GroupResult> cache, boolean readSubgroups) throws IOException {
+    /**
+     * Reads a group. Can be called from multiple threads: different groups are decoded in parallel,
+     * and concurrent reads of the same group with the same {@code readSubgroups} wait for a single decoding to finish.
+     *
+     * @param id            id of the group
+     * @param readSubgroups whether to read subgroups and resolve links and locators
+     * @return the read group
+     * @throws IOException if an I/O error occurs
+     */
+    public GroupResult readGroup(int id, boolean readSubgroups) throws IOException {
         var group = Objects.requireNonNull(graph.group(id), () -> "Group not found: " + id);
 
-        if (log.isDebugEnabled()) {
-            log.debug("{}Reading group {}", indent(), Colors.blue(id));
-        }
+        // The foreground has moved on, so groups prefetched for the previous read of this thread are likely not needed
+        cancelPrefetch();
 
-        var result = cache.get(group.id());
-        if (result == null) {
-            depth++;
-            result = readGroup(group, readSubgroups);
-            cache.put(result.group.id(), result);
-            depth--;
+        var result = readGroup(group, readSubgroups, 0);
+        try {
+            prefetch(result, readSubgroups);
+        } catch (RuntimeException e) {
+            // Prefetching is speculative, so it never fails a read that has succeeded
+            log.warn("Failed to prefetch groups related to group {}", id, e);
         }
 
         return result;
     }
 
-    private synchronized GroupResult readGroup(
-        StreamingGraph.Group group,
-        boolean readSubgroups
-    ) throws IOException {
-        var subGroups = new ArrayList<GroupResult>(group.subGroups().size());
-        if (readSubgroups) {
-            for (StreamingGraph.Group subGroup : group.subGroups()) {
-                subGroups.add(readGroup(subGroup, true));
+    /**
+     * Sets limits of speculative reads of groups related to groups that have been read, that is,
+     * their subgroups and groups referenced by their streaming references. Such groups are read
+     * in the background into the cache, so reading them later doesn't block.
+     *
+     * @param bytes maximum total size of spans of groups prefetched after each read, including their subgroups,
+     *              or {@code 0} to disable prefetching
+     * @param tasks maximum number of groups prefetched at the same time, must be positive
+     */
+    public void setPrefetchLimits(long bytes, int tasks) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes must be non-negative");
+        }
+        prefetchExecutor.setLimit(tasks);
+        prefetchBytes = bytes;
+    }
+
+    @Override
+    public void close() {
+        // Cancels prefetches of all threads that haven't started yet
+        prefetchExecutor.close();
+        // Lets snapshots that are being written finish
+        snapshotExecutor.close();
+    }
+
+    private void prefetch(GroupResult result, boolean readSubgroups) {
+        long budget = prefetchBytes;
+        if (budget == 0) {
+            return;
+        }
+
+        var candidates = new LinkedHashSet<StreamingGraph.Group>();
+        if (!readSubgroups) {
+            candidates.addAll(result.group().subGroups());
+        }
+        for (int id : result.references()) {
+            // References of corrupted or partially loaded graphs may point to groups that don't exist
+            graph.findGroup(id).ifPresent(candidates::add);
+        }
+
+        var futures = prefetches.get();
+        var charged = new HashSet<Integer>();
+        for (StreamingGraph.Group group : candidates) {
+            var key = new GroupKey(group.id(), true);
+            if (cache.peek(key) != null || pending.containsKey(key)) {
+                continue;
+            }
+            budget -= prefetchSize(group, charged);
+            if (budget < 0) {
+                break;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Prefetching group {}", Colors.blue(group.id()));
             }
+            futures.add(prefetchExecutor.submit(() -> readGroup(group, true, 0)));
+        }
+    }
+
+    /**
+     * Returns the total size of spans a prefetch of the group reads, that is, of the group and its subgroups,
+     * recursively. Groups that are already cached, or have been charged by the same prefetch, are not counted.
+     */
+    private long prefetchSize(StreamingGraph.Group group, Set<Integer> charged) {
+        if (!charged.add(group.id()) || cache.peek(new GroupKey(group.id(), true)) != null) {
+            return 0;
+        }
+        long size = spanSize(group);
+        for (StreamingGraph.Group subGroup : group.subGroups()) {
+            size += prefetchSize(subGroup, charged);
+        }
+        return size;
+    }
+
+    private void cancelPrefetch() {
+        var futures = prefetches.get();
+        // Groups that are already being read are not interrupted, see BoundedExecutor
+        futures.forEach(future -> future.cancel(false));
+        futures.clear();
+    }
+
+    private GroupResult readGroup(StreamingGraph.Group group, boolean readSubgroups, int depth) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("{}Reading group {}", indent(depth), Colors.blue(group.id()));
         }
 
-        currentSubGroups = subGroups;
-        resolveStreamingLinksAndLocators = readSubgroups;
+        var key = new GroupKey(group.id(), readSubgroups);
+        var result = cache.get(key);
+        if (result != null) {
+            return result;
+        }
 
-        var result = cache.get(group.id());
-        if (result == null) {
-            result = readSingleGroup(group);
-            cache.put(group.id(), result);
+        var future = new CompletableFuture<GroupResult>();
+        var existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            // Another thread is reading the same group, wait for it
+            return await(group, existing);
         }
 
-        return result;
+        try {
+            // The group may have been read while we were registering ourselves
+            result = cache.peek(key);
+            if (result == null) {
+                result = decodeGroup(group, readSubgroups, depth);
+                cache.put(key, result);
+            }
+            future.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(key, future);
+        }
     }
 
-    private GroupResult readSingleGroup(StreamingGraph.Group group) throws IOException {
-        var objects = new ArrayList<TypedObject>(group.types().size());
-        for (ClassTypeInfo type : group.types()) {
-            objects.add(type.newInstance());
+    /**
+     * Reads a single object of a group, along with objects of the same group it references.
+     * <p>
+     * If the group is already cached or being read, the object is taken from it. Otherwise, other
+     * objects of the group are skipped without being materialized. Such objects are not cached,
+     * so repeated reads of objects from the same group are better served by {@link #readGroup(int, boolean)}.
+     *
+     * @param id    id of the group
+     * @param index index of the object within the group
+     * @return the read object
+     * @throws IOException if an I/O error occurs
+     */
+    public TypedObject readObject(int id, int index) throws IOException {
+        var group = Objects.requireNonNull(graph.group(id), () -> "Group not found: " + id);
+        Objects.checkIndex(index, group.types().size());
+
+        // Only groups read with subgroups have their links resolved the same way as a single object
+        var key = new GroupKey(id, true);
+        var result = cache.peek(key);
+        if (result != null) {
+            return result.objects().get(index);
         }
 
-        var result = new GroupResult(group, objects);
+        var existing = pending.get(key);
+        if (existing != null) {
+            return await(group, existing).objects().get(index);
+        }
 
-        currentGroup = result;
-        streamingLinks = group.links();
-        streamingLocators = group.locators().iterator();
+        return new GroupDecoder(group, null, true, false, 1).decodeObject(index);
+    }
 
-        int index = 0;
-        for (StreamingGraph.Span span : group.spans()) {
-            var data = getSpanData(span);
-            var reader = BinaryReader.wrap(data);
+    private GroupResult decodeGroup(StreamingGraph.Group group, boolean readSubgroups, int depth) throws IOException {
+        List<GroupResult> subGroups = readSubgroups ? readSubgroups(group, depth) : List.of();
+        return new GroupDecoder(group, subGroups, readSubgroups, lazy, depth + 1).decode();
+    }
 
-            while (reader.remaining() > 0) {
-                var object = objects.get(index++);
+    /**
+     * Reads subgroups of the group. Subgroups are independent of each other, so they are read
+     * concurrently; subgroups shared with other groups are still read only once, see {@link #readGroup(int, boolean)}.
+     * <p>
+     * A failed subgroup doesn't cancel its siblings, as that would interrupt threads that may be blocked
+     * reading from shared archive channels; all subgroups are awaited and the first failure is rethrown.
+     */
+    private List<GroupResult> readSubgroups(StreamingGraph.Group group, int depth) throws IOException {
+        var subGroups = group.subGroups();
+        if (subGroups.size() <= 1) {
+            var results = new ArrayList<GroupResult>(subGroups.size());
+            for (StreamingGraph.Group subGroup : subGroups) {
+                results.add(readGroup(subGroup, true, depth + 1));
+            }
+            return results;
+        }
 
-                if (log.isDebugEnabled()) {
-                    log.debug(
-                        "{}Reading {} in {} at offset {}",
-                        indent(),
-                        Colors.yellow(object.getType()),
-                        Colors.yellow(getSpanFile(span)),
-                        Colors.blue(span.offset() + reader.position())
-                    );
-                }
+        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.<GroupResult>awaitAll())) {
+            var tasks = new ArrayList<StructuredTaskScope.Subtask<GroupResult>>(subGroups.size());
+            for (StreamingGraph.Group subGroup : subGroups) {
+                tasks.add(scope.fork(() -> readGroup(subGroup, true, depth + 1)));
+            }
+
+            scope.join();
 
-                fillCompound(object.getType(), reader, factory, object);
+            var results = new ArrayList<GroupResult>(tasks.size());
+            for (var task : tasks) {
+                if (task.state() == StructuredTaskScope.Subtask.State.FAILED) {
+                    switch (task.exception()) {
+                        case RuntimeException e -> throw e;
+                        case Error e -> throw e;
+                        case Throwable e -> throw new IOException("Failed to read subgroups of group " + group.id(), e);
+                    }
+                }
+                results.add(task.get());
             }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading subgroups of group " + group.id());
         }
+    }
 
-        return result;
+    /**
+     * Returns statistics of the cache of decoded groups.
+     */
+    public WeightedCache.Stats cacheStats() {
+        return cache.stats();
     }
 
-    @Override
-    protected void fillCompound(ClassTypeInfo info, BinaryReader reader, TypeFactory factory, Object target) throws IOException {
-        super.fillCompound(info, reader, factory, target);
+    /**
+     * Estimates the retained size of the group in bytes. Serialized data of the group stands in for
+     * arrays and strings held by its objects, to which the shallow size of each object is added.
+     */
+    private long estimateSize(GroupResult result) {
+        long size = spanSize(result.group());
+        for (TypedObject object : result.objects()) {
+            size += shallowSizes.computeIfAbsent(object.getType(), type -> OBJECT_HEADER_SIZE + type.serializedAttrs().size() * REFERENCE_SIZE);
+        }
+        return size;
+    }
 
-        if (target instanceof DS2.StreamingDataSource dataSource) {
-            resolveStreamingDataSource(dataSource);
+    private static long spanSize(StreamingGraph.Group group) {
+        long size = 0;
+        for (int i = 0; i < group.spanCount(); i++) {
+            size += group.spanLength(i);
         }
+        return size;
     }
 
-    @Override
-    protected Object readPointer(PointerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
-        if (!reader.readBool(BoolFormat.BYTE)) {
-            return null;
-        } else if (info.pointerType().equals("UUIDRef")) {
-            return new UUIDRef<>((DS2.GGUUID) readCompound(factory.get("GGUUID").asClass(), reader, factory));
-        } else {
-            return resolveLink(info);
+    private static GroupResult await(StreamingGraph.Group group, CompletableFuture<GroupResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for group " + group.id());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to read group " + group.id(), e.getCause());
         }
     }
 
-    private void resolveStreamingDataSource(DS2.StreamingDataSource dataSource) {
-        if (!resolveStreamingLinksAndLocators) {
-            return;
+    private static String indent(int depth) {
+        return "\t".repeat(depth);
+    }
+
+    private List<byte[]> getSpanData(StreamingGraph.Group group) throws IOException {
+        var snapshots = this.snapshots;
+        if (snapshots != null) {
+            var snapshot = snapshots.load(group.id());
+            if (snapshot.isPresent() && snapshot.get().size() == group.spanCount()) {
+                return snapshot.get();
+            }
         }
 
-        if (dataSource.isValid()) {
-            var locator = streamingLocators.next();
+        var requests = new ArrayList<ReadScheduler.Request>(group.spanCount());
+        for (int i = 0; i < group.spanCount(); i++) {
+            requests.add(new ReadScheduler.Request(getSpanFile(group, i), group.spanOffset(i), group.spanLength(i)));
+        }
+        var data = storage.readAll(requests);
+
+        if (snapshots != null) {
+            // Written in the background, so decoding doesn't wait for the disk
+            snapshotExecutor
+                .submit(() -> {
+                    snapshots.store(group.id(), data);
+                    return null;
+                })
+                .exceptionally(e -> {
+                    log.warn("Failed to store snapshot of group {}", group.id(), e);
+                    return null;
+                });
+        }
 
-            if (log.isDebugEnabled()) {
-                log.debug(
-                    "{}Resolving data source to {} at offset {}",
-                    indent(),
-                    Colors.yellow(graph.files().get(locator.fileIndex())),
-                    Colors.blue(locator.offset())
-                );
+        return data;
+    }
+
+    private String getSpanFile(StreamingGraph.Group group, int span) {
+        return graph.files().get(group.spanFileIndex(span));
+    }
+
+    /**
+     * Objects, subgroups and links of a group, shared by all decoders of the group.
+     * <p>
+     * Links are recorded as they're read from the group for the first time, so decoders seek to any
+     * link directly. Once the group is decoded, nothing is recorded anymore, so attributes of lazily
+     * decoded objects are loaded without locking, by decoders that only hold this state.
+     */
+    private static final class GroupState {
+        private final StreamingGraph.Group group;
+        private final List<String> files;
+        private final List<GroupResult> subGroups;
+        private final int depth;
+        private List<TypedObject> objects;
+
+        private StreamingGraph.LinkCursor links;
+        private int[] linkGroups = new int[0];
+        private int[] linkIndices = new int[0];
+        private int linkCount;
+
+        GroupState(StreamingGraph.Group group, List<String> files, List<GroupResult> subGroups, int depth) {
+            this.group = group;
+            this.files = files;
+            this.subGroups = subGroups;
+            this.depth = depth;
+            this.links = group.linkCursor();
+        }
+
+        /**
+         * Records links of the group up to the specified position, if they haven't been recorded yet.
+         */
+        void recordLinks(int position) {
+            if (position <= linkCount) {
+                return;
+            }
+            if (links == null) {
+                throw new IllegalStateException("Links of group " + group.id() + " past " + linkCount + " were never read");
             }
+            if (position > linkGroups.length) {
+                int capacity = Math.max(position, Math.max(linkGroups.length * 2, 16));
+                linkGroups = Arrays.copyOf(linkGroups, capacity);
+                linkIndices = Arrays.copyOf(linkIndices, capacity);
+            }
+            for (; linkCount < position; linkCount++) {
+                links.next();
+                linkGroups[linkCount] = links.group();
+                linkIndices[linkCount] = links.index();
+            }
+        }
 
-            dataSource.locator(locator.offset() << 24 | locator.fileIndex() & 0xffffff);
+        /**
+         * Stops recording links once the group is decoded. All links that attributes of lazily decoded
+         * objects consume have been consumed by the decoding already, when they were skipped.
+         */
+        void seal() {
+            links = null;
         }
     }
 
-    private Object resolveLink(PointerTypeInfo info) {
-        if (!resolveStreamingLinksAndLocators) {
-            return null;
+    /**
+     * Decodes objects of a group, resolving their links and locators. Holds a position in links and locators
+     * of the group, so it's never used concurrently. Attributes of lazily decoded objects are decoded by
+     * instances that only hold the state of the group, see {@link #lazyReader()}.
+     */
+    private static class ObjectDecoder extends DS2TypeReader {
+        final GroupState state;
+        final boolean resolveStreamingLinksAndLocators;
+
+        // Ids of groups referenced by streaming references, or null if they're not collected
+        final Set<Integer> references;
+
+        int consumedLinks;
+        int nextLocator;
+        int linkGroup;
+        int linkIndex;
+        boolean scanning;
+
+        ObjectDecoder(GroupState state, boolean resolveStreamingLinksAndLocators, Set<Integer> references) {
+            this.state = state;
+            this.resolveStreamingLinksAndLocators = resolveStreamingLinksAndLocators;
+            this.references = references;
+        }
+
+        @Override
+        protected boolean isLazy(ClassTypeInfo info) {
+            // Data sources are resolved right after being read, see fillCompound
+            return super.isLazy(info) && !DS2.StreamingDataSource.class.isAssignableFrom(info.type());
+        }
+
+        @Override
+        protected boolean isStateful() {
+            return resolveStreamingLinksAndLocators;
+        }
+
+        @Override
+        protected long checkpoint() {
+            return (long) consumedLinks << 32 | nextLocator;
+        }
+
+        @Override
+        protected void restore(long checkpoint) {
+            consumedLinks = (int) (checkpoint >>> 32);
+            nextLocator = (int) checkpoint;
+        }
+
+        @Override
+        protected ObjectDecoder lazyReader() {
+            // Doesn't hold the decoder of the whole read, nor anything recorded while decoding it
+            return new ObjectDecoder(state, resolveStreamingLinksAndLocators, null);
+        }
+
+        TypedObject object(int index) {
+            return state.objects.get(index);
         }
 
-        var result = streamingLinks.next();
-        var linkGroup = result.group();
-        int linkIndex = result.index();
+        GroupResult subGroup(int index) throws IOException {
+            return state.subGroups.get(index);
+        }
+
+        private void nextLink() {
+            state.recordLinks(consumedLinks + 1);
+            linkGroup = state.linkGroups[consumedLinks];
+            linkIndex = state.linkIndices[consumedLinks];
+            consumedLinks++;
+        }
 
-        var pointerType = info.pointerType();
-        if (pointerType.equals("StreamingRef")) {
-            if (linkGroup.isPresent()) {
-                // If linkGroup != -1, then it's the id of the group; it's an equivalent of doing graph.group(linkGroup)
-                return new StreamingRef<>(new ObjectId(linkGroup.orElseThrow(), linkIndex));
+        @Override
+        protected void skipCompound(ClassTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+            if (DS2.StreamingDataSource.class.isAssignableFrom(info.type())) {
+                // Valid data sources consume a locator, see resolveStreamingDataSource
+                readCompound(info, reader, factory);
             } else {
-                // No idea how to resolve it otherwise. Presumably points to a runtime singleton?
+                super.skipCompound(info, reader, factory);
+            }
+        }
+
+        @Override
+        protected void fillCompound(ClassTypeInfo info, BinaryReader reader, TypeFactory factory, Object target) throws IOException {
+            super.fillCompound(info, reader, factory, target);
+
+            if (target instanceof DS2.StreamingDataSource dataSource) {
+                resolveStreamingDataSource(dataSource);
+            }
+        }
+
+        @Override
+        protected void skipPointer(PointerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+            if (!reader.readBool(BoolFormat.BYTE)) {
+                return;
+            } else if (info.pointerType().equals("UUIDRef")) {
+                skipCompound(factory.get("GGUUID").asClass(), reader, factory);
+            } else if (resolveStreamingLinksAndLocators) {
+                nextLink();
+                if (info.pointerType().equals("StreamingRef") && linkGroup >= 0 && references != null) {
+                    references.add(linkGroup);
+                }
+            }
+        }
+
+        @Override
+        protected Object readPointer(PointerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+            if (!reader.readBool(BoolFormat.BYTE)) {
                 return null;
+            } else if (info.pointerType().equals("UUIDRef")) {
+                return new UUIDRef<>((DS2.GGUUID) readCompound(factory.get("GGUUID").asClass(), reader, factory));
+            } else {
+                return resolveLink(info);
             }
         }
 
-        GroupResult group;
-        if (linkGroup.isPresent()) {
-            // Seems to reference subgroups
-            group = currentSubGroups.get(linkGroup.orElseThrow());
-        } else {
-            // References the current group being read
-            group = currentGroup;
+        private void resolveStreamingDataSource(DS2.StreamingDataSource dataSource) {
+            if (!resolveStreamingLinksAndLocators) {
+                return;
+            }
+
+            if (dataSource.isValid()) {
+                var group = state.group;
+                int locator = nextLocator++;
+                int fileIndex = group.locatorFileIndex(locator);
+                long offset = group.locatorOffset(locator);
+
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                        "{}Resolving data source to {} at offset {}",
+                        indent(state.depth),
+                        Colors.yellow(state.files.get(fileIndex)),
+                        Colors.blue(offset)
+                    );
+                }
+
+                dataSource.locator(offset << 24 | fileIndex & 0xffffff);
+            }
         }
 
-        var object = group.objects().get(linkIndex);
-        var matches = info.itemType().asClass().isAssignableFrom(object.getType());
+        private Object resolveLink(PointerTypeInfo info) throws IOException {
+            if (!resolveStreamingLinksAndLocators) {
+                return null;
+            }
 
-        if (log.isDebugEnabled()) {
-            log.debug(
-                "{}Resolving {} to object {} (index: {}) in group {} (index: {})",
-                indent(),
-                Colors.yellow(info.name()),
-                Colors.yellow(object.getType()),
-                Colors.blue(linkIndex),
-                Colors.blue(group.group.id()),
-                Colors.blue(linkGroup)
-            );
-        }
-
-        if (!matches) {
-            log.error(
-                "Type mismatch for {}: resolved to {} ({}:{})",
-                info,
-                object.getType(),
-                group.group.id(),
-                linkIndex);
-            return null;
-        }
-
-        var objectId = new ObjectId(group.group().id(), linkIndex);
-        return switch (pointerType) {
-            case "Ref" -> new Ref<>(objectId, object);
-            case "WeakPtr" -> new WeakPtr<>(objectId, object);
-            case "cptr" -> new CPtr<>(objectId, object);
-            default -> throw new UnsupportedOperationException("Unsupported pointer type: " + pointerType);
-        };
-    }
+            nextLink();
+            int linkGroup = this.linkGroup;
+            int linkIndex = this.linkIndex;
 
-    private String indent() {
-        return "\t".repeat(depth);
-    }
+            if (scanning) {
+                // Compounds that can't be skipped are read while scanning; only consumed links matter
+                return null;
+            }
+
+            var pointerType = info.pointerType();
+            if (pointerType.equals("StreamingRef")) {
+                if (linkGroup >= 0) {
+                    // If linkGroup != -1, then it's the id of the group; it's an equivalent of doing graph.group(linkGroup)
+                    if (references != null) {
+                        references.add(linkGroup);
+                    }
+                    return new StreamingRef<>(new ObjectId(linkGroup, linkIndex));
+                } else {
+                    // No idea how to resolve it otherwise. Presumably points to a runtime singleton?
+                    return null;
+                }
+            }
+
+            StreamingGraph.Group group;
+            TypedObject object;
+            if (linkGroup >= 0) {
+                // Seems to reference subgroups
+                var subGroup = subGroup(linkGroup);
+                group = subGroup.group();
+                object = subGroup.objects().get(linkIndex);
+            } else {
+                // References the current group being read
+                group = state.group;
+                object = object(linkIndex);
+            }
+
+            var matches = info.itemType().asClass().isAssignableFrom(object.getType());
+
+            if (log.isDebugEnabled()) {
+                log.debug(
+                    "{}Resolving {} to object {} (index: {}) in group {} (index: {})",
+                    indent(state.depth),
+                    Colors.yellow(info.name()),
+                    Colors.yellow(object.getType()),
+                    Colors.blue(linkIndex),
+                    Colors.blue(group.id()),
+                    Colors.blue(linkGroup)
+                );
+            }
+
+            if (!matches) {
+                log.error(
+                    "Type mismatch for {}: resolved to {} ({}:{})",
+                    info,
+                    object.getType(),
+                    group.id(),
+                    linkIndex);
+                return null;
+            }
 
-    private byte[] getSpanData(StreamingGraph.Span span) throws IOException {
-        return storage.read(getSpanFile(span), span.offset(), span.length());
+            var objectId = new ObjectId(group.id(), linkIndex);
+            return switch (pointerType) {
+                case "Ref" -> new Ref<>(objectId, object);
+                case "WeakPtr" -> new WeakPtr<>(objectId, object);
+                case "cptr" -> new CPtr<>(objectId, object);
+                default -> throw new UnsupportedOperationException("Unsupported pointer type: " + pointerType);
+            };
+        }
     }
 
-    private String getSpanFile(StreamingGraph.Span span) {
-        return graph.files().get(span.fileIndex());
+    /**
+     * Decodes objects of a single group. Holds the state of a single read, so each read uses its own instance.
+     */
+    private final class GroupDecoder extends ObjectDecoder {
+        private final StreamingGraph.Group group;
+        private final int depth;
+
+        // State of a single-object read, see decodeObject
+        private TypedObject[] objects;
+        private GroupResult[] loadedSubGroups;
+        private final Deque<Integer> queue = new ArrayDeque<>();
+
+        GroupDecoder(
+            StreamingGraph.Group group,
+            List<GroupResult> subGroups,
+            boolean resolveStreamingLinksAndLocators,
+            boolean lazy,
+            int depth
+        ) {
+            super(new GroupState(group, graph.files(), subGroups, depth), resolveStreamingLinksAndLocators, new HashSet<>());
+            this.group = group;
+            this.depth = depth;
+            setLazy(lazy);
+        }
+
+        GroupResult decode() throws IOException {
+            var objects = new ArrayList<TypedObject>(group.types().size());
+            for (ClassTypeInfo type : group.types()) {
+                objects.add(type.newInstance());
+            }
+
+            state.objects = objects;
+            consumedLinks = 0;
+            nextLocator = 0;
+
+            var data = getSpanData(group);
+
+            int index = 0;
+            for (int i = 0; i < group.spanCount(); i++) {
+                var reader = BinaryReader.wrap(data.get(i));
+
+                while (reader.remaining() > 0) {
+                    var object = objects.get(index++);
+
+                    if (log.isDebugEnabled()) {
+                        log.debug(
+                            "{}Reading {} in {} at offset {}",
+                            indent(depth),
+                            Colors.yellow(object.getType()),
+                            Colors.yellow(getSpanFile(group, i)),
+                            Colors.blue(group.spanOffset(i) + reader.position())
+                        );
+                    }
+
+                    fillCompound(object.getType(), reader, factory, object);
+                }
+            }
+
+            state.seal();
+            return new GroupResult(group, objects, references);
+        }
+
+        /**
+         * Decodes a single object and objects of the group it references, directly or indirectly.
+         * <p>
+         * Objects are laid out back to back, and links and locators are consumed in the order of objects,
+         * so the group is scanned first to find where each object starts without materializing it.
+         * Subgroups are only read if they're referenced.
+         */
+        TypedObject decodeObject(int index) throws IOException {
+            var types = group.types();
+            var spans = new int[types.size()];
+            var positions = new long[types.size()];
+            var links = new int[types.size()];
+            var locators = new int[types.size()];
+
+            var data = getSpanData(group);
+
+            scanning = true;
+            consumedLinks = 0;
+            nextLocator = 0;
+
+            int current = 0;
+            for (int i = 0; i < group.spanCount(); i++) {
+                var reader = BinaryReader.wrap(data.get(i));
+
+                while (reader.remaining() > 0) {
+                    spans[current] = i;
+                    positions[current] = reader.position();
+                    links[current] = consumedLinks;
+                    locators[current] = nextLocator;
+                    skip(types.get(current++), reader, factory);
+                }
+            }
+
+            scanning = false;
+            objects = new TypedObject[types.size()];
+            loadedSubGroups = new GroupResult[group.subGroups().size()];
+
+            var object = object(index);
+            while (!queue.isEmpty()) {
+                int next = queue.poll();
+                var reader = BinaryReader.wrap(data.get(spans[next]));
+                reader.position(positions[next]);
+
+                // Links have been recorded by the scan, so seeking is free
+                consumedLinks = links[next];
+                nextLocator = locators[next];
+
+                if (log.isDebugEnabled()) {
+                    log.debug(
+                        "{}Reading {} in {} at offset {}",
+                        indent(depth),
+                        Colors.yellow(objects[next].getType()),
+                        Colors.yellow(getSpanFile(group, spans[next])),
+                        Colors.blue(group.spanOffset(spans[next]) + positions[next])
+                    );
+                }
+
+                fillCompound(objects[next].getType(), reader, factory, objects[next]);
+            }
+
+            state.seal();
+            return object;
+        }
+
+        @Override
+        TypedObject object(int index) {
+            if (objects == null) {
+                return super.object(index);
+            }
+            var object = objects[index];
+            if (object == null) {
+                object = group.types().get(index).newInstance();
+                objects[index] = object;
+                queue.add(index);
+            }
+            return object;
+        }
+
+        @Override
+        GroupResult subGroup(int index) throws IOException {
+            if (loadedSubGroups == null) {
+                return super.subGroup(index);
+            }
+            var subGroup = loadedSubGroups[index];
+            if (subGroup == null) {
+                subGroup = readGroup(group.subGroups().get(index), true, depth);
+                loadedSubGroups[index] = subGroup;
+            }
+            return subGroup;
+        }
     }
 
     private record Colors(CharSequence text, int foreground) {
@@ -24,7 +24,7 @@ abstract class BaseSceneConverter<T> implements Converter<T, Scene, HFWGame> {
         HFW.StreamingDataSource dataSource,
         HFWGame game
     ) {
-        var buffer = ByteBuffer.wrap(game.readDataSource(dataSource)).order(ByteOrder.LITTLE_ENDIAN);
+        var buffer = game.readDataSourceBuffer(dataSource).order(ByteOrder.LITTLE_ENDIAN);
         var meshes = new ArrayList<Mesh>(primitiveResources.size());
 
         assert shadingGroups.size() == primitiveResources.size();
@@ -234,11 +234,15 @@ abstract class BaseSceneConverter<T> implements Converter<T, Scene, HFWGame> {
     private static ByteBuffer readBufferAligned(ByteBuffer buffer, int count, int stride) {
         int position = alignUp(buffer.position(), stride);
         int size = count * stride;
-        var view = buffer
-            .slice(position, size)
-            .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer view;
+        if (buffer.isDirect()) {
+            // A direct buffer may be mapped from the game's files and must not outlive them, so copy the data
+            view = ByteBuffer.allocate(size).put(0, buffer, position, size);
+        } else {
+            view = buffer.slice(position, size);
+        }
         buffer.position(position + size);
-        return view;
+        return view.order(ByteOrder.LITTLE_ENDIAN);
     }
 
     private static int alignUp(int value, int alignment) {
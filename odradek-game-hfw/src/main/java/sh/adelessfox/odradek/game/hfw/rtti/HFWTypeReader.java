@@ -7,7 +7,6 @@ import sh.adelessfox.odradek.rtti.data.TypedObject;
 import sh.adelessfox.odradek.rtti.data.Value;
 import sh.adelessfox.odradek.rtti.factory.TypeFactory;
 import sh.adelessfox.odradek.rtti.io.AbstractTypeReader;
-import wtf.reversed.toolbox.collect.Bytes;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -67,6 +66,29 @@ public class HFWTypeReader extends AbstractTypeReader {
         };
     }
 
+    @Override
+    protected void skipContainer(ContainerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+        boolean hashed = switch (info.containerType()) {
+            case "HashMap", "HashSet" -> true;
+            default -> false;
+        };
+
+        var count = reader.readInt();
+        var item = info.itemType();
+
+        if (!hashed && item instanceof AtomTypeInfo atom) {
+            skipAtom(atom, reader, count);
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (hashed) {
+                reader.skip(4); // hash
+            }
+            skip(item, reader, factory);
+        }
+    }
+
     @Override
     protected Object readPointer(PointerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
         throw new IOException("Unexpected pointer");
@@ -101,7 +123,7 @@ public class HFWTypeReader extends AbstractTypeReader {
 
         // Fast path
         if (item instanceof AtomTypeInfo atom) {
-            return readerForAtom(atom).read(reader, count, info);
+            return atomReader(atom).read(reader, count, info);
         }
 
         var result = info.newInstance(count);
@@ -135,6 +157,12 @@ public class HFWTypeReader extends AbstractTypeReader {
     private static final class StringReader implements AtomReader {
         static final StringReader INSTANCE = new StringReader();
 
+        /**
+         * Whether checksums of strings are verified. Can be disabled with {@code -Dodradek.rtti.verifyStrings=false}
+         * to speed up reading of string-heavy data from trusted sources.
+         */
+        private static final boolean VERIFY = Boolean.parseBoolean(System.getProperty("odradek.rtti.verifyStrings", "true"));
+
         @Override
         public Object read(BinaryReader reader) throws IOException {
             int length = reader.readInt();
@@ -144,13 +172,20 @@ public class HFWTypeReader extends AbstractTypeReader {
 
             var hash = reader.readInt();
             var data = reader.readBytes(length);
-            int actual = DecimaHash.crc32().hash(Bytes.wrap(data)).asInt() & 0x7fffffff;
-            if (hash != actual) {
+            if (VERIFY && hash != (DecimaHash.crc32(data) & 0x7fffffff)) {
                 throw new IllegalArgumentException("String is corrupted - mismatched checksum");
             }
 
             return new String(data, StandardCharsets.UTF_8);
         }
+
+        @Override
+        public void skip(BinaryReader reader) throws IOException {
+            int length = reader.readInt();
+            if (length != 0) {
+                reader.skip(Integer.BYTES + length); // hash and data
+            }
+        }
     }
 
     private static final class WStringReader implements AtomReader {
@@ -160,5 +195,10 @@ public class HFWTypeReader extends AbstractTypeReader {
         public Object read(BinaryReader reader) throws IOException {
             return reader.readString(reader.readInt() * 2, StandardCharsets.UTF_16LE);
         }
+
+        @Override
+        public void skip(BinaryReader reader) throws IOException {
+            reader.skip(reader.readInt() * 2);
+        }
     }
 }
@@ -5,28 +5,59 @@ import org.slf4j.LoggerFactory;
 import sh.adelessfox.odradek.game.decima.DecimaGame;
 import sh.adelessfox.odradek.game.hfw.rtti.HFW;
 import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.io.ChunkCache;
+import sh.adelessfox.odradek.io.ChunkTableIndex;
 import sh.adelessfox.odradek.io.DirectStorageReader;
+import sh.adelessfox.odradek.io.ReadScheduler;
+import sh.adelessfox.odradek.util.BoundedExecutor;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.StructuredTaskScope;
 import java.util.regex.Pattern;
 
 public final class StreamingGraphStorage implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(StreamingGraphStorage.class);
     private static final Pattern PACKAGE_NAME = Pattern.compile("^package\\.(?<channel>\\d+)\\.(?<index>\\d+)\\.core");
+    private static final long CHUNK_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final int DEFAULT_MAX_CONCURRENT_READS = 64;
 
-    private final Map<String, BinaryReader> files = new HashMap<>();
+    private final Map<String, MountedFile> files = new ConcurrentHashMap<>();
+    private final ChunkCache chunkCache = new ChunkCache(CHUNK_CACHE_SIZE);
+    private final BoundedExecutor executor = new BoundedExecutor(DEFAULT_MAX_CONCURRENT_READS);
     private final DecimaGame game;
 
+    private volatile ChunkTableIndex index;
+    private volatile Path indexPath;
+
     public StreamingGraphStorage(DecimaGame game) {
         this.game = game;
     }
 
+    /**
+     * Uses a persistent index of chunk tables stored at the specified path. Chunk tables of
+     * compressed files are taken from the index instead of being parsed from each file, and
+     * the index is updated once all files are opened and when the storage is closed.
+     * <p>
+     * Must be called before any file is opened to have an effect on it.
+     *
+     * @param path path to the index file
+     */
+    public void useIndex(Path path) {
+        this.index = ChunkTableIndex.load(path);
+        this.indexPath = path;
+    }
+
     public void mountAll(Iterable<? extends String> files) throws IOException {
         try (var scope = StructuredTaskScope.open(
             StructuredTaskScope.Joiner.awaitAllSuccessfulOrThrow(),
@@ -47,26 +78,187 @@ public final class StreamingGraphStorage implements Closeable {
         }
     }
 
+    /**
+     * Mounts the file and opens it immediately.
+     *
+     * @param file the file to mount
+     * @throws IOException if the file can't be opened
+     */
     public void mount(String file) throws IOException {
-        synchronized (files) {
-            if (files.containsKey(file)) {
-                log.warn("File already mounted: {}", file);
-                return;
-            }
+        var mounted = add(file);
+        if (mounted != null) {
+            mounted.reader();
+        }
+    }
+
+    /**
+     * Registers files to be mounted lazily.
+     *
+     * @see #register(String)
+     */
+    public void registerAll(Iterable<? extends String> files) {
+        for (String file : files) {
+            register(file);
+        }
+    }
+
+    /**
+     * Registers the file to be mounted lazily. The file is opened and indexed
+     * on the first read, or during {@link #warmUp()}, whichever comes first.
+     *
+     * @param file the file to register
+     */
+    public void register(String file) {
+        add(file);
+    }
+
+    /**
+     * Opens all registered files that haven't been opened yet in the background.
+     * Files that fail to open are logged and skipped; they will be retried on their first read.
+     * <p>
+     * Files are opened as tasks submitted via {@link #submit(Callable)}, so they share
+     * the limit on concurrent reads rather than blocking the common pool.
+     *
+     * @return a future that completes once all files are opened
+     */
+    public CompletableFuture<Void> warmUp() {
+        long start = System.currentTimeMillis();
+        var futures = files.values().stream()
+            .map(file -> submit(() -> {
+                try {
+                    file.reader();
+                } catch (IOException e) {
+                    log.warn("Failed to open file: {}", file.name, e);
+                }
+                return null;
+            }))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures).thenRun(() -> {
+            long end = System.currentTimeMillis();
+            log.debug("Storage files warmed up in {} ms", end - start);
+            saveIndex();
+        });
+    }
+
+    public byte[] read(String file, long offset, long length) throws IOException {
+        var reader = resolve(file);
+        var buffer = new byte[Math.toIntExact(length)];
+
+        if (length == 0) {
+            return buffer;
+        }
+
+        reader.readBytes(offset, buffer, 0, buffer.length);
+
+        return buffer;
+    }
+
+    /**
+     * Reads a region of the file asynchronously.
+     *
+     * @see #submit(Callable)
+     */
+    public CompletableFuture<byte[]> readAsync(String file, long offset, long length) {
+        return submit(() -> read(file, offset, length));
+    }
+
+    /**
+     * Runs a task that reads from the storage on a virtual thread. The number of
+     * tasks running at the same time is limited, see {@link #setMaxConcurrentReads(int)}.
+     * <p>
+     * Cancelling the returned future prevents the task from starting. Tasks
+     * that have already started run to completion, and their results are discarded.
+     *
+     * @param task the task to run
+     * @return a future that completes with the result of the task
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Sets the maximum number of tasks submitted via {@link #submit(Callable)} that run at the same time.
+     */
+    public void setMaxConcurrentReads(int limit) {
+        executor.setLimit(limit);
+    }
+
+    /**
+     * Performs a batch of reads. Reads are sorted by file and offset, and adjacent or
+     * overlapping ranges are merged, so the batch is served by as few reads as possible.
+     *
+     * @param requests reads to perform
+     * @return data of each read, in the order of requests
+     * @see ReadScheduler
+     */
+    public List<byte[]> readAll(List<ReadScheduler.Request> requests) throws IOException {
+        return ReadScheduler.read(requests, this::resolve);
+    }
+
+    /**
+     * Reads {@code dst.remaining()} bytes from the file into the destination buffer.
+     */
+    public void read(String file, long offset, ByteBuffer dst) throws IOException {
+        if (dst.hasRemaining()) {
+            resolve(file).readBytes(offset, dst);
+        }
+    }
+
+    /**
+     * Reads {@code dst.byteSize()} bytes from the file into the destination segment.
+     * The segment must be either native or backed by a {@code byte[]}.
+     */
+    public void read(String file, long offset, MemorySegment dst) throws IOException {
+        read(file, offset, dst.asByteBuffer());
+    }
+
+    /**
+     * Reads a region of the file as a buffer. For memory-mapped files, the returned buffer
+     * is a read-only view of the mapping and no data is copied.
+     */
+    public ByteBuffer readBuffer(String file, long offset, long length) throws IOException {
+        return resolve(file).readBuffer(offset, Math.toIntExact(length));
+    }
+
+    /**
+     * Returns statistics of the cache of decompressed chunks shared by all mounted files.
+     */
+    public ChunkCache.Stats chunkCacheStats() {
+        return chunkCache.stats();
+    }
+
+    private BinaryReader resolve(String file) throws IOException {
+        MountedFile mounted = files.get(file);
+        if (mounted == null) {
+            throw new IllegalArgumentException("Can't resolve file: " + file);
         }
+        return mounted.reader();
+    }
 
+    private MountedFile add(String file) {
         Path path = game.resolvePath(file);
         if (Files.notExists(path)) {
             log.warn("File not found: {}", file);
-            return;
+            return null;
+        }
+
+        var mounted = new MountedFile(file, path);
+        if (files.putIfAbsent(file, mounted) != null) {
+            log.warn("File already mounted: {}", file);
+            return null;
         }
 
+        return mounted;
+    }
+
+    private BinaryReader open(String file, Path path) throws IOException {
         BinaryReader reader;
 
         try {
-            reader = DirectStorageReader.open(path);
+            reader = DirectStorageReader.open(path, index, chunkCache, ForkJoinPool.commonPool());
         } catch (IOException e) {
-            reader = BinaryReader.open(path);
+            // Uncompressed files are mapped so span reads are served straight from the page cache
+            reader = BinaryReader.map(path);
         }
 
         var matcher = PACKAGE_NAME.matcher(file);
@@ -77,41 +269,65 @@ public final class StreamingGraphStorage implements Closeable {
             log.info("Mounted file: {}", file);
         }
 
-        synchronized (files) {
-            files.put(file, reader);
-        }
+        return reader;
     }
 
-    public byte[] read(String file, long offset, long length) throws IOException {
-        var reader = resolve(file);
-        var buffer = new byte[Math.toIntExact(length)];
-
-        if (length == 0) {
-            return buffer;
-        }
-
-        synchronized (reader) {
-            reader.position(offset);
-            reader.readBytes(buffer, 0, buffer.length);
+    private void saveIndex() {
+        var index = this.index;
+        if (index == null || !index.isDirty()) {
+            return;
         }
-
-        return buffer;
-    }
-
-    private BinaryReader resolve(String file) {
-        BinaryReader reader = files.get(file);
-        if (reader == null) {
-            throw new IllegalArgumentException("Can't resolve file: " + file);
+        try {
+            index.save(indexPath);
+            log.debug("Saved chunk table index to {}", indexPath);
+        } catch (IOException e) {
+            log.warn("Failed to save chunk table index to {}", indexPath, e);
         }
-        return reader;
     }
 
-
     @Override
     public void close() throws IOException {
-        for (BinaryReader value : files.values()) {
+        log.debug("Chunk cache statistics: {}", chunkCache.stats());
+        executor.close();
+        saveIndex();
+        for (MountedFile value : files.values()) {
             value.close();
         }
         files.clear();
     }
+
+    /**
+     * A file that is opened on first access.
+     */
+    private final class MountedFile {
+        private final String name;
+        private final Path path;
+        private volatile BinaryReader reader;
+
+        MountedFile(String name, Path path) {
+            this.name = name;
+            this.path = path;
+        }
+
+        BinaryReader reader() throws IOException {
+            var reader = this.reader;
+            if (reader == null) {
+                synchronized (this) {
+                    reader = this.reader;
+                    if (reader == null) {
+                        reader = open(name, path);
+                        this.reader = reader;
+                    }
+                }
+            }
+            return reader;
+        }
+
+        synchronized void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+    }
 }
@@ -0,0 +1,399 @@
+package sh.adelessfox.odradek.game.hfw.storage;
+
+import org.junit.jupiter.api.Test;
+import sh.adelessfox.odradek.game.decima.ObjectId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static sh.adelessfox.odradek.game.hfw.storage.TestGraph.linked;
+import static sh.adelessfox.odradek.game.hfw.storage.TestGraph.local;
+
+class StreamingObjectReaderTest {
+    @Test
+    void readGroupResolvesLinks() throws IOException {
+        try (var graph = graph()) {
+            var reader = graph.open();
+            var result = reader.readGroup(1, true);
+
+            assertEquals(10, object(result, 0).value());
+            assertEquals(20, object(result, 0).ref().object().value());
+            assertEquals(new ObjectId(2, 1), object(result, 0).streamingRef().objectId());
+            assertSame(object(result, 0), object(result, 1).ref().object());
+            assertEquals(Set.of(2), result.references());
+        }
+    }
+
+    @Test
+    void groupReadWithoutSubgroupsIsNotReusedForReadWithSubgroups() throws IOException {
+        try (var graph = graph()) {
+            var reader = graph.open();
+            var unresolved = reader.readGroup(1, false);
+            var resolved = reader.readGroup(1, true);
+
+            assertNull(object(unresolved, 0).ref());
+            assertEquals(20, object(resolved, 0).ref().object().value());
+
+            // Both are cached
+            assertSame(unresolved, reader.readGroup(1, false));
+            assertSame(resolved, reader.readGroup(1, true));
+        }
+    }
+
+    @Test
+    void concurrentReadsWithAndWithoutSubgroups() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            try (var graph = graph()) {
+                var reader = graph.open();
+                var start = new CountDownLatch(1);
+                var failure = new AtomicReference<Throwable>();
+
+                var resolving = Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                        var result = reader.readGroup(1, true);
+                        assertEquals(20, object(result, 0).ref().object().value());
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                });
+                var unresolving = Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                        var result = reader.readGroup(1, false);
+                        assertNull(object(result, 0).ref());
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                });
+
+                start.countDown();
+                resolving.join();
+                unresolving.join();
+
+                assertNull(failure.get());
+            }
+        }
+    }
+
+    @Test
+    void sharedSubgroupsAreReadOnce() throws IOException {
+        try (var graph = new TestGraph()) {
+            graph.add(4)
+                .object(40);
+            graph.add(2, 4)
+                .object(20, linked(0, 0), null);
+            graph.add(3, 4)
+                .object(30, linked(0, 0), null);
+            graph.add(1, 2, 3)
+                .object(10, linked(0, 0), null)
+                .object(11, linked(1, 0), null);
+
+            var reader = graph.open();
+            var result = reader.readGroup(1, true);
+
+            var shared = object(result, 0).ref().object().ref().object();
+            assertEquals(40, shared.value());
+            assertSame(shared, object(result, 1).ref().object().ref().object());
+            assertEquals(5, graph.decodedObjects());
+        }
+    }
+
+    @Test
+    void failedSubgroupDoesNotCancelSiblings() throws IOException {
+        try (var graph = new TestGraph()) {
+            graph.add(2)
+                .object(20);
+            graph.add(3)
+                .object(30)
+                .corrupt();
+            graph.add(1, 2, 3)
+                .object(10, linked(0, 0), null);
+
+            var reader = graph.open();
+            assertThrows(IOException.class, () -> reader.readGroup(1, true));
+
+            // The sibling has been read to the end and cached, while the failure is not cached
+            int decoded = graph.decodedObjects();
+            assertEquals(20, object(reader.readGroup(2, true), 0).value());
+            assertEquals(decoded, graph.decodedObjects());
+            assertThrows(IOException.class, () -> reader.readGroup(1, true));
+        }
+    }
+
+    @Test
+    void readObjectDecodesOnlyReferencedObjects() throws IOException {
+        try (var graph = objectGraph()) {
+            var reader = graph.open();
+
+            var object = (TestObject) reader.readObject(1, 0);
+            assertEquals(10, object.value());
+            assertEquals(12, object.ref().object().value());
+            assertEquals(2, graph.decodedObjects());
+        }
+    }
+
+    @Test
+    void readObjectReadsOnlyReferencedSubgroups() throws IOException {
+        try (var graph = objectGraph()) {
+            var reader = graph.open();
+
+            // Links of preceding objects are skipped, so the link of the object is found
+            var object = (TestObject) reader.readObject(1, 3);
+            assertEquals(13, object.value());
+            assertEquals(30, object.ref().object().value());
+            assertEquals(2, graph.decodedObjects());
+
+            object = (TestObject) reader.readObject(1, 1);
+            assertEquals(21, object.ref().object().value());
+            assertEquals(5, graph.decodedObjects());
+        }
+    }
+
+    @Test
+    void readObjectMatchesReadGroup() throws IOException {
+        try (var graph = objectGraph()) {
+            var reader = graph.open();
+
+            var objects = new ArrayList<TestObject>();
+            for (int i = 0; i < 4; i++) {
+                objects.add((TestObject) reader.readObject(1, i));
+            }
+
+            var result = reader.readGroup(1, true);
+            for (int i = 0; i < 4; i++) {
+                var expected = object(result, i);
+                var actual = objects.get(i);
+                assertNotSame(expected, actual);
+                assertEquals(expected.value(), actual.value());
+                assertEquals(refValue(expected), refValue(actual));
+                assertEquals(expected.streamingRef(), actual.streamingRef());
+            }
+
+            // Objects of cached groups are taken from the cache
+            assertSame(object(result, 2), reader.readObject(1, 2));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.readObject(1, 4));
+        }
+    }
+
+    @Test
+    void lazyGroupMatchesEagerGroup() throws IOException {
+        try (var eagerGraph = largeGraph(); var lazyGraph = largeGraph()) {
+            var expected = eagerGraph.open().readGroup(1, true);
+            var lazyReader = lazyGraph.open();
+            lazyReader.setLazy(true);
+            var actual = lazyReader.readGroup(1, true);
+
+            // Loaded in reverse, so each object seeks back to its own links
+            for (int i = actual.objects().size() - 1; i >= 0; i--) {
+                assertTrue(object(actual, i).$isPending());
+                assertEqualObjects(object(expected, i), object(actual, i));
+                assertFalse(object(actual, i).$isPending());
+            }
+        }
+    }
+
+    @Test
+    void lazyObjectsLoadAfterGroupIsReleased() throws IOException {
+        StreamingObjectReader.GroupResult expected;
+        try (var graph = largeGraph()) {
+            expected = graph.open().readGroup(1, true);
+        }
+
+        StreamingObjectReader.GroupResult actual;
+        try (var graph = largeGraph()) {
+            var reader = graph.open();
+            reader.setLazy(true);
+            actual = reader.readGroup(1, true);
+        }
+
+        // The reader and the storage are closed, and the file is deleted
+        var random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            int index = random.nextInt(actual.objects().size());
+            assertEqualObjects(object(expected, index), object(actual, index));
+        }
+    }
+
+    @Test
+    void concurrentLazyLoads() throws Exception {
+        try (var eagerGraph = largeGraph(); var lazyGraph = largeGraph()) {
+            var expected = eagerGraph.open().readGroup(1, true);
+            var lazyReader = lazyGraph.open();
+            lazyReader.setLazy(true);
+            var actual = lazyReader.readGroup(1, true);
+
+            var failure = new AtomicReference<Throwable>();
+            var threads = new ArrayList<Thread>();
+            for (int i = 0; i < 8; i++) {
+                int seed = i;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        var random = new Random(seed);
+                        for (int j = 0; j < 1000; j++) {
+                            int index = random.nextInt(actual.objects().size());
+                            assertEqualObjects(object(expected, index), object(actual, index));
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertNull(failure.get());
+        }
+    }
+
+    @Test
+    void prefetchReadsReferencedGroups() throws Exception {
+        try (var graph = prefetchGraph(false)) {
+            var reader = graph.open();
+            graph.enablePrefetch();
+            reader.readGroup(1, true);
+
+            // Group 3 is not a subgroup, so only the prefetch can decode it
+            awaitDecodedObjects(graph, 3);
+            assertEquals(30, object(reader.readGroup(3, true), 0).value());
+            assertEquals(3, graph.decodedObjects());
+        }
+    }
+
+    @Test
+    void prefetchReadsSubgroupsOfGroupReadWithoutSubgroups() throws Exception {
+        try (var graph = prefetchGraph(false)) {
+            var reader = graph.open();
+            graph.enablePrefetch();
+            reader.readGroup(1, false);
+
+            // Streaming references are not resolved without subgroups, so group 3 is not prefetched
+            awaitDecodedObjects(graph, 2);
+            assertEquals(20, object(reader.readGroup(2, true), 0).value());
+            assertEquals(2, graph.decodedObjects());
+        }
+    }
+
+    @Test
+    void prefetchSkipsUnknownGroups() throws IOException {
+        try (var graph = new TestGraph()) {
+            graph.add(1)
+                .object(10, null, linked(99, 0));
+
+            var reader = graph.open();
+            graph.enablePrefetch();
+            var result = reader.readGroup(1, true);
+
+            assertEquals(Set.of(99), result.references());
+            assertEquals(new ObjectId(99, 0), object(result, 0).streamingRef().objectId());
+        }
+    }
+
+    @Test
+    void prefetchFailureDoesNotReachCaller() throws Exception {
+        try (var graph = prefetchGraph(true)) {
+            var reader = graph.open();
+            graph.enablePrefetch();
+            assertEquals(10, object(reader.readGroup(1, true), 0).value());
+
+            // The failed prefetch is not cached, so the group fails when read in the foreground
+            awaitDecodedObjects(graph, 3);
+            assertThrows(IOException.class, () -> reader.readGroup(3, true));
+        }
+    }
+
+    private static void awaitDecodedObjects(TestGraph graph, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (graph.decodedObjects() < count) {
+            if (System.nanoTime() > deadline) {
+                fail("Prefetch hasn't finished");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void assertEqualObjects(TestObject expected, TestObject actual) {
+        assertEquals(expected.value(), actual.value());
+        assertEquals(refValue(expected), refValue(actual));
+        assertEquals(expected.streamingRef(), actual.streamingRef());
+    }
+
+    /**
+     * A graph with a group of many objects, each consuming a different number of links.
+     */
+    private static TestGraph largeGraph() {
+        var graph = new TestGraph();
+        var subGroup = graph.add(2);
+        for (int i = 0; i < 10; i++) {
+            subGroup.object(100 + i);
+        }
+        var group = graph.add(1, 2);
+        for (int i = 0; i < 300; i++) {
+            var ref = switch (i % 3) {
+                case 0 -> local(i * 7 % 300);
+                case 1 -> linked(0, i % 10);
+                default -> null;
+            };
+            group.object(i, ref, i % 4 == 0 ? linked(2, i % 10) : null);
+        }
+        return graph;
+    }
+
+    private static TestGraph objectGraph() {
+        var graph = new TestGraph();
+        graph.add(2)
+            .object(20)
+            .object(21);
+        graph.add(3)
+            .object(30);
+        graph.add(1, 2, 3)
+            .object(10, local(2), null)
+            .object(11, linked(0, 1), null)
+            .object(12, null, linked(3, 0))
+            .object(13, linked(1, 0), null);
+        return graph;
+    }
+
+    /**
+     * A graph with a group that references a group outside of its subgroups.
+     */
+    private static TestGraph prefetchGraph(boolean corrupt) {
+        var graph = new TestGraph();
+        graph.add(2)
+            .object(20);
+        var referenced = graph.add(3)
+            .object(30);
+        if (corrupt) {
+            referenced.corrupt();
+        }
+        graph.add(1, 2)
+            .object(10, linked(0, 0), linked(3, 0));
+        return graph;
+    }
+
+    private static TestGraph graph() {
+        var graph = new TestGraph();
+        graph.add(2)
+            .object(20)
+            .object(21);
+        graph.add(1, 2)
+            .object(10, linked(0, 0), linked(2, 1))
+            .object(11, local(0), null);
+        return graph;
+    }
+
+    private static Integer refValue(TestObject object) {
+        var ref = object.ref();
+        return ref != null ? ref.object().value() : null;
+    }
+
+    private static TestObject object(StreamingObjectReader.GroupResult result, int index) {
+        return (TestObject) result.objects().get(index);
+    }
+}
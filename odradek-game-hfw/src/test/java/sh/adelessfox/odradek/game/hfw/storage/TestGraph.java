@@ -0,0 +1,315 @@
+package sh.adelessfox.odradek.game.hfw.storage;
+
+import sh.adelessfox.odradek.game.decima.DecimaGame;
+import sh.adelessfox.odradek.game.decima.StreamingGraph;
+import sh.adelessfox.odradek.game.decima.StreamingTypeIndex;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.data.TypedObject;
+import wtf.reversed.toolbox.hash.HashCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A streaming graph of {@link TestObject}s. Groups are serialized into a single file once
+ * the graph is opened with {@link #open()}, each group into a single span.
+ */
+final class TestGraph implements StreamingGraph, AutoCloseable {
+    private final TestTypes types = new TestTypes();
+    private final Map<Integer, TestGroup> groups = new LinkedHashMap<>();
+
+    private Path path;
+    private StreamingGraphStorage storage;
+    private StreamingObjectReader reader;
+
+    /**
+     * Returns a link to an object of the same group.
+     */
+    static Link local(int index) {
+        return new Link(OptionalInt.empty(), index);
+    }
+
+    /**
+     * Returns a link to an object of a subgroup, by the index of the subgroup in its group.
+     * Streaming references link to groups by their ids instead.
+     */
+    static Link linked(int group, int index) {
+        return new Link(OptionalInt.of(group), index);
+    }
+
+    /**
+     * Adds a group. Subgroups must be added first.
+     */
+    TestGroup add(int id, int... subGroups) {
+        var group = new TestGroup(id, Arrays.stream(subGroups).mapToObj(groups::get).map(Objects::requireNonNull).toList());
+        if (groups.putIfAbsent(id, group) != null) {
+            throw new IllegalArgumentException("Duplicate group: " + id);
+        }
+        return group;
+    }
+
+    /**
+     * Serializes all groups and returns a reader of the graph, which is closed along with the graph.
+     * Prefetching is disabled, see {@link StreamingObjectReader#setPrefetchLimits(long, int)}.
+     */
+    StreamingObjectReader open() throws IOException {
+        var out = new ByteArrayOutputStream();
+        for (TestGroup group : groups.values()) {
+            group.offset = out.size();
+            out.writeBytes(group.data());
+        }
+
+        path = Files.createTempFile("odradek", ".core");
+        Files.write(path, out.toByteArray());
+
+        storage = new StreamingGraphStorage(new TestGame());
+        storage.register(path.getFileName().toString());
+
+        reader = new StreamingObjectReader(storage, this, types);
+        reader.setPrefetchLimits(0, 1);
+        return reader;
+    }
+
+    /**
+     * Enables prefetching, see {@link StreamingObjectReader#setPrefetchLimits(long, int)}.
+     */
+    void enablePrefetch() {
+        reader.setPrefetchLimits(Long.MAX_VALUE, 4);
+    }
+
+    /**
+     * Returns the number of objects decoded so far.
+     */
+    int decodedObjects() {
+        return types.instances();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        if (storage != null) {
+            storage.close();
+        }
+        if (path != null) {
+            Files.delete(path);
+        }
+    }
+
+    @Override
+    public List<ClassTypeInfo> types() {
+        return List.of(types.objectType());
+    }
+
+    @Override
+    public List<TestGroup> groups() {
+        return List.copyOf(groups.values());
+    }
+
+    @Override
+    public List<String> files() {
+        return List.of(path.getFileName().toString());
+    }
+
+    @Override
+    public Group group(int id) {
+        // Same as the real graph
+        return findGroup(id).orElseThrow(() -> new NullPointerException("Group not found: " + id));
+    }
+
+    @Override
+    public Optional<Group> findGroup(int id) {
+        return Optional.ofNullable(groups.get(id));
+    }
+
+    @Override
+    public Iterator<Link> links(int position) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LinkCursor linkCursor(int position) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HashCode checksum() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public StreamingTypeIndex typeIndex() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TypedObject resource() {
+        throw new UnsupportedOperationException();
+    }
+
+    final class TestGroup implements Group {
+        private final int id;
+        private final List<TestGroup> subGroups;
+        private final List<int[]> objects = new ArrayList<>();
+        private final List<Link> links = new ArrayList<>();
+        private boolean corrupt;
+        private int offset;
+
+        TestGroup(int id, List<TestGroup> subGroups) {
+            this.id = id;
+            this.subGroups = subGroups;
+        }
+
+        TestGroup object(int value) {
+            return object(value, null, null);
+        }
+
+        /**
+         * Adds an object.
+         *
+         * @param value        value of the object
+         * @param ref          link of its reference, see {@link #local(int)} and {@link #linked(int, int)}, or {@code null}
+         * @param streamingRef link of its streaming reference, see {@link #linked(int, int)}, or {@code null}
+         */
+        TestGroup object(int value, Link ref, Link streamingRef) {
+            objects.add(new int[]{value, ref != null ? 1 : 0, streamingRef != null ? 1 : 0});
+            if (ref != null) {
+                links.add(ref);
+            }
+            if (streamingRef != null) {
+                links.add(streamingRef);
+            }
+            return this;
+        }
+
+        /**
+         * Makes decoding of the group fail.
+         */
+        TestGroup corrupt() {
+            corrupt = true;
+            return this;
+        }
+
+        private byte[] data() {
+            var buffer = ByteBuffer.allocate(objects.size() * 6).order(ByteOrder.LITTLE_ENDIAN);
+            for (int[] object : objects) {
+                buffer.putInt(object[0]);
+                // A corrupt group has an invalid bool in place of the reference
+                buffer.put((byte) (corrupt ? 2 : object[1]));
+                buffer.put((byte) object[2]);
+            }
+            return buffer.array();
+        }
+
+        @Override
+        public int id() {
+            return id;
+        }
+
+        @Override
+        public int typeStart() {
+            return 0;
+        }
+
+        @Override
+        public List<TestGroup> subGroups() {
+            return subGroups;
+        }
+
+        @Override
+        public List<TestGroup> superGroups() {
+            return List.of();
+        }
+
+        @Override
+        public List<Integer> roots() {
+            return List.of(0);
+        }
+
+        @Override
+        public List<ClassTypeInfo> types() {
+            return Collections.nCopies(objects.size(), types.objectType());
+        }
+
+        @Override
+        public List<Span> spans() {
+            return List.of(new Span(0, offset, objects.size() * 6));
+        }
+
+        @Override
+        public List<Locator> locators() {
+            return List.of();
+        }
+
+        @Override
+        public Iterator<Link> links() {
+            return links.iterator();
+        }
+
+        @Override
+        public LinkCursor linkCursor() {
+            var links = this.links.iterator();
+            return new LinkCursor() {
+                private Link current;
+
+                @Override
+                public boolean hasNext() {
+                    return links.hasNext();
+                }
+
+                @Override
+                public void next() {
+                    current = links.next();
+                }
+
+                @Override
+                public int group() {
+                    return current.group().orElse(-1);
+                }
+
+                @Override
+                public int index() {
+                    return current.index();
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "TestGroup[id=" + id + "]";
+        }
+    }
+
+    private final class TestGame implements DecimaGame {
+        @Override
+        public List<TypedObject> readGroup(int groupId, boolean readSubgroups) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] readFile(String file, long offset, long length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Path resolvePath(String file) {
+            return path.resolveSibling(file);
+        }
+
+        @Override
+        public StreamingGraph streamingGraph() {
+            return TestGraph.this;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
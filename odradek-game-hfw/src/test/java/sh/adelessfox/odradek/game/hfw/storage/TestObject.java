@@ -0,0 +1,78 @@
+package sh.adelessfox.odradek.game.hfw.storage;
+
+import sh.adelessfox.odradek.game.hfw.rtti.data.ref.Ref;
+import sh.adelessfox.odradek.game.hfw.rtti.data.ref.StreamingRef;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.data.LazyObject;
+import sh.adelessfox.odradek.rtti.data.TypedObject;
+
+/**
+ * A hand-written equivalent of a generated type with a value and two pointers, see {@link TestTypes}.
+ * Accessors load attributes the same way as generated ones do.
+ */
+final class TestObject implements TypedObject, LazyObject {
+    private final ClassTypeInfo type;
+    private volatile Loader loader;
+
+    int value;
+    Object ref;
+    Object streamingRef;
+
+    TestObject(ClassTypeInfo type) {
+        this.type = type;
+    }
+
+    int value() {
+        $load(0);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    Ref<TestObject> ref() {
+        $load(1);
+        return (Ref<TestObject>) ref;
+    }
+
+    @SuppressWarnings("unchecked")
+    StreamingRef<TestObject> streamingRef() {
+        $load(2);
+        return (StreamingRef<TestObject>) streamingRef;
+    }
+
+    @Override
+    public ClassTypeInfo getType() {
+        return type;
+    }
+
+    @Override
+    public void $attach(Loader loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public void $load(int attr) {
+        var loader = this.loader;
+        if (loader != null && loader.load(this, attr)) {
+            this.loader = null;
+        }
+    }
+
+    @Override
+    public void $resolve() {
+        var loader = this.loader;
+        if (loader != null) {
+            loader.loadAll(this);
+            this.loader = null;
+        }
+    }
+
+    @Override
+    public boolean $isPending() {
+        return loader != null;
+    }
+
+    @Override
+    public String toString() {
+        return "TestObject[value=" + value + "]";
+    }
+}
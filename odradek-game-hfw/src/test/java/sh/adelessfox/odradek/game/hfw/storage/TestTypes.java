@@ -0,0 +1,120 @@
+package sh.adelessfox.odradek.game.hfw.storage;
+
+import sh.adelessfox.odradek.rtti.ClassAttrInfo;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.TypeInfo;
+import sh.adelessfox.odradek.rtti.factory.TypeFactory;
+import sh.adelessfox.odradek.rtti.factory.TypeId;
+import sh.adelessfox.odradek.rtti.factory.TypeNotFoundException;
+import sh.adelessfox.odradek.rtti.generator.TypeContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A type factory of a single compound type backed by {@link TestObject}.
+ * <p>
+ * The real type factory can't be initialized outside of its module, see {@code HFWTypeFactoryTest}.
+ */
+final class TestTypes implements TypeFactory {
+    private static final String TYPES = """
+        {
+          "int32": { "kind": "atom", "base_type": "int32" },
+          "TestObject": {
+            "kind": "compound",
+            "version": 0,
+            "flags": 0,
+            "attrs": [
+              { "name": "Value", "type": "int32", "offset": 0, "flags": 0 },
+              { "name": "Ref", "type": "Ref<TestObject>", "offset": 8, "flags": 0 },
+              { "name": "StreamingRef", "type": "StreamingRef<TestObject>", "offset": 16, "flags": 0 }
+            ]
+          },
+          "Ref<TestObject>": { "kind": "pointer", "type": "Ref", "item_type": "TestObject" },
+          "StreamingRef<TestObject>": { "kind": "pointer", "type": "StreamingRef", "item_type": "TestObject" }
+        }""";
+    private static final String EXTENSIONS = """
+        { "types": {}, "extends": {} }""";
+
+    private final TypeContext context = new TestTypeContext();
+    private final AtomicInteger instances = new AtomicInteger();
+
+    TestTypes() {
+        try {
+            context.load(stream(TYPES), stream(EXTENSIONS));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    ClassTypeInfo objectType() {
+        return get("TestObject").asClass();
+    }
+
+    /**
+     * Returns the number of objects instantiated so far, which is how many objects have been decoded.
+     */
+    int instances() {
+        return instances.get();
+    }
+
+    @Override
+    public TypeInfo get(String name) {
+        return context.get(name)
+            .orElseThrow(() -> new TypeNotFoundException("Unknown type: " + name));
+    }
+
+    @Override
+    public TypeInfo get(TypeId id) {
+        throw new TypeNotFoundException("Unknown type: " + id);
+    }
+
+    @Override
+    public Collection<TypeInfo> getAll() {
+        return context.getAll();
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private final class TestTypeContext extends TypeContext {
+        @Override
+        protected Class<?> computeType(TypeInfo info) {
+            if (info instanceof ClassTypeInfo) {
+                return TestObject.class;
+            }
+            throw new UnsupportedOperationException("Can't compute type of " + info);
+        }
+
+        @Override
+        protected Object newInstance(ClassTypeInfo info) {
+            instances.incrementAndGet();
+            return new TestObject(info);
+        }
+
+        @Override
+        protected VarHandle computeHandle(ClassTypeInfo info, ClassAttrInfo attr) {
+            var name = Character.toLowerCase(attr.name().charAt(0)) + attr.name().substring(1);
+            var type = name.equals("value") ? int.class : Object.class;
+            try {
+                return MethodHandles.lookup().findVarHandle(TestObject.class, name, type);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected List<ClassAttrInfo> computeOrderedAttrs(ClassTypeInfo info) {
+            return info.attrs();
+        }
+    }
+}
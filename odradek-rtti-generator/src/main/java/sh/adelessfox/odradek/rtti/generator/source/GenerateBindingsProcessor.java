@@ -1,6 +1,10 @@
 package sh.adelessfox.odradek.rtti.generator.source;
 
+import sh.adelessfox.odradek.io.BytesBinaryWriter;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.TypeInfo;
 import sh.adelessfox.odradek.rtti.generator.TypeBindings;
+import sh.adelessfox.odradek.rtti.generator.TypeClassGenerator;
 import sh.adelessfox.odradek.rtti.generator.TypeContext;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -9,6 +13,8 @@ import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ModuleElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.MirroredTypeException;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.StandardLocation;
@@ -17,11 +23,18 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Supplier;
 
 public class GenerateBindingsProcessor extends AbstractProcessor {
+    /**
+     * When enabled, implementation classes of compound types are generated at build time instead
+     * of at runtime, which allows them to be archived with CDS.
+     */
+    private static final String OPTION_AOT = "odradek.rtti.aot";
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
         var filer = processingEnv.getFiler();
@@ -36,6 +49,13 @@ public class GenerateBindingsProcessor extends AbstractProcessor {
                 context.load(openResource(annotation.input().types()), openResource(annotation.input().extensions()));
             } catch (IOException e) {
                 messager.printError("An error occurred while reading type definitions: " + e.getMessage(), module);
+                continue;
+            }
+
+            try {
+                writeCompiledTypes(context, annotation.input().compiled());
+            } catch (IOException e) {
+                messager.printError("An error occurred while writing compiled types: " + e.getMessage(), module);
             }
 
             var targetDesc = ClassDesc.of(annotation.target());
@@ -64,6 +84,14 @@ public class GenerateBindingsProcessor extends AbstractProcessor {
                 e.printStackTrace(pw);
                 messager.printError("An error occurred while writing generated code:\n" + sw);
             }
+
+            if (Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_AOT))) {
+                try {
+                    writeImplementationClasses(context, annotation, targetPackage, targetClass);
+                } catch (Exception e) {
+                    messager.printError("An error occurred while writing implementation classes: " + e, module);
+                }
+            }
         }
 
         return true;
@@ -73,6 +101,64 @@ public class GenerateBindingsProcessor extends AbstractProcessor {
         return processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", name).openInputStream();
     }
 
+    private void writeCompiledTypes(TypeContext context, String name) throws IOException {
+        var writer = new BytesBinaryWriter();
+        context.write(writer);
+
+        var resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", name);
+        try (var out = resource.openOutputStream()) {
+            out.write(writer.toByteArray());
+        }
+    }
+
+    private void writeImplementationClasses(
+        TypeContext context,
+        TypeBindings annotation,
+        String targetPackage,
+        String targetClass
+    ) throws IOException {
+        var generator = new TypeClassGenerator(targetPackage, targetClass);
+        for (TypeBindings.Builtin builtin : annotation.builtins()) {
+            generator.addBuiltin(builtin.type(), asClassDesc(asTypeMirror(builtin::repr)));
+        }
+
+        for (TypeInfo info : context.getAll()) {
+            if (!(info instanceof ClassTypeInfo classInfo)) {
+                continue;
+            }
+            for (TypeClassGenerator.GeneratedClass clazz : generator.generate(classInfo)) {
+                var file = processingEnv.getFiler().createClassFile(clazz.binaryName());
+                try (var out = file.openOutputStream()) {
+                    out.write(clazz.bytes());
+                }
+            }
+        }
+    }
+
+    private ClassDesc asClassDesc(TypeMirror type) {
+        return switch (type.getKind()) {
+            case BOOLEAN -> ConstantDescs.CD_boolean;
+            case BYTE -> ConstantDescs.CD_byte;
+            case SHORT -> ConstantDescs.CD_short;
+            case CHAR -> ConstantDescs.CD_char;
+            case INT -> ConstantDescs.CD_int;
+            case LONG -> ConstantDescs.CD_long;
+            case FLOAT -> ConstantDescs.CD_float;
+            case DOUBLE -> ConstantDescs.CD_double;
+            case ARRAY -> asClassDesc(((ArrayType) type).getComponentType()).arrayType();
+            case DECLARED -> {
+                var element = (TypeElement) ((DeclaredType) type).asElement();
+                yield ClassDesc.of(processingEnv.getElementUtils().getBinaryName(element).toString());
+            }
+            default -> throw new IllegalArgumentException("Unsupported builtin type: " + type);
+        };
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Set.of(OPTION_AOT);
+    }
+
     @Override
     public Set<String> getSupportedAnnotationTypes() {
         return Set.of(TypeBindings.class.getName());
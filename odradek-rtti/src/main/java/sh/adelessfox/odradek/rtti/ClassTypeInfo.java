@@ -1,5 +1,6 @@
 package sh.adelessfox.odradek.rtti;
 
+import sh.adelessfox.odradek.rtti.data.LazyObject;
 import sh.adelessfox.odradek.rtti.data.TypedObject;
 
 import java.lang.invoke.VarHandle;
@@ -15,6 +16,21 @@ public non-sealed interface ClassTypeInfo extends TypeInfo {
 
     List<ClassAttrInfo> orderedAttrs();
 
+    /**
+     * Returns attributes of this type and all its bases in declaration order: attributes of bases
+     * first, recursively, followed by attributes of this type.
+     * <p>
+     * Unlike {@link #orderedAttrs()}, the order doesn't depend on the game, so it's known at build time.
+     */
+    List<ClassAttrInfo> allAttrs();
+
+    /**
+     * Returns the index of the attribute in {@link #allAttrs()}, or {@code -1} if it's not an attribute of this type.
+     */
+    default int indexOf(ClassAttrInfo attr) {
+        return allAttrs().indexOf(attr);
+    }
+
     List<String> messages();
 
     int version();
@@ -29,6 +45,9 @@ public non-sealed interface ClassTypeInfo extends TypeInfo {
         if (!attr.isSerialized() && attr.isProperty()) {
             throw new UnsupportedOperationException("attempt to access a non-serializable property attribute");
         }
+        if (object instanceof LazyObject lazy && lazy.$isPending()) {
+            lazy.$load(((TypedObject) object).getType().indexOf(attr));
+        }
         return handle(attr).get(object);
     }
 
@@ -36,6 +55,9 @@ public non-sealed interface ClassTypeInfo extends TypeInfo {
         if (!attr.isSerialized() && attr.isProperty()) {
             throw new UnsupportedOperationException("attempt to access a non-serializable property attribute");
         }
+        if (object instanceof LazyObject lazy && lazy.$isPending()) {
+            lazy.$load(((TypedObject) object).getType().indexOf(attr));
+        }
         handle(attr).set(object, value);
     }
 
@@ -0,0 +1,46 @@
+package sh.adelessfox.odradek.rtti.data;
+
+/**
+ * An object whose serialized attributes can be decoded on first access instead of up front.
+ * <p>
+ * Implemented by all generated types. While a {@link Loader} is attached, accessors of serialized
+ * attributes ask it to decode the attribute before accessing it. Once all attributes are decoded,
+ * the loader is detached. Methods are prefixed with {@code $} so they don't clash with accessors.
+ */
+public interface LazyObject {
+    interface Loader {
+        /**
+         * Decodes the attribute into the target, unless it's been decoded already.
+         *
+         * @param target object to decode the attribute into
+         * @param attr   index of the attribute in {@link sh.adelessfox.odradek.rtti.ClassTypeInfo#allAttrs()},
+         *               or {@code -1} to only query the state
+         * @return {@code true} if all attributes are decoded and the loader can be detached
+         */
+        boolean load(Object target, int attr);
+
+        /**
+         * Decodes all attributes that haven't been decoded yet into the target.
+         */
+        void loadAll(Object target);
+    }
+
+    void $attach(Loader loader);
+
+    /**
+     * Decodes the attribute if it hasn't been decoded yet.
+     *
+     * @param attr index of the attribute in {@link sh.adelessfox.odradek.rtti.ClassTypeInfo#allAttrs()}
+     */
+    void $load(int attr);
+
+    /**
+     * Decodes all attributes that haven't been decoded yet.
+     */
+    void $resolve();
+
+    /**
+     * Returns whether some attributes haven't been decoded yet.
+     */
+    boolean $isPending();
+}
@@ -2,6 +2,7 @@ package sh.adelessfox.odradek.rtti.factory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sh.adelessfox.odradek.io.BinaryReader;
 import sh.adelessfox.odradek.rtti.ClassAttrInfo;
 import sh.adelessfox.odradek.rtti.ClassBaseInfo;
 import sh.adelessfox.odradek.rtti.ClassTypeInfo;
@@ -34,9 +35,13 @@ public abstract class AbstractTypeFactory implements TypeFactory {
         generator.addBuiltins(getBuiltins());
         context = new FactoryTypeContext();
 
-        try {
+        try (var compiled = getCompiledTypes()) {
             log.debug("Loading type context");
-            context.load(getTypes(), getExtensions());
+            if (compiled != null) {
+                context.load(BinaryReader.wrap(compiled.readAllBytes()));
+            } else {
+                context.load(getTypes(), getExtensions());
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -97,6 +102,14 @@ public abstract class AbstractTypeFactory implements TypeFactory {
         return namespace.getModule().getResourceAsStream(getAnnotation().input().extensions());
     }
 
+    /**
+     * Returns types compiled at build time, or {@code null} if they're not available and
+     * {@link #getTypes()} and {@link #getExtensions()} should be used instead.
+     */
+    protected InputStream getCompiledTypes() throws IOException {
+        return namespace.getModule().getResourceAsStream(getAnnotation().input().compiled());
+    }
+
     protected Map<String, Class<?>> getBuiltins() {
         return Stream.of(getAnnotation().builtins())
             .collect(Collectors.toMap(TypeBindings.Builtin::type, TypeBindings.Builtin::repr));
@@ -20,6 +20,11 @@ public @interface TypeBindings {
          * Path to the file containing extensions for types ({@code .json})
          */
         String extensions();
+
+        /**
+         * Path to the file containing types and extensions compiled at build time, see {@link TypeContext#write}
+         */
+        String compiled() default "types.bin";
     }
 
     @interface Builtin {
@@ -0,0 +1,568 @@
+package sh.adelessfox.odradek.rtti.generator;
+
+import sh.adelessfox.odradek.rtti.*;
+import sh.adelessfox.odradek.rtti.data.LazyObject;
+import sh.adelessfox.odradek.rtti.data.Value;
+
+import java.lang.classfile.*;
+import java.lang.classfile.attribute.*;
+import java.lang.constant.*;
+import java.lang.invoke.TypeDescriptor;
+import java.lang.reflect.AccessFlag;
+import java.lang.runtime.ObjectMethods;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static java.lang.classfile.ClassFile.*;
+import static java.lang.constant.ConstantDescs.*;
+
+/**
+ * Generates implementation classes of compound types.
+ * <p>
+ * Classes are generated for a single type at a time and don't depend on anything resolved at runtime,
+ * so they can be either defined at runtime by {@link TypeRuntimeGenerator} or written out at build time.
+ * Builtin types are represented by their class descriptors.
+ */
+public final class TypeClassGenerator extends TypeGenerator<ClassDesc> {
+    private static final ClassDesc CD_Arrays = Arrays.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_ClassTypeInfo = ClassTypeInfo.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_LazyObject = LazyObject.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_LazyObject_Loader = LazyObject.Loader.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_List = List.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_StableValue = StableValue.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_TypeDescriptor = TypeDescriptor.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_UnsupportedOperationException = UnsupportedOperationException.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_Value_OfEnum = Value.OfEnum.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_Value_OfEnumSet = Value.OfEnumSet.class.describeConstable().orElseThrow();
+
+    private static final DirectMethodHandleDesc BSM_ObjectMethods_boostrap = MethodHandleDesc.ofMethod(
+        DirectMethodHandleDesc.Kind.STATIC,
+        ObjectMethods.class.describeConstable().orElseThrow(),
+        "bootstrap",
+        MethodTypeDesc.of(
+            CD_Object,
+            CD_MethodHandles_Lookup, CD_String, CD_TypeDescriptor,
+            CD_Class, CD_String, CD_MethodHandle.arrayType()
+        )
+    );
+
+    private final String packageName;
+    private final String className;
+
+    public TypeClassGenerator(String packageName, String className) {
+        this.packageName = packageName;
+        this.className = className;
+    }
+
+    /**
+     * Generates the implementation class of the specified type, followed by classes of its attribute groups.
+     * <p>
+     * Accessors of serialized attributes pass indices of attributes in {@link ClassTypeInfo#allAttrs()} to
+     * {@link LazyObject#$load(int)}, as the serialized order of attributes is only known at runtime.
+     *
+     * @param info the type
+     * @return generated classes
+     */
+    public List<GeneratedClass> generate(ClassTypeInfo info) {
+        var desc = toImplClassDesc(info);
+
+        Map<ClassAttrInfo, Integer> ordinals = new IdentityHashMap<>();
+        List<ClassAttrInfo> allAttrs = collectAttributes(info);
+        for (int i = 0; i < allAttrs.size(); i++) {
+            if (allAttrs.get(i).isSerialized()) {
+                ordinals.putIfAbsent(allAttrs.get(i), i);
+            }
+        }
+
+        List<ClassGroupInfo> groups = collectGroups(info);
+        List<GeneratedClass> classes = new ArrayList<>(1 + groups.size());
+        List<ClassDesc> groupClasses = new ArrayList<>(groups.size());
+        for (ClassGroupInfo group : groups) {
+            var groupImplDesc = desc.nested(toTypeName(group));
+            groupClasses.add(groupImplDesc);
+            classes.add(generateGroupClass(info, desc, group, toClassDesc(group), groupImplDesc, ordinals));
+        }
+
+        var data = ClassFile.of().build(desc, cb -> {
+            cb.withFlags(AccessFlag.PUBLIC, AccessFlag.FINAL);
+            cb.withInterfaceSymbols(toClassDesc(info), CD_LazyObject);
+
+            // Type
+            cb.withField("$type", CD_StableValue, ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC);
+            cb.withMethodBody(CLASS_INIT_NAME, MTD_void, ACC_STATIC, cob -> cob
+                .invokestatic(CD_StableValue, "of", MethodTypeDesc.of(CD_StableValue), true)
+                .putstatic(desc, "$type", CD_StableValue)
+                .return_());
+            cb.withMethodBody("getType", MethodTypeDesc.of(CD_ClassTypeInfo), ACC_PUBLIC, cob -> cob
+                .getstatic(desc, "$type", CD_StableValue)
+                .invokeinterface(CD_StableValue, "orElseThrow", MethodTypeDesc.of(CD_Object))
+                .checkcast(CD_ClassTypeInfo)
+                .areturn());
+
+            // Lazy decoding
+            buildLazyObject(cb, desc);
+
+            List<Consumer<CodeBuilder>> constructor = new ArrayList<>(1);
+
+            // Groups
+            for (int i = 0; i < groups.size(); i++) {
+                var group = groups.get(i);
+                var groupField = toFieldName(group);
+                var groupDesc = toClassDesc(group);
+                var groupImplDesc = groupClasses.get(i);
+
+                // Field
+                cb.withField(groupField, groupDesc, ACC_FINAL | ACC_SYNTHETIC);
+
+                // Getter
+                cb.withMethodBody(toGetterName(group), MethodTypeDesc.of(groupDesc), ACC_PUBLIC, cob -> cob
+                    .aload(0)
+                    .getfield(desc, groupField, groupDesc)
+                    .areturn());
+
+                // Constructor initializer
+                constructor.add(cob -> cob
+                    .aload(0)
+                    .new_(groupImplDesc)
+                    .dup()
+                    .aload(0)
+                    .invokespecial(groupImplDesc, INIT_NAME, MethodTypeDesc.of(CD_void, desc))
+                    .putfield(desc, groupField, groupDesc));
+            }
+
+            // Constructor
+            cb.withMethodBody(INIT_NAME, MTD_void, ACC_PUBLIC, cob -> {
+                cob.aload(0);
+                cob.invokespecial(CD_Object, INIT_NAME, MTD_void);
+
+                constructor.forEach(c -> c.accept(cob));
+
+                cob.return_();
+            });
+
+            // Integrate information about nested group classes
+            cb.with(NestMembersAttribute.ofSymbols(groupClasses));
+            cb.with(InnerClassesAttribute.of(groupClasses.stream()
+                .map(d -> InnerClassInfo.of(d, Optional.empty(), Optional.empty()))
+                .toList()));
+
+            // For bootstrapping toString, equals and hashCode
+            List<BoostrapAttrInfo> bootstrapAttrs = new ArrayList<>();
+
+            // Attributes
+            for (ClassAttrInfo attr : allAttrs) {
+                var attrField = toFieldName(attr);
+                var attrDesc = toClassDesc(attr.type(), true);
+
+                if (attr.isSerialized() || !attr.isProperty()) {
+                    // Non-serialized property values are evaluated via functions; they don't have any explicit storage.
+                    cb.withField(attrField, attrDesc, ACC_PRIVATE);
+
+                    bootstrapAttrs.add(new BoostrapAttrInfo(
+                        attr,
+                        MethodHandleDesc.ofField(DirectMethodHandleDesc.Kind.GETTER, desc, attrField, attrDesc)
+                    ));
+                }
+
+                // Getter and setter, if no group
+                if (attr.group().isEmpty()) {
+                    buildAttr(cb, desc, attr, ordinals.getOrDefault(attr, -1));
+                }
+            }
+
+            // Bootstrap toString, equals, hashCode
+            buildToString(cb, desc, bootstrapAttrs);
+            buildEqualsHashCode(cb, desc, bootstrapAttrs);
+        });
+
+        classes.addFirst(new GeneratedClass(desc, data));
+        return classes;
+    }
+
+    private GeneratedClass generateGroupClass(
+        ClassTypeInfo host,
+        ClassDesc hostDesc,
+        ClassGroupInfo group,
+        ClassDesc groupDesc,
+        ClassDesc groupImplDesc,
+        Map<ClassAttrInfo, Integer> ordinals
+    ) {
+        byte[] data = ClassFile.of().build(groupImplDesc, cb -> {
+            cb.withInterfaceSymbols(groupDesc);
+            cb.with(NestHostAttribute.of(hostDesc));
+            cb.with(EnclosingMethodAttribute.of(hostDesc, Optional.empty(), Optional.empty()));
+            cb.with(InnerClassesAttribute.of(InnerClassInfo.of(groupImplDesc, Optional.empty(), Optional.empty())));
+
+            // Enclosing object
+            cb.withField("this$0", hostDesc, ACC_FINAL | ACC_SYNTHETIC);
+
+            // Constructor
+            cb.withMethodBody(INIT_NAME, MethodTypeDesc.of(CD_void, hostDesc), 0, cob -> cob
+                .aload(0)
+                .aload(1)
+                .putfield(groupImplDesc, "this$0", hostDesc)
+                .aload(0)
+                .invokespecial(CD_Object, INIT_NAME, MTD_void)
+                .return_());
+
+            // Attributes
+            for (ClassAttrInfo attr : collectAttributes(host)) {
+                if (attr.group().isPresent() && attr.group().get().equals(group.name())) {
+                    buildAttr(cb, hostDesc, groupImplDesc, attr, ordinals.getOrDefault(attr, -1));
+                }
+            }
+        });
+
+        return new GeneratedClass(groupImplDesc, data);
+    }
+
+    private static void buildLazyObject(ClassBuilder builder, ClassDesc desc) {
+        builder.withField("$loader", CD_LazyObject_Loader, ACC_PRIVATE | ACC_VOLATILE | ACC_SYNTHETIC);
+
+        builder.withMethodBody("$attach", MethodTypeDesc.of(CD_void, CD_LazyObject_Loader), ACC_PUBLIC, cob -> cob
+            .aload(0)
+            .aload(1)
+            .putfield(desc, "$loader", CD_LazyObject_Loader)
+            .return_());
+
+        builder.withMethodBody("$load", MethodTypeDesc.of(CD_void, CD_int), ACC_PUBLIC, cob -> {
+            Label done = cob.newLabel();
+            cob.aload(0);
+            cob.getfield(desc, "$loader", CD_LazyObject_Loader);
+            cob.astore(2);
+            cob.aload(2);
+            cob.ifnull(done);
+            cob.aload(2);
+            cob.aload(0);
+            cob.iload(1);
+            cob.invokeinterface(CD_LazyObject_Loader, "load", MethodTypeDesc.of(CD_boolean, CD_Object, CD_int));
+            cob.ifeq(done);
+            cob.aload(0);
+            cob.aconst_null();
+            cob.putfield(desc, "$loader", CD_LazyObject_Loader);
+            cob.labelBinding(done);
+            cob.return_();
+        });
+
+        builder.withMethodBody("$resolve", MTD_void, ACC_PUBLIC, cob -> {
+            Label done = cob.newLabel();
+            cob.aload(0);
+            cob.getfield(desc, "$loader", CD_LazyObject_Loader);
+            cob.astore(1);
+            cob.aload(1);
+            cob.ifnull(done);
+            cob.aload(1);
+            cob.aload(0);
+            cob.invokeinterface(CD_LazyObject_Loader, "loadAll", MethodTypeDesc.of(CD_void, CD_Object));
+            cob.aload(0);
+            cob.aconst_null();
+            cob.putfield(desc, "$loader", CD_LazyObject_Loader);
+            cob.labelBinding(done);
+            cob.return_();
+        });
+
+        builder.withMethodBody("$isPending", MethodTypeDesc.of(CD_boolean), ACC_PUBLIC, cob -> {
+            Label pending = cob.newLabel();
+            cob.aload(0);
+            cob.getfield(desc, "$loader", CD_LazyObject_Loader);
+            cob.ifnonnull(pending);
+            cob.iconst_0();
+            cob.ireturn();
+            cob.labelBinding(pending);
+            cob.iconst_1();
+            cob.ireturn();
+        });
+    }
+
+    private static void buildResolve(CodeBuilder builder, ClassDesc desc) {
+        builder
+            .aload(0)
+            .invokevirtual(desc, "$resolve", MTD_void);
+    }
+
+    /**
+     * Loads the attribute of the object on top of the stack, keeping the object on the stack.
+     */
+    private static void buildLoad(CodeBuilder builder, ClassDesc desc, int ordinal) {
+        if (ordinal < 0) {
+            // Not serialized; nothing to load
+            return;
+        }
+        builder
+            .dup()
+            .loadConstant(ordinal)
+            .invokevirtual(desc, "$load", MethodTypeDesc.of(CD_void, CD_int));
+    }
+
+    private static void buildToString(ClassBuilder builder, ClassDesc desc, List<BoostrapAttrInfo> attrs) {
+        List<String> names = new ArrayList<>(attrs.size());
+        List<DirectMethodHandleDesc> handles = new ArrayList<>(attrs.size());
+
+        for (BoostrapAttrInfo attr : attrs) {
+            if (attr.attr().type() instanceof ContainerTypeInfo) {
+                // Exclude containers from toString (IDEA: show 'N items' instead)
+                continue;
+            }
+            names.add(toDisplayName(attr.attr()));
+            handles.add(attr.handle());
+        }
+
+        List<ConstantDesc> args = new ArrayList<>();
+        args.add(desc);
+        args.add(String.join(";", names));
+        args.addAll(handles);
+
+        builder.withMethodBody("toString", MethodTypeDesc.of(CD_String), ACC_PUBLIC, cob -> {
+            buildResolve(cob, desc);
+            cob.aload(0);
+            cob.invokedynamic(DynamicCallSiteDesc.of(
+                BSM_ObjectMethods_boostrap,
+                "toString",
+                MethodTypeDesc.of(CD_String, desc),
+                args.toArray(ConstantDesc[]::new)
+            ));
+            cob.areturn();
+        });
+    }
+
+    private static void buildEqualsHashCode(ClassBuilder builder, ClassDesc desc, List<BoostrapAttrInfo> attrs) {
+        List<String> names = new ArrayList<>(attrs.size());
+        List<DirectMethodHandleDesc> handles = new ArrayList<>(attrs.size());
+        List<BoostrapAttrInfo> arrays = new ArrayList<>();
+
+        for (BoostrapAttrInfo attr : attrs) {
+            if (attr.handle().invocationType().returnType().isArray()) {
+                // Boostrap doesn't correctly work with arrays; rely on Arrays methods instead
+                arrays.add(attr);
+            } else {
+                names.add(toDisplayName(attr.attr()));
+                handles.add(attr.handle());
+            }
+        }
+
+        List<ConstantDesc> args = new ArrayList<>();
+        args.add(desc);
+        args.add(String.join(";", names));
+        args.addAll(handles);
+
+        builder.withMethodBody("equals", MethodTypeDesc.of(CD_boolean, CD_Object), ACC_PUBLIC, cob -> {
+            Label compare = cob.newLabel();
+            buildResolve(cob, desc);
+            cob.aload(1);
+            cob.instanceOf(desc);
+            cob.ifeq(compare);
+            cob.aload(1);
+            cob.checkcast(desc);
+            cob.invokevirtual(desc, "$resolve", MTD_void);
+            cob.labelBinding(compare);
+
+            cob.aload(0);
+            cob.aload(1);
+            cob.invokedynamic(DynamicCallSiteDesc.of(
+                BSM_ObjectMethods_boostrap,
+                "equals",
+                MethodTypeDesc.of(CD_boolean, desc, CD_Object),
+                args.toArray(ConstantDesc[]::new)
+            ));
+
+            if (!arrays.isEmpty()) {
+                Label fail = cob.newLabel();
+                cob.ifeq(fail);
+
+                cob.aload(1);
+                cob.checkcast(desc);
+                cob.astore(1);
+
+                for (BoostrapAttrInfo attr : arrays) {
+                    var fieldName = attr.handle().methodName();
+                    var fieldDesc = attr.handle().invocationType().returnType();
+
+                    cob.aload(0);
+                    cob.getfield(desc, fieldName, fieldDesc);
+
+                    cob.aload(1);
+                    cob.getfield(desc, fieldName, fieldDesc);
+
+                    cob.invokestatic(CD_Arrays, "equals", MethodTypeDesc.of(CD_boolean, fieldDesc, fieldDesc));
+                    cob.ifeq(fail);
+                }
+
+                cob.iconst_1();
+                cob.ireturn();
+
+                cob.labelBinding(fail);
+                cob.iconst_0();
+            }
+
+            cob.ireturn();
+        });
+
+        builder.withMethodBody("hashCode", MethodTypeDesc.of(CD_int), ACC_PUBLIC, cob -> {
+            buildResolve(cob, desc);
+            cob.aload(0);
+            cob.invokedynamic(DynamicCallSiteDesc.of(
+                BSM_ObjectMethods_boostrap,
+                "hashCode",
+                MethodTypeDesc.of(CD_int, desc),
+                args.toArray(ConstantDesc[]::new)
+            ));
+
+            for (BoostrapAttrInfo attr : arrays) {
+                var fieldName = attr.handle().methodName();
+                var fieldDesc = attr.handle().invocationType().returnType();
+
+                cob.ldc(31);
+                cob.imul();
+                cob.aload(0);
+                cob.getfield(desc, fieldName, fieldDesc);
+                cob.invokestatic(CD_Arrays, "hashCode", MethodTypeDesc.of(CD_int, fieldDesc));
+                cob.iadd();
+            }
+
+            cob.ireturn();
+        });
+    }
+
+    private void buildAttr(ClassBuilder builder, ClassDesc desc, ClassAttrInfo attr, int ordinal) {
+        if (attr.isSerialized() || !attr.isProperty()) {
+            buildInstanceAttr(builder, desc, attr, ordinal);
+        } else {
+            buildPropertyAttr(builder, attr);
+        }
+    }
+
+    private void buildAttr(ClassBuilder builder, ClassDesc hostDesc, ClassDesc groupDesc, ClassAttrInfo attr, int ordinal) {
+        if (attr.isSerialized() || !attr.isProperty()) {
+            buildInstanceAttr(builder, hostDesc, groupDesc, attr, ordinal);
+        } else {
+            buildPropertyAttr(builder, attr);
+        }
+    }
+
+    private void buildInstanceAttr(ClassBuilder builder, ClassDesc desc, ClassAttrInfo attr, int ordinal) {
+        var attrField = toFieldName(attr);
+        var attrDesc = toClassDesc(attr.type(), true);
+
+        builder.withMethodBody(toGetterName(attr), MethodTypeDesc.of(attrDesc), ACC_PUBLIC, cob -> {
+            cob.aload(0);
+            buildLoad(cob, desc, ordinal);
+            cob.getfield(desc, attrField, attrDesc);
+            cob.return_(TypeKind.from(attrDesc));
+        });
+
+        // Loaded before being set so that a pending load doesn't overwrite the value later
+        builder.withMethodBody(toSetterName(attr), MethodTypeDesc.of(CD_void, attrDesc), ACC_PUBLIC, cob -> {
+            cob.aload(0);
+            buildLoad(cob, desc, ordinal);
+            cob.loadLocal(TypeKind.from(attrDesc), 1);
+            cob.putfield(desc, attrField, attrDesc);
+            cob.return_();
+        });
+    }
+
+    private void buildInstanceAttr(ClassBuilder builder, ClassDesc hostDesc, ClassDesc groupDesc, ClassAttrInfo attr, int ordinal) {
+        var attrField = toFieldName(attr);
+        var attrDesc = toClassDesc(attr.type(), true);
+
+        builder.withMethodBody(toGetterName(attr), MethodTypeDesc.of(attrDesc), ACC_PUBLIC, cob -> {
+            cob.aload(0);
+            cob.getfield(groupDesc, "this$0", hostDesc);
+            buildLoad(cob, hostDesc, ordinal);
+            cob.getfield(hostDesc, attrField, attrDesc);
+            cob.return_(TypeKind.from(attrDesc));
+        });
+
+        builder.withMethodBody(toSetterName(attr), MethodTypeDesc.of(CD_void, attrDesc), ACC_PUBLIC, cob -> {
+            cob.aload(0);
+            cob.getfield(groupDesc, "this$0", hostDesc);
+            buildLoad(cob, hostDesc, ordinal);
+            cob.loadLocal(TypeKind.from(attrDesc), 1);
+            cob.putfield(hostDesc, attrField, attrDesc);
+            cob.return_();
+        });
+    }
+
+    private void buildPropertyAttr(ClassBuilder builder, ClassAttrInfo attr) {
+        var attrDesc = toClassDesc(attr.type(), true);
+
+        builder.withMethod(toGetterName(attr), MethodTypeDesc.of(attrDesc), ACC_PUBLIC, mb -> mb
+            .withCode(TypeClassGenerator::buildPropertyAccessException));
+
+        builder.withMethod(toSetterName(attr), MethodTypeDesc.of(CD_void, attrDesc), ACC_PUBLIC, mb -> mb
+            .withCode(TypeClassGenerator::buildPropertyAccessException));
+    }
+
+    private static void buildPropertyAccessException(CodeBuilder builder) {
+        builder
+            .new_(CD_UnsupportedOperationException)
+            .dup()
+            .ldc("attempt to access a non-serializable property attribute")
+            .invokespecial(CD_UnsupportedOperationException, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
+            .athrow();
+    }
+
+    public ClassDesc toImplClassDesc(ClassTypeInfo info) {
+        return toClassDesc(info).nested("POD");
+    }
+
+    private ClassDesc toClassDesc(ClassGroupInfo group) {
+        return toClassDesc(group.host()).nested(toTypeName(group));
+    }
+
+    private ClassDesc toClassDesc(ClassTypeInfo info) {
+        return toClassDesc().nested(info.name());
+    }
+
+    private ClassDesc toClassDesc(EnumTypeInfo info) {
+        return toClassDesc().nested(info.name());
+    }
+
+    private ClassDesc toClassDesc() {
+        return ClassDesc.of(packageName, className);
+    }
+
+    public ClassDesc toClassDesc(TypeInfo info, boolean useWrapperType) {
+        return switch (info) {
+            case ClassTypeInfo i -> toClassDesc(i);
+            case EnumSetTypeInfo i -> useWrapperType ? CD_Value_OfEnumSet : toClassDesc(i);
+            case EnumTypeInfo i -> useWrapperType ? CD_Value_OfEnum : toClassDesc(i);
+            case BitSetTypeInfo i -> useWrapperType ? CD_Value_OfEnum : toClassDesc(i.base());
+            case AtomTypeInfo i -> getBuiltin(i.base().name()).orElseThrow();
+            case PointerTypeInfo i -> getBuiltin(i.pointerType()).orElseThrow();
+            case ContainerTypeInfo i -> {
+                var itemType = toClassDesc(i.itemType(), useWrapperType);
+                if (itemType.isPrimitive()) {
+                    yield itemType.arrayType();
+                } else {
+                    yield CD_List;
+                }
+            }
+        };
+    }
+
+    public static String toFieldName(ClassAttrInfo attr) {
+        return attr.group()
+            .map(group -> group + "$" + attr.name())
+            .orElseGet(attr::name);
+    }
+
+    private static String toDisplayName(ClassAttrInfo attr) {
+        return attr.group()
+            .map(group -> group + "." + attr.name())
+            .orElseGet(attr::name);
+    }
+
+    private String toFieldName(ClassGroupInfo group) {
+        return group.name();
+    }
+
+    public record GeneratedClass(ClassDesc desc, byte[] bytes) {
+        /** Binary name of the class, as accepted by {@link Class#forName(String)}. */
+        public String binaryName() {
+            return desc.packageName() + '.' + desc.displayName();
+        }
+    }
+
+    private record BoostrapAttrInfo(ClassAttrInfo attr, DirectMethodHandleDesc handle) {
+    }
+}
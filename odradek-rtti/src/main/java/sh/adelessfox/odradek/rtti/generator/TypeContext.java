@@ -5,6 +5,11 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.io.BinaryWriter;
+import sh.adelessfox.odradek.io.BoolFormat;
+import sh.adelessfox.odradek.io.BytesBinaryWriter;
+import sh.adelessfox.odradek.io.StringFormat;
 import sh.adelessfox.odradek.rtti.*;
 import sh.adelessfox.odradek.rtti.data.TypedObject;
 import sh.adelessfox.odradek.rtti.data.Value;
@@ -15,13 +20,26 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.invoke.VarHandle;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.StreamSupport;
 
 public class TypeContext {
     private static final Logger log = LoggerFactory.getLogger(TypeContext.class);
 
+    private static final int MAGIC = 'R' | 'T' << 8 | 'T' << 16 | 'I' << 24;
+    private static final int VERSION = 1;
+
+    private static final byte KIND_ATOM = 0;
+    private static final byte KIND_COMPOUND = 1;
+    private static final byte KIND_CONTAINER = 2;
+    private static final byte KIND_ENUM = 3;
+    private static final byte KIND_ENUM_FLAGS = 4;
+    private static final byte KIND_ENUM_BITSET = 5;
+    private static final byte KIND_POINTER = 6;
+
     private final Map<String, TypeInfo> types = new TreeMap<>();
     private final Map<StableValue<TypeInfo>, String> pending = new IdentityHashMap<>();
     private final Map<String, List<ClassTypeInfo>> extensions = new HashMap<>();
@@ -63,6 +81,235 @@ public class TypeContext {
         extensions.clear();
     }
 
+    /**
+     * Loads types previously compiled with {@link #write(BinaryWriter)}.
+     * <p>
+     * Unlike {@link #load(InputStream, InputStream)}, doesn't need to parse JSON; extensions are already
+     * merged into compiled types, and all strings are stored once in a table referenced by index.
+     *
+     * @param reader reader of the compiled types
+     * @throws IOException if an I/O error occurs or the data is not supported
+     */
+    public void load(BinaryReader reader) throws IOException {
+        var magic = reader.readInt();
+        var version = reader.readInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("Unsupported compiled types (magic: %08x, version: %d)".formatted(magic, version));
+        }
+
+        log.debug("Loading compiled type definitions");
+        var strings = new String[reader.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = reader.readString(StringFormat.INT_LENGTH);
+        }
+
+        var count = reader.readInt();
+        for (int i = 0; i < count; i++) {
+            var name = strings[reader.readInt()];
+            var info = readCompiled(name, reader, strings);
+            types.put(name, info);
+        }
+
+        log.debug("Resolving type references");
+        pending.forEach((holder, name) -> {
+            var type = Objects.requireNonNull(types.get(name), "Couldn't find type '" + name + "'");
+            holder.setOrThrow(type);
+        });
+
+        // Cleanup
+        pending.clear();
+    }
+
+    /**
+     * Writes all loaded types in a compact binary form that can be loaded with {@link #load(BinaryReader)}.
+     *
+     * @param writer writer of the compiled types
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(BinaryWriter writer) throws IOException {
+        var strings = new LinkedHashMap<String, Integer>();
+        var body = new BytesBinaryWriter();
+
+        body.writeInt(types.size());
+        for (var entry : types.entrySet()) {
+            body.writeInt(intern(strings, entry.getKey()));
+            writeCompiled(entry.getValue(), body, strings);
+        }
+
+        writer.writeInt(MAGIC);
+        writer.writeInt(VERSION);
+        writer.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            writer.writeString(string, StringFormat.INT_LENGTH);
+        }
+        writer.write(ByteBuffer.wrap(body.toByteArray()));
+    }
+
+    private TypeInfo readCompiled(String name, BinaryReader reader, String[] strings) throws IOException {
+        var kind = reader.readByte();
+        return switch (kind) {
+            case KIND_ATOM -> new AtomTypeInfoImpl(name, resolveType(strings[reader.readInt()]));
+            case KIND_COMPOUND -> readCompiledCompound(name, reader, strings);
+            case KIND_CONTAINER -> new ContainerTypeInfoImpl(
+                name,
+                strings[reader.readInt()],
+                resolveType(strings[reader.readInt()])
+            );
+            case KIND_ENUM, KIND_ENUM_FLAGS -> readCompiledEnum(name, reader, strings, kind == KIND_ENUM_FLAGS);
+            case KIND_ENUM_BITSET -> new BitSetTypeInfoImpl(
+                name,
+                reader.readInt(),
+                resolveType(strings[reader.readInt()])
+            );
+            case KIND_POINTER -> new PointerTypeInfoImpl(
+                name,
+                strings[reader.readInt()],
+                resolveType(strings[reader.readInt()])
+            );
+            default -> throw new IOException("Type '%s' has unsupported kind %d".formatted(name, kind));
+        };
+    }
+
+    private ClassTypeInfoImpl readCompiledCompound(String name, BinaryReader reader, String[] strings) throws IOException {
+        var version = reader.readInt();
+        var flags = reader.readInt();
+
+        var messages = new ArrayList<String>();
+        for (int i = reader.readInt(); i > 0; i--) {
+            messages.add(strings[reader.readInt()]);
+        }
+
+        var bases = new ArrayList<ClassBaseInfo>();
+        for (int i = reader.readInt(); i > 0; i--) {
+            var baseType = strings[reader.readInt()];
+            var baseOffset = reader.readInt();
+            bases.add(new ClassBaseInfoImpl(resolveType(baseType), baseOffset));
+        }
+
+        var attrs = new ArrayList<ClassAttrInfo>();
+        for (int i = reader.readInt(); i > 0; i--) {
+            var attrName = strings[reader.readInt()];
+            var attrGroup = readOptionalString(reader, strings);
+            var attrType = strings[reader.readInt()];
+            var attrMin = readOptionalString(reader, strings);
+            var attrMax = readOptionalString(reader, strings);
+            var attrComment = readOptionalString(reader, strings);
+            var attrOffset = reader.readInt();
+            var attrFlags = reader.readInt();
+            var attrProperty = reader.readBool(BoolFormat.BYTE);
+
+            attrs.add(new ClassAttrInfoImpl(
+                attrName,
+                attrGroup,
+                resolveType(attrType),
+                attrMin,
+                attrMax,
+                attrComment,
+                attrOffset,
+                attrFlags,
+                attrProperty
+            ));
+        }
+
+        return new ClassTypeInfoImpl(name, bases, attrs, messages, version, flags);
+    }
+
+    private EnumTypeInfo readCompiledEnum(String name, BinaryReader reader, String[] strings, boolean asEnumSet) throws IOException {
+        var size = reader.readInt();
+        var values = new ArrayList<EnumValueInfo>();
+        for (int i = reader.readInt(); i > 0; i--) {
+            var valueName = strings[reader.readInt()];
+            var valueValue = reader.readInt();
+            var valueAliases = new ArrayList<String>();
+            for (int j = reader.readInt(); j > 0; j--) {
+                valueAliases.add(strings[reader.readInt()]);
+            }
+            values.add(new EnumValueInfoImpl(valueName, valueAliases, valueValue));
+        }
+
+        if (asEnumSet) {
+            return new EnumSetTypeInfoImpl(name, values, size);
+        } else {
+            return new EnumTypeInfoImpl(name, values, size);
+        }
+    }
+
+    private static void writeCompiled(TypeInfo info, BinaryWriter writer, Map<String, Integer> strings) throws IOException {
+        switch (info) {
+            case AtomTypeInfo t -> {
+                writer.writeByte(KIND_ATOM);
+                writer.writeInt(intern(strings, t.base().name()));
+            }
+            case ClassTypeInfo t -> {
+                writer.writeByte(KIND_COMPOUND);
+                writer.writeInt(t.version());
+                writer.writeInt(t.flags());
+                writer.writeInt(t.messages().size());
+                for (String message : t.messages()) {
+                    writer.writeInt(intern(strings, message));
+                }
+                writer.writeInt(t.bases().size());
+                for (ClassBaseInfo base : t.bases()) {
+                    writer.writeInt(intern(strings, base.type().name()));
+                    writer.writeInt(base.offset());
+                }
+                writer.writeInt(t.attrs().size());
+                for (ClassAttrInfo attr : t.attrs()) {
+                    writer.writeInt(intern(strings, attr.name()));
+                    writeOptionalString(writer, strings, attr.group());
+                    writer.writeInt(intern(strings, attr.type().name()));
+                    writeOptionalString(writer, strings, attr.min());
+                    writeOptionalString(writer, strings, attr.max());
+                    writeOptionalString(writer, strings, attr.comment());
+                    writer.writeInt(attr.offset());
+                    writer.writeInt(attr.flags());
+                    writer.writeBool(attr.isProperty(), BoolFormat.BYTE);
+                }
+            }
+            case ContainerTypeInfo t -> {
+                writer.writeByte(KIND_CONTAINER);
+                writer.writeInt(intern(strings, t.containerType()));
+                writer.writeInt(intern(strings, t.itemType().name()));
+            }
+            case EnumTypeInfo t -> {
+                writer.writeByte(t instanceof EnumSetTypeInfo ? KIND_ENUM_FLAGS : KIND_ENUM);
+                writer.writeInt(t.size());
+                writer.writeInt(t.values().size());
+                for (EnumValueInfo value : t.values()) {
+                    writer.writeInt(intern(strings, value.name()));
+                    writer.writeInt(value.value());
+                    writer.writeInt(value.aliases().size());
+                    for (String alias : value.aliases()) {
+                        writer.writeInt(intern(strings, alias));
+                    }
+                }
+            }
+            case BitSetTypeInfo t -> {
+                writer.writeByte(KIND_ENUM_BITSET);
+                writer.writeInt(t.size());
+                writer.writeInt(intern(strings, t.base().name()));
+            }
+            case PointerTypeInfo t -> {
+                writer.writeByte(KIND_POINTER);
+                writer.writeInt(intern(strings, t.pointerType()));
+                writer.writeInt(intern(strings, t.itemType().name()));
+            }
+        }
+    }
+
+    private static String readOptionalString(BinaryReader reader, String[] strings) throws IOException {
+        var index = reader.readInt();
+        return index >= 0 ? strings[index] : null;
+    }
+
+    private static void writeOptionalString(BinaryWriter writer, Map<String, Integer> strings, Optional<String> value) throws IOException {
+        writer.writeInt(value.isPresent() ? intern(strings, value.get()) : -1);
+    }
+
+    private static int intern(Map<String, Integer> strings, String value) {
+        return strings.computeIfAbsent(value, _ -> strings.size());
+    }
+
     private static JsonObject readJson(InputStream in) throws IOException {
         try (InputStream is = in) {
             var reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
@@ -419,8 +666,10 @@ public class TypeContext {
         private final List<ClassBaseInfo> bases;
         private final List<ClassAttrInfo> attrs;
         private final StableValue<List<ClassAttrInfo>> orderedAttrs;
+        private final StableValue<List<ClassAttrInfo>> allAttrs;
+        private final StableValue<Map<ClassAttrInfo, Integer>> attrIndices;
         private final List<String> messages;
-        private final Map<ClassAttrInfo, VarHandle> handles = new HashMap<>();
+        private final Map<ClassAttrInfo, VarHandle> handles = new ConcurrentHashMap<>();
         private final int version;
         private final int flags;
 
@@ -436,6 +685,8 @@ public class TypeContext {
             this.bases = List.copyOf(bases);
             this.attrs = List.copyOf(attrs);
             this.orderedAttrs = StableValue.of();
+            this.allAttrs = StableValue.of();
+            this.attrIndices = StableValue.of();
             this.messages = List.copyOf(messages);
             this.version = version;
             this.flags = flags;
@@ -456,6 +707,32 @@ public class TypeContext {
             return orderedAttrs.orElseSet(() -> computeOrderedAttrs(this));
         }
 
+        @Override
+        public List<ClassAttrInfo> allAttrs() {
+            return allAttrs.orElseSet(() -> {
+                var result = new ArrayList<ClassAttrInfo>(attrs.size());
+                for (ClassBaseInfo base : bases) {
+                    result.addAll(base.type().allAttrs());
+                }
+                result.addAll(attrs);
+                return List.copyOf(result);
+            });
+        }
+
+        @Override
+        public int indexOf(ClassAttrInfo attr) {
+            // Queried on every access to attributes of lazily decoded objects
+            var indices = attrIndices.orElseSet(() -> {
+                var allAttrs = allAttrs();
+                var result = new IdentityHashMap<ClassAttrInfo, Integer>(allAttrs.size());
+                for (int i = 0; i < allAttrs.size(); i++) {
+                    result.putIfAbsent(allAttrs.get(i), i);
+                }
+                return result;
+            });
+            return indices.getOrDefault(attr, -1);
+        }
+
         @Override
         public List<String> messages() {
             return messages;
@@ -1,57 +1,45 @@
 package sh.adelessfox.odradek.rtti.generator;
 
-import sh.adelessfox.odradek.rtti.*;
-import sh.adelessfox.odradek.rtti.data.Value;
+import sh.adelessfox.odradek.rtti.ClassAttrInfo;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.TypeInfo;
 
-import java.lang.classfile.*;
-import java.lang.classfile.attribute.*;
-import java.lang.constant.*;
 import java.lang.invoke.MethodHandles;
-import java.lang.invoke.TypeDescriptor;
 import java.lang.invoke.VarHandle;
-import java.lang.reflect.AccessFlag;
-import java.lang.runtime.ObjectMethods;
-import java.util.*;
-import java.util.function.Consumer;
-
-import static java.lang.classfile.ClassFile.*;
-import static java.lang.constant.ConstantDescs.*;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides implementation classes of compound types at runtime.
+ * <p>
+ * Classes generated ahead of time by {@link TypeClassGenerator} are used when they're present
+ * in the module; otherwise, they're generated and defined on first use.
+ * <p>
+ * This class is thread-safe. Classes are resolved under a lock, as each can only be defined once.
+ */
 public final class TypeRuntimeGenerator extends TypeGenerator<Class<?>> {
-    private static final ClassDesc CD_Arrays = Arrays.class.describeConstable().orElseThrow();
-    private static final ClassDesc CD_ClassTypeInfo = ClassTypeInfo.class.describeConstable().orElseThrow();
-    private static final ClassDesc CD_List = List.class.describeConstable().orElseThrow();
-    private static final ClassDesc CD_StableValue = StableValue.class.describeConstable().orElseThrow();
-    private static final ClassDesc CD_TypeDescriptor = TypeDescriptor.class.describeConstable().orElseThrow();
-    private static final ClassDesc CD_UnsupportedOperationException = UnsupportedOperationException.class.describeConstable().orElseThrow();
-    private static final ClassDesc CD_Value_OfEnum = Value.OfEnum.class.describeConstable().orElseThrow();
-    private static final ClassDesc CD_Value_OfEnumSet = Value.OfEnumSet.class.describeConstable().orElseThrow();
-
-    private static final DirectMethodHandleDesc BSM_ObjectMethods_boostrap = MethodHandleDesc.ofMethod(
-        DirectMethodHandleDesc.Kind.STATIC,
-        ObjectMethods.class.describeConstable().orElseThrow(),
-        "bootstrap",
-        MethodTypeDesc.of(
-            CD_Object,
-            CD_MethodHandles_Lookup, CD_String, CD_TypeDescriptor,
-            CD_Class, CD_String, CD_MethodHandle.arrayType()
-        )
-    );
-
-    private final Map<ClassTypeInfo, Class<?>> classes = new IdentityHashMap<>();
+    private final Map<ClassTypeInfo, Class<?>> classes = new ConcurrentHashMap<>();
     private final MethodHandles.Lookup lookup;
+    private final TypeClassGenerator generator;
     private final String packageName;
     private final String className;
 
     public TypeRuntimeGenerator(MethodHandles.Lookup lookup, String packageName, String className) {
         this.lookup = lookup;
+        this.generator = new TypeClassGenerator(packageName, className);
         this.packageName = packageName;
         this.className = className;
     }
 
+    @Override
+    public void addBuiltin(String name, Class<?> type) {
+        super.addBuiltin(name, type);
+        generator.addBuiltin(name, type.describeConstable().orElseThrow());
+    }
+
     public Class<?> getType(TypeInfo info) {
         try {
-            return toClassDesc(info, false).resolveConstantDesc(lookup);
+            return generator.toClassDesc(info, false).resolveConstantDesc(lookup);
         } catch (ReflectiveOperationException e) {
             throw new IllegalStateException(e);
         }
@@ -60,10 +48,10 @@ public final class TypeRuntimeGenerator extends TypeGenerator<Class<?>> {
     public VarHandle getHandle(ClassTypeInfo info, ClassAttrInfo attr) {
         var clazz = generateClass(info);
         try {
-            var type = toClassDesc(attr.type(), true).resolveConstantDesc(lookup);
+            var type = generator.toClassDesc(attr.type(), true).resolveConstantDesc(lookup);
             return MethodHandles
                 .privateLookupIn(clazz, lookup)
-                .findVarHandle(clazz, toFieldName(attr), type);
+                .findVarHandle(clazz, TypeClassGenerator.toFieldName(attr), type);
         } catch (ReflectiveOperationException e) {
             throw new IllegalStateException(e);
         }
@@ -80,110 +68,21 @@ public final class TypeRuntimeGenerator extends TypeGenerator<Class<?>> {
     }
 
     private Class<?> generateClass(ClassTypeInfo info) {
-        return classes.computeIfAbsent(info, this::generateClass0);
+        var clazz = classes.get(info);
+        if (clazz != null) {
+            return clazz;
+        }
+        synchronized (this) {
+            // The generator's caches are not thread-safe either, so everything is done under the lock
+            return classes.computeIfAbsent(info, this::generateClass0);
+        }
     }
 
     private Class<?> generateClass0(ClassTypeInfo info) {
-        var desc = toImplClassDesc(info);
-        var data = ClassFile.of().build(desc, cb -> {
-            cb.withFlags(AccessFlag.PUBLIC, AccessFlag.FINAL);
-            cb.withInterfaceSymbols(toClassDesc(info));
-
-            // Type
-            cb.withField("$type", CD_StableValue, ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC);
-            cb.withMethodBody(CLASS_INIT_NAME, MTD_void, ACC_STATIC, cob -> cob
-                .invokestatic(CD_StableValue, "of", MethodTypeDesc.of(CD_StableValue), true)
-                .putstatic(desc, "$type", CD_StableValue)
-                .return_());
-            cb.withMethodBody("getType", MethodTypeDesc.of(CD_ClassTypeInfo), ACC_PUBLIC, cob -> cob
-                .getstatic(desc, "$type", CD_StableValue)
-                .invokeinterface(CD_StableValue, "orElseThrow", MethodTypeDesc.of(CD_Object))
-                .checkcast(CD_ClassTypeInfo)
-                .areturn());
-
-            List<Consumer<CodeBuilder>> constructor = new ArrayList<>(1);
-            List<ClassDesc> groupClasses = new ArrayList<>();
-
-            // Groups
-            for (ClassGroupInfo group : collectGroups(info)) {
-                var groupField = toFieldName(group);
-                var groupDesc = toClassDesc(group);
-                var groupImplDesc = desc.nested(toTypeName(group));
-
-                // Let the host class know about ourselves
-                groupClasses.add(groupImplDesc);
-
-                // Field
-                cb.withField(groupField, groupDesc, ACC_FINAL | ACC_SYNTHETIC);
-
-                // Getter
-                cb.withMethodBody(toGetterName(group), MethodTypeDesc.of(groupDesc), ACC_PUBLIC, cob -> cob
-                    .aload(0)
-                    .getfield(desc, groupField, groupDesc)
-                    .areturn());
-
-                // Constructor initializer
-                constructor.add(cob -> cob
-                    .aload(0)
-                    .new_(groupImplDesc)
-                    .dup()
-                    .aload(0)
-                    .invokespecial(groupImplDesc, INIT_NAME, MethodTypeDesc.of(CD_void, desc))
-                    .putfield(desc, groupField, groupDesc));
-
-                // Class
-                generateGroupClass(info, desc, group, groupDesc, groupImplDesc);
-            }
-
-            // Constructor
-            cb.withMethodBody(INIT_NAME, MTD_void, ACC_PUBLIC, cob -> {
-                cob.aload(0);
-                cob.invokespecial(CD_Object, INIT_NAME, MTD_void);
-
-                constructor.forEach(c -> c.accept(cob));
-
-                cob.return_();
-            });
-
-            // Integrate information about nested group classes
-            cb.with(NestMembersAttribute.ofSymbols(groupClasses));
-            cb.with(InnerClassesAttribute.of(groupClasses.stream()
-                .map(d -> InnerClassInfo.of(d, Optional.empty(), Optional.empty()))
-                .toList()));
-
-            // For bootstrapping toString, equals and hashCode
-            List<BoostrapAttrInfo> bootstrapAttrs = new ArrayList<>();
-
-            // Attributes
-            for (ClassAttrInfo attr : collectAttributes(info)) {
-                var attrField = toFieldName(attr);
-                var attrDesc = toClassDesc(attr.type(), true);
-
-                if (attr.isSerialized() || !attr.isProperty()) {
-                    // Non-serialized property values are evaluated via functions; they don't have any explicit storage.
-                    cb.withField(attrField, attrDesc, ACC_PRIVATE);
-
-                    bootstrapAttrs.add(new BoostrapAttrInfo(
-                        attr,
-                        MethodHandleDesc.ofField(DirectMethodHandleDesc.Kind.GETTER, desc, attrField, attrDesc)
-                    ));
-                }
-
-                // Getter and setter, if no group
-                if (attr.group().isEmpty()) {
-                    buildAttr(cb, desc, attr);
-                }
-            }
-
-            // Bootstrap toString, equals, hashCode
-            buildToString(cb, desc, bootstrapAttrs);
-            buildEqualsHashCode(cb, desc, bootstrapAttrs);
-        });
-
         try {
             var thisClass = lookup.findClass(packageName + '.' + className + '$' + info);
             var thisLookup = MethodHandles.privateLookupIn(thisClass, lookup);
-            var thisClassPod = thisLookup.defineClass(data);
+            var thisClassPod = findOrDefineClass(thisLookup, info);
 
             // Bind $type
             bindTypeVariable(thisClassPod, info);
@@ -194,292 +93,28 @@ public final class TypeRuntimeGenerator extends TypeGenerator<Class<?>> {
         }
     }
 
-    private void generateGroupClass(ClassTypeInfo host, ClassDesc hostDesc, ClassGroupInfo group, ClassDesc groupDesc, ClassDesc groupImplDesc) {
-        byte[] data = ClassFile.of().build(groupImplDesc, cb -> {
-            cb.withInterfaceSymbols(groupDesc);
-            cb.with(NestHostAttribute.of(hostDesc));
-            cb.with(EnclosingMethodAttribute.of(hostDesc, Optional.empty(), Optional.empty()));
-            cb.with(InnerClassesAttribute.of(InnerClassInfo.of(groupImplDesc, Optional.empty(), Optional.empty())));
-
-            // Enclosing object
-            cb.withField("this$0", hostDesc, ACC_FINAL | ACC_SYNTHETIC);
-
-            // Constructor
-            cb.withMethodBody(INIT_NAME, MethodTypeDesc.of(CD_void, hostDesc), 0, cob -> cob
-                .aload(0)
-                .aload(1)
-                .putfield(groupImplDesc, "this$0", hostDesc)
-                .aload(0)
-                .invokespecial(CD_Object, INIT_NAME, MTD_void)
-                .return_());
-
-            // Attributes
-            for (ClassAttrInfo attr : collectAttributes(host)) {
-                if (attr.group().isPresent() && attr.group().get().equals(group.name())) {
-                    buildAttr(cb, hostDesc, groupImplDesc, attr);
-                }
-            }
-        });
-
+    private Class<?> findOrDefineClass(MethodHandles.Lookup lookup, ClassTypeInfo info) throws IllegalAccessException {
+        var desc = generator.toImplClassDesc(info);
         try {
-            lookup.defineClass(data);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+            // Generated ahead of time
+            return lookup.findClass(desc.packageName() + '.' + desc.displayName());
+        } catch (ClassNotFoundException _) {
+            // Not generated; define it ourselves
+        }
+
+        var generated = generator.generate(info);
+        for (var group : generated.subList(1, generated.size())) {
+            lookup.defineClass(group.bytes());
         }
+        return lookup.defineClass(generated.getFirst().bytes());
     }
 
     @SuppressWarnings("unchecked")
     private void bindTypeVariable(Class<?> clazz, ClassTypeInfo info) throws ReflectiveOperationException {
         var handle = lookup.findStaticVarHandle(clazz, "$type", StableValue.class);
         var holder = (StableValue<ClassTypeInfo>) handle.get();
-        holder.setOrThrow(info);
-    }
-
-    private static void buildToString(ClassBuilder builder, ClassDesc desc, List<BoostrapAttrInfo> attrs) {
-        List<String> names = new ArrayList<>(attrs.size());
-        List<DirectMethodHandleDesc> handles = new ArrayList<>(attrs.size());
-
-        for (BoostrapAttrInfo attr : attrs) {
-            if (attr.attr().type() instanceof ContainerTypeInfo) {
-                // Exclude containers from toString (IDEA: show 'N items' instead)
-                continue;
-            }
-            names.add(toDisplayName(attr.attr()));
-            handles.add(attr.handle());
-        }
-
-        List<ConstantDesc> args = new ArrayList<>();
-        args.add(desc);
-        args.add(String.join(";", names));
-        args.addAll(handles);
-
-        builder.withMethodBody("toString", MethodTypeDesc.of(CD_String), ACC_PUBLIC, cob -> {
-            cob.aload(0);
-            cob.invokedynamic(DynamicCallSiteDesc.of(
-                BSM_ObjectMethods_boostrap,
-                "toString",
-                MethodTypeDesc.of(CD_String, desc),
-                args.toArray(ConstantDesc[]::new)
-            ));
-            cob.areturn();
-        });
-    }
-
-    private static void buildEqualsHashCode(ClassBuilder builder, ClassDesc desc, List<BoostrapAttrInfo> attrs) {
-        List<String> names = new ArrayList<>(attrs.size());
-        List<DirectMethodHandleDesc> handles = new ArrayList<>(attrs.size());
-        List<BoostrapAttrInfo> arrays = new ArrayList<>();
-
-        for (BoostrapAttrInfo attr : attrs) {
-            if (attr.handle().invocationType().returnType().isArray()) {
-                // Boostrap doesn't correctly work with arrays; rely on Arrays methods instead
-                arrays.add(attr);
-            } else {
-                names.add(toDisplayName(attr.attr()));
-                handles.add(attr.handle());
-            }
-        }
-
-        List<ConstantDesc> args = new ArrayList<>();
-        args.add(desc);
-        args.add(String.join(";", names));
-        args.addAll(handles);
-
-        builder.withMethodBody("equals", MethodTypeDesc.of(CD_boolean, CD_Object), ACC_PUBLIC, cob -> {
-            cob.aload(0);
-            cob.aload(1);
-            cob.invokedynamic(DynamicCallSiteDesc.of(
-                BSM_ObjectMethods_boostrap,
-                "equals",
-                MethodTypeDesc.of(CD_boolean, desc, CD_Object),
-                args.toArray(ConstantDesc[]::new)
-            ));
-
-            if (!arrays.isEmpty()) {
-                Label fail = cob.newLabel();
-                cob.ifeq(fail);
-
-                cob.aload(1);
-                cob.checkcast(desc);
-                cob.astore(1);
-
-                for (BoostrapAttrInfo attr : arrays) {
-                    var fieldName = attr.handle().methodName();
-                    var fieldDesc = attr.handle().invocationType().returnType();
-
-                    cob.aload(0);
-                    cob.getfield(desc, fieldName, fieldDesc);
-
-                    cob.aload(1);
-                    cob.getfield(desc, fieldName, fieldDesc);
-
-                    cob.invokestatic(CD_Arrays, "equals", MethodTypeDesc.of(CD_boolean, fieldDesc, fieldDesc));
-                    cob.ifeq(fail);
-                }
-
-                cob.iconst_1();
-                cob.ireturn();
-
-                cob.labelBinding(fail);
-                cob.iconst_0();
-            }
-
-            cob.ireturn();
-        });
-
-        builder.withMethodBody("hashCode", MethodTypeDesc.of(CD_int), ACC_PUBLIC, cob -> {
-            cob.aload(0);
-            cob.invokedynamic(DynamicCallSiteDesc.of(
-                BSM_ObjectMethods_boostrap,
-                "hashCode",
-                MethodTypeDesc.of(CD_int, desc),
-                args.toArray(ConstantDesc[]::new)
-            ));
-
-            for (BoostrapAttrInfo attr : arrays) {
-                var fieldName = attr.handle().methodName();
-                var fieldDesc = attr.handle().invocationType().returnType();
-
-                cob.ldc(31);
-                cob.imul();
-                cob.aload(0);
-                cob.getfield(desc, fieldName, fieldDesc);
-                cob.invokestatic(CD_Arrays, "hashCode", MethodTypeDesc.of(CD_int, fieldDesc));
-                cob.iadd();
-            }
-
-            cob.ireturn();
-        });
-    }
-
-    private void buildAttr(ClassBuilder builder, ClassDesc desc, ClassAttrInfo attr) {
-        if (attr.isSerialized() || !attr.isProperty()) {
-            buildInstanceAttr(builder, desc, attr);
-        } else {
-            buildPropertyAttr(builder, attr);
+        if (!holder.trySet(info) && holder.orElseThrow() != info) {
+            throw new IllegalStateException("Class " + clazz.getName() + " is already bound to a different type");
         }
     }
-
-    private void buildAttr(ClassBuilder builder, ClassDesc hostDesc, ClassDesc groupDesc, ClassAttrInfo attr) {
-        if (attr.isSerialized() || !attr.isProperty()) {
-            buildInstanceAttr(builder, hostDesc, groupDesc, attr);
-        } else {
-            buildPropertyAttr(builder, attr);
-        }
-    }
-
-    private void buildInstanceAttr(ClassBuilder builder, ClassDesc desc, ClassAttrInfo attr) {
-        var attrField = toFieldName(attr);
-        var attrDesc = toClassDesc(attr.type(), true);
-
-        builder.withMethodBody(toGetterName(attr), MethodTypeDesc.of(attrDesc), ACC_PUBLIC, cob -> cob
-            .aload(0)
-            .getfield(desc, attrField, attrDesc)
-            .return_(TypeKind.from(attrDesc)));
-
-        builder.withMethodBody(toSetterName(attr), MethodTypeDesc.of(CD_void, attrDesc), ACC_PUBLIC, cob -> cob
-            .aload(0)
-            .loadLocal(TypeKind.from(attrDesc), 1)
-            .putfield(desc, attrField, attrDesc)
-            .return_());
-    }
-
-    private void buildInstanceAttr(ClassBuilder builder, ClassDesc hostDesc, ClassDesc groupDesc, ClassAttrInfo attr) {
-        var attrField = toFieldName(attr);
-        var attrDesc = toClassDesc(attr.type(), true);
-
-        builder.withMethodBody(toGetterName(attr), MethodTypeDesc.of(attrDesc), ACC_PUBLIC, cob -> cob
-            .aload(0)
-            .getfield(groupDesc, "this$0", hostDesc)
-            .getfield(hostDesc, attrField, attrDesc)
-            .return_(TypeKind.from(attrDesc)));
-
-        builder.withMethodBody(toSetterName(attr), MethodTypeDesc.of(CD_void, attrDesc), ACC_PUBLIC, cob -> cob
-            .aload(0)
-            .getfield(groupDesc, "this$0", hostDesc)
-            .loadLocal(TypeKind.from(attrDesc), 1)
-            .putfield(hostDesc, attrField, attrDesc)
-            .return_());
-    }
-
-    private void buildPropertyAttr(ClassBuilder builder, ClassAttrInfo attr) {
-        var attrDesc = toClassDesc(attr.type(), true);
-
-        builder.withMethod(toGetterName(attr), MethodTypeDesc.of(attrDesc), ACC_PUBLIC, mb -> mb
-            .withCode(TypeRuntimeGenerator::buildPropertyAccessException));
-
-        builder.withMethod(toSetterName(attr), MethodTypeDesc.of(CD_void, attrDesc), ACC_PUBLIC, mb -> mb
-            .withCode(TypeRuntimeGenerator::buildPropertyAccessException));
-    }
-
-    private static void buildPropertyAccessException(CodeBuilder builder) {
-        builder
-            .new_(CD_UnsupportedOperationException)
-            .dup()
-            .ldc("attempt to access a non-serializable property attribute")
-            .invokespecial(CD_UnsupportedOperationException, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
-            .athrow();
-    }
-
-    private ClassDesc toImplClassDesc(ClassTypeInfo info) {
-        return toClassDesc(info).nested("POD");
-    }
-
-    private ClassDesc toClassDesc(ClassGroupInfo group) {
-        return toClassDesc(group.host()).nested(toTypeName(group));
-    }
-
-    private ClassDesc toClassDesc(ClassTypeInfo info) {
-        return toClassDesc().nested(info.name());
-    }
-
-    private ClassDesc toClassDesc(EnumTypeInfo info) {
-        return toClassDesc().nested(info.name());
-    }
-
-    private ClassDesc toClassDesc() {
-        return ClassDesc.of(packageName, className);
-    }
-
-    private ClassDesc toClassDesc(TypeInfo info, boolean useWrapperType) {
-        return switch (info) {
-            case ClassTypeInfo i -> toClassDesc(i);
-            case EnumSetTypeInfo i -> useWrapperType ? CD_Value_OfEnumSet : toClassDesc(i);
-            case EnumTypeInfo i -> useWrapperType ? CD_Value_OfEnum : toClassDesc(i);
-            case BitSetTypeInfo i -> useWrapperType ? CD_Value_OfEnum : toClassDesc(i.base());
-            case AtomTypeInfo i -> getBuiltin(i.base().name())
-                .flatMap(Class::describeConstable)
-                .orElseThrow();
-            case PointerTypeInfo i -> getBuiltin(i.pointerType())
-                .flatMap(Class::describeConstable)
-                .orElseThrow();
-            case ContainerTypeInfo i -> {
-                var itemType = toClassDesc(i.itemType(), useWrapperType);
-                if (itemType.isPrimitive()) {
-                    yield itemType.arrayType();
-                } else {
-                    yield CD_List;
-                }
-            }
-        };
-    }
-
-    private static String toFieldName(ClassAttrInfo attr) {
-        return attr.group()
-            .map(group -> group + "$" + attr.name())
-            .orElseGet(attr::name);
-    }
-
-    private static String toDisplayName(ClassAttrInfo attr) {
-        return attr.group()
-            .map(group -> group + "." + attr.name())
-            .orElseGet(attr::name);
-    }
-
-    private String toFieldName(ClassGroupInfo group) {
-        return group.name();
-    }
-
-    private record BoostrapAttrInfo(ClassAttrInfo attr, DirectMethodHandleDesc handle) {
-    }
 }
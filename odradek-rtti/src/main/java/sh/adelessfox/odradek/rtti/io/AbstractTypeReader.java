@@ -5,14 +5,50 @@ import sh.adelessfox.odradek.io.BinaryReader;
 import sh.adelessfox.odradek.io.BoolFormat;
 import sh.adelessfox.odradek.rtti.*;
 import sh.adelessfox.odradek.rtti.data.ExtraBinaryDataHolder;
+import sh.adelessfox.odradek.rtti.data.LazyObject;
 import sh.adelessfox.odradek.rtti.data.TypedObject;
 import sh.adelessfox.odradek.rtti.data.Value;
 import sh.adelessfox.odradek.rtti.factory.TypeFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractTypeReader {
+    /**
+     * Resolved atom readers, read plans and generated readers of compound types, per reader class.
+     * They're derived from atom readers returned by {@link #readerForAtom(AtomTypeInfo)}, which
+     * must not depend on the instance.
+     */
+    private static final ClassValue<Caches> caches = new ClassValue<>() {
+        @Override
+        protected Caches computeValue(Class<?> type) {
+            return new Caches();
+        }
+    };
+
+    private boolean lazy;
+
+    /**
+     * Enables lazy decoding of compounds. Attributes of lazily decoded compounds are only located with
+     * a structural scan, and each attribute is decoded on its first access, see {@link LazyObject}.
+     * <p>
+     * Decoding may then happen after the read has finished, on any thread, by the reader returned from
+     * {@link #lazyReader()}. Readers whose reads depend on state, for example links consumed in order,
+     * must declare it with {@link #isStateful()}, and capture and restore it with {@link #checkpoint()}
+     * and {@link #restore(long)}.
+     *
+     * @param lazy whether to decode compounds lazily
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
     public Object read(TypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
         return switch (info) {
             case AtomTypeInfo t -> readAtom(t, reader, factory);
@@ -40,21 +76,203 @@ public abstract class AbstractTypeReader {
         TypeFactory factory,
         Object target
     ) throws IOException {
-        for (ClassAttrInfo attr : info.orderedAttrs()) {
-            if (attr.type() instanceof AtomTypeInfo atom) {
-                // Fast path to avoid boxing overhead for primitive types
-                readerForAtom(atom).read(reader, target, info.handle(attr));
-            } else {
-                info.set(attr, target, read(attr.type(), reader, factory));
+        if (target instanceof LazyObject object && isLazy(info)) {
+            fillCompoundLazily(info, reader, factory, object);
+            return;
+        }
+        compoundReader(info).read(this, target, reader, factory);
+    }
+
+    private CompoundReader compoundReader(ClassTypeInfo info) {
+        return caches.get(getClass()).compoundReaders.computeIfAbsent(info, i -> CompoundReaderGenerator.generate(i, this::atomReader));
+    }
+
+    private ReadPlan readPlan(ClassTypeInfo info) {
+        return caches.get(getClass()).readPlans.computeIfAbsent(info, this::computeReadPlan);
+    }
+
+    private ReadPlan computeReadPlan(ClassTypeInfo info) {
+        var attrs = info.orderedAttrs();
+        var steps = new ReadStep[attrs.size()];
+        for (int i = 0; i < steps.length; i++) {
+            var attr = attrs.get(i);
+            var serializable = attr.isSerialized() || !attr.isProperty();
+            steps[i] = new ReadStep(
+                attr,
+                serializable ? info.handle(attr) : null,
+                attr.type() instanceof AtomTypeInfo atom ? atomReader(atom) : null
+            );
+        }
+
+        var allAttrs = info.allAttrs();
+        var slots = new int[allAttrs.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = attrs.indexOf(allAttrs.get(i));
+        }
+
+        return new ReadPlan(steps, slots);
+    }
+
+    /**
+     * Returns the reader of the specified atom type, resolving it with {@link #readerForAtom(AtomTypeInfo)} once.
+     */
+    protected final AtomReader atomReader(AtomTypeInfo info) {
+        return caches.get(getClass()).atomReaders.computeIfAbsent(info, this::readerForAtom);
+    }
+
+    /**
+     * Returns whether the compound should be decoded lazily. Compounds with extra binary data are
+     * always decoded eagerly, as the extent of their data is only known to the compound itself.
+     */
+    protected boolean isLazy(ClassTypeInfo info) {
+        return lazy && !ExtraBinaryDataHolder.class.isAssignableFrom(info.type());
+    }
+
+    /**
+     * Returns whether reads depend on state of this reader other than the position.
+     */
+    protected boolean isStateful() {
+        return false;
+    }
+
+    /**
+     * Captures the state of this reader required to decode a value at the current position later.
+     */
+    protected long checkpoint() {
+        return 0;
+    }
+
+    /**
+     * Restores the state previously captured with {@link #checkpoint()}.
+     */
+    protected void restore(long checkpoint) {
+        // stateless by default
+    }
+
+    /**
+     * Returns the reader that decodes attributes of a compound that is being decoded lazily.
+     * <p>
+     * The reader is retained by the compound until all of its attributes are decoded, so it should only
+     * hold what's needed to decode them. Stateful readers must return a new reader for each compound,
+     * which then restores checkpoints of that compound only and is never used concurrently.
+     */
+    protected AbstractTypeReader lazyReader() {
+        return this;
+    }
+
+    private void fillCompoundLazily(
+        ClassTypeInfo info,
+        BinaryReader reader,
+        TypeFactory factory,
+        LazyObject target
+    ) throws IOException {
+        var plan = readPlan(info);
+        var steps = plan.steps();
+        if (steps.length == 0) {
+            return;
+        }
+
+        var offsets = new int[steps.length];
+        var checkpoints = isStateful() ? new long[steps.length] : null;
+
+        var start = reader.position();
+        for (int i = 0; i < steps.length; i++) {
+            offsets[i] = Math.toIntExact(reader.position() - start);
+            if (checkpoints != null) {
+                checkpoints[i] = checkpoint();
             }
+            skipAttr(steps[i], reader, factory);
         }
-        if (target instanceof ExtraBinaryDataHolder holder) {
-            holder.deserialize(reader, factory);
+
+        // Refers to the reader's data, which is usually the buffer of the whole group, instead of copying it.
+        // Mapped data may be unmapped while objects are still alive, so it's copied to the heap
+        var data = reader.readBuffer(start, Math.toIntExact(reader.position() - start));
+        if (data.isDirect()) {
+            data = ByteBuffer.allocate(data.remaining()).put(data).flip().asReadOnlyBuffer();
+        }
+        target.$attach(new LazyLoader(lazyReader(), plan, factory, data, reader.order(), offsets, checkpoints));
+    }
+
+    private void fillAttr(ReadStep step, BinaryReader reader, TypeFactory factory, Object target) throws IOException {
+        if (step.handle() == null) {
+            throw new UnsupportedOperationException("attempt to access a non-serializable property attribute");
+        }
+        if (step.atom() != null) {
+            // Fast path to avoid boxing overhead for primitive types
+            step.atom().read(reader, target, step.handle());
+        } else {
+            step.handle().set(target, read(step.attr().type(), reader, factory));
+        }
+    }
+
+    private void skipAttr(ReadStep step, BinaryReader reader, TypeFactory factory) throws IOException {
+        if (step.atom() != null) {
+            step.atom().skip(reader);
+        } else {
+            skip(step.attr().type(), reader, factory);
         }
     }
 
     protected Object readAtom(AtomTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
-        return readerForAtom(info).read(reader);
+        return atomReader(info).read(reader);
+    }
+
+    /**
+     * Moves past a serialized value of the specified type without materializing it.
+     * <p>
+     * Values that can't be skipped by walking the schema alone, such as compounds with extra
+     * binary data, are read and discarded. Subclasses that track state while reading, for
+     * example consumed links, must keep it consistent when skipping as well.
+     *
+     * @param info   type of the value
+     * @param reader reader positioned at the value
+     * @param factory type factory
+     * @throws IOException if an I/O error occurs
+     */
+    public void skip(TypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+        switch (info) {
+            case AtomTypeInfo t -> skipAtom(t, reader, 1);
+            case EnumTypeInfo t -> skipEnum(t, reader);
+            case ClassTypeInfo t -> skipCompound(t, reader, factory);
+            case ContainerTypeInfo t -> skipContainer(t, reader, factory);
+            case PointerTypeInfo t -> skipPointer(t, reader, factory);
+            case BitSetTypeInfo _ -> throw new NotImplementedException(); // TODO
+        }
+    }
+
+    protected void skipCompound(ClassTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+        if (ExtraBinaryDataHolder.class.isAssignableFrom(info.type())) {
+            // The extent of extra data is only known to the holder itself
+            readCompound(info, reader, factory);
+            return;
+        }
+        for (ReadStep step : readPlan(info).steps()) {
+            skipAttr(step, reader, factory);
+        }
+    }
+
+    protected void skipAtom(AtomTypeInfo info, BinaryReader reader, int count) throws IOException {
+        var atom = atomReader(info);
+        int size = atom.size();
+        if (size >= 0) {
+            reader.skip(Math.multiplyExact(size, count));
+        } else {
+            for (int i = 0; i < count; i++) {
+                atom.skip(reader);
+            }
+        }
+    }
+
+    protected void skipEnum(EnumTypeInfo info, BinaryReader reader) throws IOException {
+        reader.skip(info.size());
+    }
+
+    protected void skipContainer(ContainerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+        readContainer(info, reader, factory);
+    }
+
+    protected void skipPointer(PointerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+        readPointer(info, reader, factory);
     }
 
     protected abstract Value<?> readEnum(
@@ -75,8 +293,127 @@ public abstract class AbstractTypeReader {
         TypeFactory factory
     ) throws IOException;
 
+    /**
+     * Resolves the reader of the specified atom type. Prefer {@link #atomReader(AtomTypeInfo)}, which caches the result.
+     */
     protected abstract AtomReader readerForAtom(AtomTypeInfo info);
 
+    /**
+     * Attributes of a compound type in their serialized order, with everything needed to read them resolved in advance.
+     *
+     * @param steps attributes in their serialized order
+     * @param slots indices into {@code steps} of attributes in {@link ClassTypeInfo#allAttrs()},
+     *              or {@code -1} for attributes that aren't serialized
+     */
+    private record ReadPlan(ReadStep[] steps, int[] slots) {
+    }
+
+    /**
+     * @param attr   the attribute
+     * @param handle handle to the attribute's field, or {@code null} for non-serializable property attributes
+     * @param atom   reader of the attribute's value, or {@code null} if it's not an atom
+     */
+    private record ReadStep(ClassAttrInfo attr, VarHandle handle, AtomReader atom) {
+    }
+
+    private static final class Caches {
+        final Map<AtomTypeInfo, AtomReader> atomReaders = new ConcurrentHashMap<>();
+        final Map<ClassTypeInfo, ReadPlan> readPlans = new ConcurrentHashMap<>();
+        final Map<ClassTypeInfo, CompoundReader> compoundReaders = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Decodes attributes of a single compound from a view of its serialized data. Loads are serialized
+     * on the loader, as the reader is not shared with other compounds if it has state, see {@link #lazyReader()}.
+     * Once all attributes are decoded, references to the reader and the data are released.
+     */
+    private static final class LazyLoader implements LazyObject.Loader {
+        private final ReadPlan plan;
+        private final TypeFactory factory;
+        private final ByteOrder order;
+        private final BitSet loaded;
+        private AbstractTypeReader reader;
+        private ByteBuffer data;
+        private int[] offsets;
+        private long[] checkpoints;
+        private int remaining;
+
+        LazyLoader(
+            AbstractTypeReader reader,
+            ReadPlan plan,
+            TypeFactory factory,
+            ByteBuffer data,
+            ByteOrder order,
+            int[] offsets,
+            long[] checkpoints
+        ) {
+            this.reader = reader;
+            this.plan = plan;
+            this.factory = factory;
+            this.data = data;
+            this.order = order;
+            this.offsets = offsets;
+            this.checkpoints = checkpoints;
+            this.loaded = new BitSet(offsets.length);
+            this.remaining = offsets.length;
+        }
+
+        @Override
+        public synchronized boolean load(Object target, int attr) {
+            if (reader == null) {
+                return true;
+            }
+            var slot = attr >= 0 ? plan.slots()[attr] : -1;
+            if (slot >= 0 && !loaded.get(slot)) {
+                decode(target, slot);
+            }
+            return remaining == 0;
+        }
+
+        @Override
+        public synchronized void loadAll(Object target) {
+            if (reader == null) {
+                return;
+            }
+            for (int i = loaded.nextClearBit(0); i < plan.steps().length; i = loaded.nextClearBit(i + 1)) {
+                decode(target, i);
+            }
+        }
+
+        private void decode(Object target, int attr) {
+            // Marked in advance, as setting the value goes through the accessor that would load it again
+            loaded.set(attr);
+            remaining--;
+
+            var reader = this.reader;
+            var success = false;
+            try {
+                if (checkpoints != null) {
+                    reader.restore(checkpoints[attr]);
+                }
+                var input = BinaryReader.wrap(data.duplicate()).order(order).position(offsets[attr]);
+                reader.fillAttr(plan.steps()[attr], input, factory, target);
+                success = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (!success) {
+                    loaded.clear(attr);
+                    remaining++;
+                } else if (remaining == 0) {
+                    release();
+                }
+            }
+        }
+
+        private void release() {
+            this.reader = null;
+            this.data = null;
+            this.offsets = null;
+            this.checkpoints = null;
+        }
+    }
+
     protected interface AtomReader {
         AtomReader INT_8 = new Int8();
         AtomReader INT_16 = new Int16();
@@ -90,6 +427,25 @@ public abstract class AbstractTypeReader {
 
         Object read(BinaryReader reader) throws IOException;
 
+        /**
+         * Returns the size of a serialized value in bytes, or {@code -1} if values are variable-sized.
+         */
+        default int size() {
+            return -1;
+        }
+
+        /**
+         * Moves past a serialized value without materializing it, if possible.
+         */
+        default void skip(BinaryReader reader) throws IOException {
+            int size = size();
+            if (size >= 0) {
+                reader.skip(size);
+            } else {
+                read(reader);
+            }
+        }
+
         default void read(BinaryReader reader, Object target, VarHandle handle) throws IOException {
             handle.set(target, read(reader));
         }
@@ -103,6 +459,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Int8 implements AtomReader {
+            @Override
+            public int size() {
+                return Byte.BYTES;
+            }
+
             @Override
             public Object read(BinaryReader reader) throws IOException {
                 return reader.readByte();
@@ -121,6 +482,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Int16 implements AtomReader {
+            @Override
+            public int size() {
+                return Short.BYTES;
+            }
+
             @Override
             public Object read(BinaryReader reader) throws IOException {
                 return reader.readShort();
@@ -139,6 +505,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Int32 implements AtomReader {
+            @Override
+            public int size() {
+                return Integer.BYTES;
+            }
+
             @Override
             public Object read(BinaryReader reader) throws IOException {
                 return reader.readInt();
@@ -157,6 +528,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Int64 implements AtomReader {
+            @Override
+            public int size() {
+                return Long.BYTES;
+            }
+
             @Override
             public Object read(BinaryReader reader) throws IOException {
                 return reader.readLong();
@@ -175,6 +551,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Float16 implements AtomReader {
+            @Override
+            public int size() {
+                return Short.BYTES;
+            }
+
             @Override
             public Object read(BinaryReader reader) throws IOException {
                 return reader.readHalf();
@@ -193,6 +574,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Float32 implements AtomReader {
+            @Override
+            public int size() {
+                return Float.BYTES;
+            }
+
             @Override
             public Object read(BinaryReader reader) throws IOException {
                 return reader.readFloat();
@@ -211,6 +597,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Float64 implements AtomReader {
+            @Override
+            public int size() {
+                return Double.BYTES;
+            }
+
             @Override
             public void read(BinaryReader reader, Object target, VarHandle handle) throws IOException {
                 handle.set(target, reader.readDouble());
@@ -229,6 +620,11 @@ public abstract class AbstractTypeReader {
         }
 
         final class Bool8 implements AtomReader {
+            @Override
+            public int size() {
+                return Byte.BYTES;
+            }
+
             @Override
             public Object read(BinaryReader reader) throws IOException {
                 return reader.readBool(BoolFormat.BYTE);
@@ -242,11 +638,25 @@ public abstract class AbstractTypeReader {
             @Override
             public Object read(BinaryReader reader, int count, ContainerTypeInfo info) throws IOException {
                 assert info.type() == boolean[].class;
-                return AtomReader.super.read(reader, count, info);
+                var data = reader.readBytes(count);
+                var result = new boolean[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = switch (data[i]) {
+                        case 0 -> false;
+                        case 1 -> true;
+                        default -> throw new IOException("Unexpected value for bool: " + data[i]);
+                    };
+                }
+                return result;
             }
         }
 
         final class Char16 implements AtomReader {
+            @Override
+            public int size() {
+                return Character.BYTES;
+            }
+
             @Override
             public void read(BinaryReader reader, Object target, VarHandle handle) throws IOException {
                 handle.set(target, (char) reader.readShort());
@@ -260,7 +670,12 @@ public abstract class AbstractTypeReader {
             @Override
             public Object read(BinaryReader reader, int count, ContainerTypeInfo info) throws IOException {
                 assert info.type() == char[].class;
-                return AtomReader.super.read(reader, count, info);
+                var data = reader.readShorts(count);
+                var result = new char[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (char) data[i];
+                }
+                return result;
             }
         }
     }
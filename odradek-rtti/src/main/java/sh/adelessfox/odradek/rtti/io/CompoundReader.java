@@ -0,0 +1,15 @@
+package sh.adelessfox.odradek.rtti.io;
+
+import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.rtti.factory.TypeFactory;
+
+import java.io.IOException;
+
+/**
+ * Reads all attributes of a single compound type into an existing object.
+ *
+ * @see CompoundReaderGenerator
+ */
+interface CompoundReader {
+    void read(AbstractTypeReader owner, Object target, BinaryReader reader, TypeFactory factory) throws IOException;
+}
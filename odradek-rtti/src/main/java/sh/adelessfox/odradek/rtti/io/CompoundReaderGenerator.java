@@ -0,0 +1,238 @@
+package sh.adelessfox.odradek.rtti.io;
+
+import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.io.BoolFormat;
+import sh.adelessfox.odradek.rtti.AtomTypeInfo;
+import sh.adelessfox.odradek.rtti.ClassAttrInfo;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.TypeInfo;
+import sh.adelessfox.odradek.rtti.data.ExtraBinaryDataHolder;
+import sh.adelessfox.odradek.rtti.factory.TypeFactory;
+import sh.adelessfox.odradek.rtti.io.AbstractTypeReader.AtomReader;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.constant.*;
+import java.lang.invoke.ConstantBootstraps;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.lang.classfile.ClassFile.*;
+import static java.lang.constant.ConstantDescs.*;
+
+/**
+ * Generates {@link CompoundReader}s specialized for a single compound type.
+ * <p>
+ * A generated reader decodes attributes in their serialized order with straight-line code. Fixed-size
+ * atoms are read with direct calls to {@link BinaryReader}, other atoms with their {@link AtomReader},
+ * and all other values through {@link AbstractTypeReader#read}, so that readers can still resolve pointers
+ * and post-process nested compounds. Compounds with extra binary data are deserialized at the end.
+ * <p>
+ * Attribute handles, types and atom readers are passed as class data of a hidden class, which lets
+ * the JIT treat them as constants and turn stores through handles into plain field stores.
+ */
+final class CompoundReaderGenerator {
+    private static final ClassDesc CD_AbstractTypeReader = AbstractTypeReader.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_AtomReader = AtomReader.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_BinaryReader = BinaryReader.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_BoolFormat = BoolFormat.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_CompoundReader = CompoundReader.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_ConstantBootstraps = ConstantBootstraps.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_ExtraBinaryDataHolder = ExtraBinaryDataHolder.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_TypeFactory = TypeFactory.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_TypeInfo = TypeInfo.class.describeConstable().orElseThrow();
+    private static final ClassDesc CD_UnsupportedOperationException = UnsupportedOperationException.class.describeConstable().orElseThrow();
+
+    private static final DirectMethodHandleDesc BSM_ConstantBootstraps_getClassDataAt = ConstantDescs.ofConstantBootstrap(
+        CD_ConstantBootstraps,
+        "getClassDataAt",
+        CD_Object,
+        CD_int
+    );
+
+    private static final MethodTypeDesc MTD_read = MethodTypeDesc.of(
+        CD_void,
+        CD_AbstractTypeReader, CD_Object, CD_BinaryReader, CD_TypeFactory
+    );
+
+    // Slots of arguments of CompoundReader#read
+    private static final int SLOT_OWNER = 1;
+    private static final int SLOT_TARGET = 2;
+    private static final int SLOT_READER = 3;
+    private static final int SLOT_FACTORY = 4;
+
+    private CompoundReaderGenerator() {
+    }
+
+    /**
+     * Generates a reader for the specified compound type.
+     *
+     * @param info  the compound type
+     * @param atoms a function that returns a reader of the specified atom type
+     * @return the generated reader
+     */
+    static CompoundReader generate(ClassTypeInfo info, Function<AtomTypeInfo, AtomReader> atoms) {
+        // Computed in advance, as the code handler is not guaranteed to run only once
+        var data = new ArrayList<>();
+        var steps = new ArrayList<Step>();
+        for (ClassAttrInfo attr : info.orderedAttrs()) {
+            steps.add(plan(info, attr, atoms, data));
+        }
+
+        var holder = ExtraBinaryDataHolder.class.isAssignableFrom(info.type());
+        var desc = ClassDesc.of(CompoundReaderGenerator.class.getPackageName(), "CompoundReader$" + sanitize(info.name()));
+        var bytes = ClassFile.of().build(desc, cb -> {
+            cb.withFlags(ACC_FINAL | ACC_SYNTHETIC);
+            cb.withInterfaceSymbols(CD_CompoundReader);
+
+            cb.withMethodBody(INIT_NAME, MTD_void, 0, cob -> cob
+                .aload(0)
+                .invokespecial(CD_Object, INIT_NAME, MTD_void)
+                .return_());
+
+            cb.withMethodBody("read", MTD_read, ACC_PUBLIC, cob -> {
+                for (Step step : steps) {
+                    step.build(cob);
+                }
+                if (holder) {
+                    cob.aload(SLOT_TARGET);
+                    cob.checkcast(CD_ExtraBinaryDataHolder);
+                    cob.aload(SLOT_READER);
+                    cob.aload(SLOT_FACTORY);
+                    cob.invokeinterface(CD_ExtraBinaryDataHolder, "deserialize", MethodTypeDesc.of(CD_void, CD_BinaryReader, CD_TypeFactory));
+                }
+                cob.return_();
+            });
+        });
+
+        try {
+            var lookup = MethodHandles.lookup().defineHiddenClassWithClassData(bytes, List.copyOf(data), true);
+            var constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+            return (CompoundReader) constructor.invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to generate reader for " + info.name(), e);
+        }
+    }
+
+    private static Step plan(ClassTypeInfo info, ClassAttrInfo attr, Function<AtomTypeInfo, AtomReader> atoms, List<Object> data) {
+        if (!attr.isSerialized() && attr.isProperty()) {
+            return Step.UNSUPPORTED;
+        }
+
+        var handle = constant(data, info.handle(attr), CD_VarHandle);
+
+        if (attr.type() instanceof AtomTypeInfo atom) {
+            var reader = atoms.apply(atom);
+            if (reader == AtomReader.INT_8) {
+                return cob -> readPrimitive(cob, handle, "readByte", CD_byte);
+            } else if (reader == AtomReader.INT_16) {
+                return cob -> readPrimitive(cob, handle, "readShort", CD_short);
+            } else if (reader == AtomReader.INT_32) {
+                return cob -> readPrimitive(cob, handle, "readInt", CD_int);
+            } else if (reader == AtomReader.INT_64) {
+                return cob -> readPrimitive(cob, handle, "readLong", CD_long);
+            } else if (reader == AtomReader.FLOAT_16) {
+                return cob -> readPrimitive(cob, handle, "readHalf", CD_float);
+            } else if (reader == AtomReader.FLOAT_32) {
+                return cob -> readPrimitive(cob, handle, "readFloat", CD_float);
+            } else if (reader == AtomReader.FLOAT_64) {
+                return cob -> readPrimitive(cob, handle, "readDouble", CD_double);
+            } else if (reader == AtomReader.CHAR_16) {
+                return cob -> readChar(cob, handle);
+            } else if (reader == AtomReader.BOOL_8) {
+                return cob -> readBool(cob, handle);
+            } else {
+                var constant = constant(data, reader, CD_AtomReader);
+                return cob -> readAtom(cob, handle, constant);
+            }
+        }
+
+        var type = constant(data, attr.type(), CD_TypeInfo);
+        return cob -> readValue(cob, handle, type);
+    }
+
+    private static void readPrimitive(CodeBuilder builder, ConstantDesc handle, String method, ClassDesc type) {
+        builder
+            .ldc(handle)
+            .aload(SLOT_TARGET)
+            .aload(SLOT_READER)
+            .invokeinterface(CD_BinaryReader, method, MethodTypeDesc.of(type))
+            .invokevirtual(CD_VarHandle, "set", MethodTypeDesc.of(CD_void, CD_Object, type));
+    }
+
+    private static void readChar(CodeBuilder builder, ConstantDesc handle) {
+        builder
+            .ldc(handle)
+            .aload(SLOT_TARGET)
+            .aload(SLOT_READER)
+            .invokeinterface(CD_BinaryReader, "readShort", MethodTypeDesc.of(CD_short))
+            .i2c()
+            .invokevirtual(CD_VarHandle, "set", MethodTypeDesc.of(CD_void, CD_Object, CD_char));
+    }
+
+    private static void readBool(CodeBuilder builder, ConstantDesc handle) {
+        builder
+            .ldc(handle)
+            .aload(SLOT_TARGET)
+            .aload(SLOT_READER)
+            .getstatic(CD_BoolFormat, "BYTE", CD_BoolFormat)
+            .invokeinterface(CD_BinaryReader, "readBool", MethodTypeDesc.of(CD_boolean, CD_BoolFormat))
+            .invokevirtual(CD_VarHandle, "set", MethodTypeDesc.of(CD_void, CD_Object, CD_boolean));
+    }
+
+    private static void readAtom(CodeBuilder builder, ConstantDesc handle, ConstantDesc reader) {
+        builder
+            .ldc(handle)
+            .aload(SLOT_TARGET)
+            .ldc(reader)
+            .aload(SLOT_READER)
+            .invokeinterface(CD_AtomReader, "read", MethodTypeDesc.of(CD_Object, CD_BinaryReader))
+            .invokevirtual(CD_VarHandle, "set", MethodTypeDesc.of(CD_void, CD_Object, CD_Object));
+    }
+
+    private static void readValue(CodeBuilder builder, ConstantDesc handle, ConstantDesc type) {
+        builder
+            .ldc(handle)
+            .aload(SLOT_TARGET)
+            .aload(SLOT_OWNER)
+            .ldc(type)
+            .aload(SLOT_READER)
+            .aload(SLOT_FACTORY)
+            .invokevirtual(CD_AbstractTypeReader, "read", MethodTypeDesc.of(CD_Object, CD_TypeInfo, CD_BinaryReader, CD_TypeFactory))
+            .invokevirtual(CD_VarHandle, "set", MethodTypeDesc.of(CD_void, CD_Object, CD_Object));
+    }
+
+    /**
+     * Turns the type name into a valid class name. Hidden classes get a unique suffix anyway,
+     * so the name only needs to be recognizable in stack traces.
+     */
+    private static String sanitize(String name) {
+        var builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            builder.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private static ConstantDesc constant(List<Object> data, Object value, ClassDesc type) {
+        int index = data.size();
+        data.add(value);
+        return DynamicConstantDesc.ofNamed(BSM_ConstantBootstraps_getClassDataAt, DEFAULT_NAME, type, index);
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        Step UNSUPPORTED = builder -> builder
+            .new_(CD_UnsupportedOperationException)
+            .dup()
+            .ldc("attempt to access a non-serializable property attribute")
+            .invokespecial(CD_UnsupportedOperationException, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String))
+            .athrow();
+
+        void build(CodeBuilder builder);
+    }
+}
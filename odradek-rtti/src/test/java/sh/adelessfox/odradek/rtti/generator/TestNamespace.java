@@ -0,0 +1,87 @@
+package sh.adelessfox.odradek.rtti.generator;
+
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.data.LazyObject;
+import sh.adelessfox.odradek.rtti.data.TypedObject;
+
+/**
+ * Hand-written bindings of types used by {@link TypeRuntimeGeneratorTest}, in place of ones generated
+ * by the annotation processor.
+ */
+interface TestNamespace {
+    interface Prebuilt extends TypedObject {
+        int value();
+
+        void value(int value);
+
+        /**
+         * A hand-written equivalent of a class generated ahead of time by {@link TypeClassGenerator}.
+         */
+        final class POD implements Prebuilt, LazyObject {
+            static final StableValue<ClassTypeInfo> $type = StableValue.of();
+
+            private volatile Loader $loader;
+            private int Value;
+
+            @Override
+            public ClassTypeInfo getType() {
+                return $type.orElseThrow();
+            }
+
+            @Override
+            public int value() {
+                $load(0);
+                return Value;
+            }
+
+            @Override
+            public void value(int value) {
+                $load(0);
+                Value = value;
+            }
+
+            @Override
+            public void $attach(Loader loader) {
+                $loader = loader;
+            }
+
+            @Override
+            public void $load(int attr) {
+                var loader = $loader;
+                if (loader != null && loader.load(this, attr)) {
+                    $loader = null;
+                }
+            }
+
+            @Override
+            public void $resolve() {
+                var loader = $loader;
+                if (loader != null) {
+                    loader.loadAll(this);
+                    $loader = null;
+                }
+            }
+
+            @Override
+            public boolean $isPending() {
+                return $loader != null;
+            }
+        }
+    }
+
+    interface Generated extends TypedObject {
+        int value();
+
+        void value(int value);
+    }
+
+    interface Ahead extends TypedObject {
+        int first();
+
+        void first(int value);
+
+        int second();
+
+        void second(int value);
+    }
+}
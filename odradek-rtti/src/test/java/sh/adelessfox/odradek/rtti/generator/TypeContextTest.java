@@ -0,0 +1,142 @@
+package sh.adelessfox.odradek.rtti.generator;
+
+import org.junit.jupiter.api.Test;
+import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.io.BytesBinaryWriter;
+import sh.adelessfox.odradek.rtti.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeContextTest {
+    private static final String TYPES = """
+        {
+            "int": {"kind": "atom", "base_type": "int"},
+            "uint32": {"kind": "atom", "base_type": "uint32"},
+            "EColor": {"kind": "enum", "size": 1, "values": [
+                {"value": 0, "name": "Red", "alias": ["Rouge", "Rot"]},
+                {"value": 1, "name": "Green"}
+            ]},
+            "EFlags": {"kind": "enum flags", "size": 4, "values": [
+                {"value": 1, "name": "A"},
+                {"value": 2, "name": "B"}
+            ]},
+            "EColorSet": {"kind": "enum bitset", "size": 4, "type": "EColor"},
+            "Array_int": {"kind": "container", "type": "Array", "item_type": "int"},
+            "Ref_Base": {"kind": "pointer", "type": "Ref", "item_type": "Base"},
+            "Base": {"kind": "compound", "version": 3, "flags": 2, "messages": ["MsgReadBinary"], "attrs": [
+                {"name": "Id", "type": "uint32", "offset": 0, "flags": 0}
+            ]},
+            "Derived": {"kind": "compound", "version": 0, "flags": 0, "bases": [{"type": "Base", "offset": 0}], "attrs": [
+                {"name": "Flags", "type": "EFlags", "offset": 4, "flags": 0},
+                {"category": "General"},
+                {"name": "Color", "type": "EColor", "offset": 8, "flags": 0, "min": "0", "max": "1", "comment": "Tint"},
+                {"name": "Values", "type": "Array_int", "offset": 16, "flags": 2, "property": true},
+                {"name": "Parent", "type": "Ref_Base", "offset": 32, "flags": 0},
+                {"name": "Colors", "type": "EColorSet", "offset": 40, "flags": 0}
+            ]}
+        }""";
+
+    private static final String EXTENSIONS = """
+        {
+            "extends": {"Derived": ["DerivedExtension"]},
+            "types": {
+                "DerivedExtension": {"kind": "compound", "version": 0, "flags": 0, "attrs": [
+                    {"name": "Data", "type": "Array_int", "offset": 0, "flags": 0}
+                ]}
+            }
+        }""";
+
+    @Test
+    void compiledTypesMatchJsonTypes() throws IOException {
+        var expected = new TypeContext();
+        expected.load(stream(TYPES), stream(EXTENSIONS));
+
+        var writer = new BytesBinaryWriter();
+        expected.write(writer);
+
+        var actual = new TypeContext();
+        actual.load(BinaryReader.wrap(writer.toByteArray()));
+
+        assertEquals(10, expected.getAll().size());
+        assertEquals(
+            expected.getAll().stream().map(TypeInfo::name).toList(),
+            actual.getAll().stream().map(TypeInfo::name).toList()
+        );
+        for (TypeInfo info : expected.getAll()) {
+            assertEquals(describe(info), describe(actual.get(info.name()).orElseThrow()), info.name());
+        }
+    }
+
+    @Test
+    void compiledTypesAreResolved() throws IOException {
+        var json = new TypeContext();
+        json.load(stream(TYPES), stream(EXTENSIONS));
+
+        var writer = new BytesBinaryWriter();
+        json.write(writer);
+
+        var context = new TypeContext();
+        context.load(BinaryReader.wrap(writer.toByteArray()));
+
+        var derived = context.get("Derived").orElseThrow().asClass();
+        assertSame(context.get("Base").orElseThrow(), derived.bases().getFirst().type());
+        assertSame(context.get("DerivedExtension").orElseThrow(), derived.bases().getLast().type());
+        assertSame(context.get("Base").orElseThrow(), derived.attrs().get(3).type().asPointer().itemType());
+    }
+
+    @Test
+    void unsupportedCompiledTypesAreRejected() {
+        var writer = new BytesBinaryWriter();
+        writer.writeInt(0x12345678);
+        writer.writeInt(1);
+
+        var context = new TypeContext();
+        assertThrows(IOException.class, () -> context.load(BinaryReader.wrap(writer.toByteArray())));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String describe(TypeInfo info) {
+        return switch (info) {
+            case AtomTypeInfo t -> "atom " + t.base().name();
+            case ClassTypeInfo t -> "compound version=%d flags=%d messages=%s bases=%s attrs=%s".formatted(
+                t.version(),
+                t.flags(),
+                t.messages(),
+                t.bases().stream()
+                    .map(base -> base.type().name() + "@" + base.offset())
+                    .collect(Collectors.joining(", ", "[", "]")),
+                t.attrs().stream()
+                    .map(attr -> "%s %s group=%s min=%s max=%s comment=%s offset=%d flags=%d property=%s".formatted(
+                        attr.type().name(),
+                        attr.name(),
+                        attr.group(),
+                        attr.min(),
+                        attr.max(),
+                        attr.comment(),
+                        attr.offset(),
+                        attr.flags(),
+                        attr.isProperty()))
+                    .collect(Collectors.joining(", ", "[", "]"))
+            );
+            case ContainerTypeInfo t -> "container " + t.containerType() + "<" + t.itemType().name() + ">";
+            case EnumTypeInfo t -> "%s size=%d values=%s".formatted(
+                t instanceof EnumSetTypeInfo ? "enum flags" : "enum",
+                t.size(),
+                t.values().stream()
+                    .map(value -> value.name() + "=" + value.value() + value.aliases())
+                    .collect(Collectors.joining(", ", "[", "]"))
+            );
+            case BitSetTypeInfo t -> "bitset size=" + t.size() + " of " + t.base().name();
+            case PointerTypeInfo t -> "pointer " + t.pointerType() + "<" + t.itemType().name() + ">";
+        };
+    }
+}
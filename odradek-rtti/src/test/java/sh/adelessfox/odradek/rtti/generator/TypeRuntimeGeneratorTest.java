@@ -0,0 +1,140 @@
+package sh.adelessfox.odradek.rtti.generator;
+
+import org.junit.jupiter.api.Test;
+import sh.adelessfox.odradek.rtti.ClassAttrInfo;
+import sh.adelessfox.odradek.rtti.ClassTypeInfo;
+import sh.adelessfox.odradek.rtti.TypeInfo;
+import sh.adelessfox.odradek.rtti.data.LazyObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.constant.ConstantDescs.CD_int;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeRuntimeGeneratorTest {
+    private static final String TYPES = """
+        {
+          "int32": { "kind": "atom", "base_type": "int32" },
+          "Prebuilt": { "kind": "compound", "version": 0, "flags": 0, "attrs": [
+            { "name": "Value", "type": "int32", "offset": 0, "flags": 0 }
+          ]},
+          "Generated": { "kind": "compound", "version": 0, "flags": 0, "attrs": [
+            { "name": "Value", "type": "int32", "offset": 0, "flags": 0 }
+          ]},
+          "Ahead": { "kind": "compound", "version": 0, "flags": 0, "attrs": [
+            { "name": "First", "type": "int32", "offset": 0, "flags": 0 },
+            { "name": "Second", "type": "int32", "offset": 4, "flags": 0 }
+          ]}
+        }""";
+    private static final String EXTENSIONS = """
+        { "types": {}, "extends": {} }""";
+
+    // Each type is bound to its class once per JVM, so each test uses its own type
+
+    @Test
+    void prebuiltClassIsPreferred() throws IOException {
+        var info = context().get("Prebuilt").orElseThrow().asClass();
+        var object = info.newInstance();
+
+        assertSame(TestNamespace.Prebuilt.POD.class, object.getClass());
+        assertSame(info, object.getType());
+
+        info.set(info.attrs().getFirst(), object, 42);
+        assertEquals(42, ((TestNamespace.Prebuilt) object).value());
+    }
+
+    @Test
+    void missingClassIsDefinedAtRuntime() throws IOException {
+        var info = context().get("Generated").orElseThrow().asClass();
+        var object = info.newInstance();
+
+        assertEquals(TestNamespace.Generated.class.getName() + "$POD", object.getClass().getName());
+        assertSame(info, object.getType());
+
+        info.set(info.attrs().getFirst(), object, 42);
+        assertEquals(42, ((TestNamespace.Generated) object).value());
+    }
+
+    @Test
+    void aheadOfTimeClassLoadsAttributesByDeclaredIndex() throws Exception {
+        var info = context().get("Ahead").orElseThrow().asClass();
+
+        // Defines the classes as if they were generated at build time and packaged with the bindings
+        var generator = new TypeClassGenerator(TestNamespace.class.getPackageName(), TestNamespace.class.getSimpleName());
+        generator.addBuiltin("int32", CD_int);
+        var lookup = MethodHandles.privateLookupIn(TestNamespace.Ahead.class, MethodHandles.lookup());
+        var classes = new ArrayList<Class<?>>();
+        for (TypeClassGenerator.GeneratedClass generated : generator.generate(info)) {
+            classes.add(lookup.defineClass(generated.bytes()));
+        }
+
+        var object = info.newInstance();
+        assertSame(classes.getFirst(), object.getClass());
+        assertSame(info, object.getType());
+
+        // Serialized in reverse, see computeOrderedAttrs
+        var loads = new ArrayList<Integer>();
+        ((LazyObject) object).$attach(new LazyObject.Loader() {
+            @Override
+            public boolean load(Object target, int attr) {
+                loads.add(attr);
+                return false;
+            }
+
+            @Override
+            public void loadAll(Object target) {
+                throw new AssertionError();
+            }
+        });
+
+        var ahead = (TestNamespace.Ahead) object;
+        ahead.second();
+        ahead.first(1);
+        assertEquals(List.of(1, 0), loads);
+        assertTrue(((LazyObject) object).$isPending());
+    }
+
+    private static TypeContext context() throws IOException {
+        var generator = new TypeRuntimeGenerator(
+            MethodHandles.lookup(),
+            TestNamespace.class.getPackageName(),
+            TestNamespace.class.getSimpleName()
+        );
+        generator.addBuiltin("int32", int.class);
+
+        var context = new TypeContext() {
+            @Override
+            protected Class<?> computeType(TypeInfo info) {
+                return generator.getType(info);
+            }
+
+            @Override
+            protected Object newInstance(ClassTypeInfo info) {
+                return generator.newInstance(info);
+            }
+
+            @Override
+            protected VarHandle computeHandle(ClassTypeInfo info, ClassAttrInfo attr) {
+                return generator.getHandle(info, attr);
+            }
+
+            @Override
+            protected List<ClassAttrInfo> computeOrderedAttrs(ClassTypeInfo info) {
+                return info.attrs().reversed();
+            }
+        };
+        context.load(stream(TYPES), stream(EXTENSIONS));
+        return context;
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
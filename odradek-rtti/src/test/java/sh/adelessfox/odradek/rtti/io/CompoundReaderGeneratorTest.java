@@ -0,0 +1,336 @@
+package sh.adelessfox.odradek.rtti.io;
+
+import org.junit.jupiter.api.Test;
+import sh.adelessfox.odradek.io.BinaryReader;
+import sh.adelessfox.odradek.rtti.*;
+import sh.adelessfox.odradek.rtti.data.LazyObject;
+import sh.adelessfox.odradek.rtti.data.TypedObject;
+import sh.adelessfox.odradek.rtti.data.Value;
+import sh.adelessfox.odradek.rtti.factory.TypeFactory;
+import sh.adelessfox.odradek.rtti.factory.TypeId;
+import sh.adelessfox.odradek.rtti.factory.TypeNotFoundException;
+import sh.adelessfox.odradek.rtti.generator.TypeContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompoundReaderGeneratorTest {
+    private static final String TYPES = """
+        {
+          "int8": { "kind": "atom", "base_type": "int8" },
+          "int16": { "kind": "atom", "base_type": "int16" },
+          "int32": { "kind": "atom", "base_type": "int32" },
+          "int64": { "kind": "atom", "base_type": "int64" },
+          "HalfFloat": { "kind": "atom", "base_type": "HalfFloat" },
+          "float": { "kind": "atom", "base_type": "float" },
+          "double": { "kind": "atom", "base_type": "double" },
+          "wchar": { "kind": "atom", "base_type": "wchar" },
+          "bool": { "kind": "atom", "base_type": "bool" },
+          "String": { "kind": "atom", "base_type": "String" },
+          "Array<int32>": { "kind": "container", "type": "Array", "item_type": "int32" },
+          "Inner": {
+            "kind": "compound",
+            "version": 0,
+            "flags": 0,
+            "attrs": [
+              { "name": "Value", "type": "int32", "offset": 0, "flags": 0 }
+            ]
+          },
+          "ns::Outer<Array<int32>, 2>": {
+            "kind": "compound",
+            "version": 0,
+            "flags": 0,
+            "attrs": [
+              { "name": "A", "type": "int8", "offset": 0, "flags": 0 },
+              { "name": "B", "type": "int16", "offset": 2, "flags": 0 },
+              { "name": "C", "type": "int32", "offset": 4, "flags": 0 },
+              { "name": "D", "type": "int64", "offset": 8, "flags": 0 },
+              { "name": "E", "type": "HalfFloat", "offset": 16, "flags": 0 },
+              { "name": "F", "type": "float", "offset": 20, "flags": 0 },
+              { "name": "G", "type": "double", "offset": 24, "flags": 0 },
+              { "name": "H", "type": "wchar", "offset": 32, "flags": 0 },
+              { "name": "I", "type": "bool", "offset": 34, "flags": 0 },
+              { "name": "J", "type": "String", "offset": 40, "flags": 0 },
+              { "name": "K", "type": "Array<int32>", "offset": 48, "flags": 0 },
+              { "name": "L", "type": "Inner", "offset": 64, "flags": 0 }
+            ]
+          }
+        }""";
+    private static final String EXTENSIONS = """
+        { "types": {}, "extends": {} }""";
+
+    @Test
+    void generatedReaderMatchesLazyReader() throws IOException {
+        var types = new TestTypes();
+        var info = types.get("ns::Outer<Array<int32>, 2>").asClass();
+        var data = data();
+
+        var expected = info.newInstance();
+        var eager = BinaryReader.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        new TestTypeReader().fillCompound(info, eager, types, expected);
+        assertEquals(data.length, eager.position());
+
+        var actual = info.newInstance();
+        var lazy = BinaryReader.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        var reader = new TestTypeReader();
+        reader.setLazy(true);
+        reader.fillCompound(info, lazy, types, actual);
+        assertEquals(data.length, lazy.position());
+
+        // Attributes are loaded one by one in their declared order, which is the reverse of the serialized one
+        assertTrue(((LazyObject) actual).$isPending());
+        assertEqualAttrs(info, expected, actual);
+        assertFalse(((LazyObject) actual).$isPending());
+
+        var outer = (Outer) expected;
+        assertEquals(-1, outer.a);
+        assertEquals(1.5f, outer.e);
+        assertEquals("hello", outer.j);
+        assertArrayEquals(new int[]{1, 2, 3}, (int[]) outer.k);
+        assertEquals(42, ((Inner) outer.l).value);
+    }
+
+    @Test
+    void generatedReaderAcceptsAnyTypeName() throws IOException {
+        var types = new TestTypes();
+        var info = types.get("ns::Outer<Array<int32>, 2>").asClass();
+        var generated = CompoundReaderGenerator.generate(info, new TestTypeReader()::atomReader);
+
+        var target = info.newInstance();
+        generated.read(new TestTypeReader(), target, BinaryReader.wrap(data()).order(ByteOrder.LITTLE_ENDIAN), types);
+        assertEquals(42, ((Inner) ((Outer) target).l).value);
+    }
+
+    private static void assertEqualAttrs(ClassTypeInfo info, Object expected, Object actual) {
+        for (ClassAttrInfo attr : info.allAttrs()) {
+            var expectedValue = info.get(attr, expected);
+            var actualValue = info.get(attr, actual);
+            switch (attr.type()) {
+                case ClassTypeInfo type -> assertEqualAttrs(type, expectedValue, actualValue);
+                case ContainerTypeInfo _ -> assertArrayEquals((int[]) expectedValue, (int[]) actualValue, attr.name());
+                default -> assertEquals(expectedValue, actualValue, attr.name());
+            }
+        }
+    }
+
+    /**
+     * Serialized attributes of {@code Outer}, in the order of {@link TestTypes.TestTypeContext#computeOrderedAttrs}.
+     */
+    private static byte[] data() {
+        var string = "hello".getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(42);
+        buffer.putInt(3).putInt(1).putInt(2).putInt(3);
+        buffer.putInt(string.length).put(string);
+        buffer.put((byte) 1);
+        buffer.putShort((short) 'x');
+        buffer.putDouble(Math.PI);
+        buffer.putFloat(-0.25f);
+        buffer.putShort(Float.floatToFloat16(1.5f));
+        buffer.putLong(0x1234_5678_9abc_def0L);
+        buffer.putInt(-100_000);
+        buffer.putShort((short) -300);
+        buffer.put((byte) -1);
+        return ByteBuffer.allocate(buffer.position()).put(buffer.flip()).array();
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class TestTypeReader extends AbstractTypeReader {
+        private static final AtomReader STRING = new AtomReader() {
+            @Override
+            public Object read(BinaryReader reader) throws IOException {
+                return new String(reader.readBytes(reader.readInt()), StandardCharsets.UTF_8);
+            }
+        };
+
+        @Override
+        protected Value<?> readEnum(EnumTypeInfo info, BinaryReader reader, TypeFactory factory) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Object readContainer(ContainerTypeInfo info, BinaryReader reader, TypeFactory factory) throws IOException {
+            int count = reader.readInt();
+            return atomReader((AtomTypeInfo) info.itemType()).read(reader, count, info);
+        }
+
+        @Override
+        protected Object readPointer(PointerTypeInfo info, BinaryReader reader, TypeFactory factory) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected AtomReader readerForAtom(AtomTypeInfo info) {
+            return switch (info.base().name()) {
+                case "int8" -> AtomReader.INT_8;
+                case "int16" -> AtomReader.INT_16;
+                case "int32" -> AtomReader.INT_32;
+                case "int64" -> AtomReader.INT_64;
+                case "HalfFloat" -> AtomReader.FLOAT_16;
+                case "float" -> AtomReader.FLOAT_32;
+                case "double" -> AtomReader.FLOAT_64;
+                case "wchar" -> AtomReader.CHAR_16;
+                case "bool" -> AtomReader.BOOL_8;
+                case "String" -> STRING;
+                default -> throw new IllegalArgumentException("Unknown atom type: " + info.name());
+            };
+        }
+    }
+
+    private static final class TestTypes implements TypeFactory {
+        private static final Map<String, Class<?>> ATOMS = Map.of(
+            "int8", byte.class,
+            "int16", short.class,
+            "int32", int.class,
+            "int64", long.class,
+            "HalfFloat", float.class,
+            "float", float.class,
+            "double", double.class,
+            "wchar", char.class,
+            "bool", boolean.class,
+            "String", String.class
+        );
+
+        private final TypeContext context = new TestTypeContext();
+
+        TestTypes() throws IOException {
+            context.load(stream(TYPES), stream(EXTENSIONS));
+        }
+
+        @Override
+        public TypeInfo get(String name) {
+            return context.get(name)
+                .orElseThrow(() -> new TypeNotFoundException("Unknown type: " + name));
+        }
+
+        @Override
+        public TypeInfo get(TypeId id) {
+            throw new TypeNotFoundException("Unknown type: " + id);
+        }
+
+        @Override
+        public Collection<TypeInfo> getAll() {
+            return context.getAll();
+        }
+
+        private static final class TestTypeContext extends TypeContext {
+            @Override
+            protected Class<?> computeType(TypeInfo info) {
+                return switch (info) {
+                    case AtomTypeInfo atom -> ATOMS.get(atom.base().name());
+                    case ContainerTypeInfo _ -> int[].class;
+                    case ClassTypeInfo type when type.name().equals("Inner") -> Inner.class;
+                    case ClassTypeInfo _ -> Outer.class;
+                    default -> throw new UnsupportedOperationException("Can't compute type of " + info);
+                };
+            }
+
+            @Override
+            protected Object newInstance(ClassTypeInfo info) {
+                return info.type() == Inner.class ? new Inner(info) : new Outer(info);
+            }
+
+            @Override
+            protected VarHandle computeHandle(ClassTypeInfo info, ClassAttrInfo attr) {
+                var name = Character.toLowerCase(attr.name().charAt(0)) + attr.name().substring(1);
+                try {
+                    var field = info.type().getDeclaredField(name);
+                    return MethodHandles.lookup().findVarHandle(info.type(), name, field.getType());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            protected List<ClassAttrInfo> computeOrderedAttrs(ClassTypeInfo info) {
+                // Differs from the declared order, so readers must follow the ordered attributes
+                return info.attrs().reversed();
+            }
+        }
+    }
+
+    /**
+     * A hand-written equivalent of a generated type, see {@code TypeClassGenerator}.
+     */
+    private abstract static class TestObject implements TypedObject, LazyObject {
+        private final ClassTypeInfo type;
+        private volatile Loader loader;
+
+        TestObject(ClassTypeInfo type) {
+            this.type = type;
+        }
+
+        @Override
+        public ClassTypeInfo getType() {
+            return type;
+        }
+
+        @Override
+        public void $attach(Loader loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public void $load(int attr) {
+            var loader = this.loader;
+            if (loader != null && loader.load(this, attr)) {
+                this.loader = null;
+            }
+        }
+
+        @Override
+        public void $resolve() {
+            var loader = this.loader;
+            if (loader != null) {
+                loader.loadAll(this);
+                this.loader = null;
+            }
+        }
+
+        @Override
+        public boolean $isPending() {
+            return loader != null;
+        }
+    }
+
+    private static final class Outer extends TestObject {
+        byte a;
+        short b;
+        int c;
+        long d;
+        float e;
+        float f;
+        double g;
+        char h;
+        boolean i;
+        Object j;
+        Object k;
+        Object l;
+
+        Outer(ClassTypeInfo type) {
+            super(type);
+        }
+    }
+
+    private static final class Inner extends TestObject {
+        int value;
+
+        Inner(ClassTypeInfo type) {
+            super(type);
+        }
+    }
+}